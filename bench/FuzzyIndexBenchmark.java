@@ -0,0 +1,131 @@
+import util.FuzzyIndex;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+// Fuzzy name index build and typo-query times over random place-like names (100k by default), next to a linear
+// Levenshtein scan of the same vocabulary as the baseline.
+// Build the application classes first, then from the project root:
+//   javac -cp build/classes -d build/bench bench/*.java
+//   java -cp build/classes:build/bench FuzzyIndexBenchmark [names]
+public class FuzzyIndexBenchmark {
+    private static final String[] SYLLABLES = {"ba", "ka", "ra", "syl", "het", "cox", "bar", "dha", "gong", "chi",
+            "ta", "sun", "dar", "ban", "ran", "mo", "li", "pur", "nag", "kul", "na", "ja", "shi", "bo", "ga", "ti",
+            "pa", "ma"};
+    private static final int QUERIES = 2000;
+    private static final int BASELINE_QUERIES = 200;
+    private static final int ROUNDS = 3;
+
+    private static final Random random = new Random(3);
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        FuzzyIndex index = new FuzzyIndex();
+        List<String> names = new ArrayList<>(count);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            String name = randomName();
+            names.add(name);
+            index.put("N" + i, name);
+        }
+        long build = System.nanoTime() - start;
+
+        List<String> queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            queries.add(withTypos(names.get(random.nextInt(names.size()))));
+        }
+
+        System.out.printf("%d names: build %d ms%n", count, build / 1_000_000);
+        for (int round = 0; round < ROUNDS; round++) {
+            start = System.nanoTime();
+            long hits = 0;
+            for (String query : queries) {
+                hits += index.search(query).size();
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("indexed search %.1f us/query, avg hits %.1f%n", elapsed / 1e3 / QUERIES,
+                    (double) hits / QUERIES);
+        }
+
+        // Baseline: the first word of each query against every distinct word, within two edits
+        Set<String> vocabulary = new HashSet<>();
+        for (String name : names) {
+            for (String word : name.toLowerCase(Locale.ROOT).split(" ")) {
+                vocabulary.add(word);
+            }
+        }
+        String[] words = vocabulary.toArray(new String[0]);
+        start = System.nanoTime();
+        int matches = 0;
+        for (int i = 0; i < BASELINE_QUERIES; i++) {
+            String word = queries.get(i).toLowerCase(Locale.ROOT).split(" ")[0];
+            for (String candidate : words) {
+                if (levenshtein(word, candidate) <= 2) {
+                    matches++;
+                }
+            }
+        }
+        System.out.printf("linear scan of %d words %.1f us/word (%d matches)%n", words.length,
+                (System.nanoTime() - start) / 1e3 / BASELINE_QUERIES, matches);
+    }
+
+    private static String randomName() {
+        int wordCount = 1 + random.nextInt(3);
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                name.append(' ');
+            }
+            int syllables = 2 + random.nextInt(3);
+            StringBuilder word = new StringBuilder();
+            for (int j = 0; j < syllables; j++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            name.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        return name.toString();
+    }
+
+    // One or two random deletions, insertions or substitutions
+    private static String withTypos(String text) {
+        StringBuilder typo = new StringBuilder(text);
+        int edits = 1 + random.nextInt(2);
+        for (int i = 0; i < edits && typo.length() > 1; i++) {
+            int position = random.nextInt(typo.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    typo.deleteCharAt(position);
+                    break;
+                case 1:
+                    typo.insert(position, (char) ('a' + random.nextInt(26)));
+                    break;
+                default:
+                    typo.setCharAt(position, (char) ('a' + random.nextInt(26)));
+            }
+        }
+        return typo.toString();
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
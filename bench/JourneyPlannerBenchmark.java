@@ -0,0 +1,94 @@
+import enumtype.TransportType;
+import manager.JourneyPlanner;
+import model.Transport;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Journey planner build, patch and query times on a random timetable (50k legs over 1,000 stations by default).
+// Build the application classes first, then from the project root:
+//   javac -cp build/classes -d build/bench bench/*.java
+//   java -cp build/classes:build/bench JourneyPlannerBenchmark [legs] [stations]
+public class JourneyPlannerBenchmark {
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final int PATCHES = 5000;
+    private static final int QUERIES = 200;
+    private static final int CONNECTION_MINUTES = 30;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int legs = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int stations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Random random = new Random(11);
+
+        List<Transport> timetable = new ArrayList<>(legs);
+        for (int i = 0; i < legs; i++) {
+            timetable.add(randomLeg(random, "L" + i, stations));
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            JourneyPlanner planner = new JourneyPlanner();
+            long start = System.nanoTime();
+            for (Transport transport : timetable) {
+                planner.update(transport);
+            }
+            long build = System.nanoTime() - start;
+
+            // Retimed legs are patched into the planner one at a time, as TransportManager does
+            start = System.nanoTime();
+            for (int i = 0; i < PATCHES; i++) {
+                Transport transport = timetable.get(random.nextInt(legs));
+                transport.setDepartureTime(time(random.nextInt(MINUTES_PER_DAY)));
+                planner.update(transport);
+            }
+            long patch = System.nanoTime() - start;
+
+            long earliest = 0;
+            long cheapest = 0;
+            int reachable = 0;
+            int legTotal = 0;
+            for (int q = 0; q < QUERIES; q++) {
+                String origin = "S" + random.nextInt(stations);
+                String destination = "S" + random.nextInt(stations);
+                String startTime = time(random.nextInt(MINUTES_PER_DAY));
+
+                start = System.nanoTime();
+                JourneyPlanner.Journey fastest = planner.findEarliestArrival(origin, destination, startTime,
+                        CONNECTION_MINUTES);
+                earliest += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                planner.findCheapestJourney(origin, destination, startTime, CONNECTION_MINUTES);
+                cheapest += System.nanoTime() - start;
+
+                if (fastest != null) {
+                    reachable++;
+                    legTotal += fastest.getLegs().size();
+                }
+            }
+            System.out.printf("%d legs / %d stations: build %.0f ms, patch %.1f us/leg, earliest %.2f ms/query,"
+                    + " cheapest %.2f ms/query, reachable %d/%d, avg legs %.1f%n",
+                    legs, stations, build / 1e6, patch / 1e3 / PATCHES, earliest / 1e6 / QUERIES,
+                    cheapest / 1e6 / QUERIES, reachable, QUERIES, reachable == 0 ? 0.0 : (double) legTotal / reachable);
+        }
+    }
+
+    private static Transport randomLeg(Random random, String id, int stations) {
+        int from = random.nextInt(stations);
+        int to = random.nextInt(stations - 1);
+        if (to >= from) {
+            to++;
+        }
+        TransportType[] types = TransportType.values();
+        Transport transport = new Transport(id, types[random.nextInt(types.length)], "S" + from, "S" + to);
+        int departure = random.nextInt(MINUTES_PER_DAY);
+        transport.setDepartureTime(time(departure));
+        transport.setArrivalTime(time((departure + 30 + random.nextInt(600)) % MINUTES_PER_DAY));
+        transport.setFare(1 + random.nextInt(100));
+        return transport;
+    }
+
+    private static String time(int minute) {
+        return String.format("%02d:%02d", minute / 60, minute % 60);
+    }
+}
@@ -0,0 +1,92 @@
+import enumtype.BookingStatus;
+import model.Booking;
+import report.Aggregation;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+// Sequential vs month-sharded report aggregation over synthetic bookings, at pool sizes 1 to 16.
+// Build the application classes first, then from the project root:
+//   javac -cp build/classes -d build/bench bench/*.java
+//   java -Xmx8g -cp build/classes:build/bench ReportShardingBenchmark [records, default 10000000]
+public class ReportShardingBenchmark {
+    private static final int[] POOL_SIZES = {1, 2, 4, 8, 16};
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(7);
+        BookingStatus[] statuses = BookingStatus.values();
+
+        // Ten years of days and 40 packages
+        String[] days = new String[3650];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = LocalDate.of(2016, 1, 1).plusDays(i).toString();
+        }
+        String[] packages = new String[40];
+        for (int i = 0; i < packages.length; i++) {
+            packages[i] = "PKG0" + i;
+        }
+
+        List<Booking> all = new ArrayList<>(records);
+        Map<String, List<Booking>> byMonth = new TreeMap<>();
+        for (int i = 0; i < records; i++) {
+            String date = days[random.nextInt(days.length)];
+            Booking booking = new Booking("B" + i, "U", packages[random.nextInt(packages.length)], date, 1);
+            booking.setBookingDate(date);
+            booking.setTotalAmount(random.nextInt(1_000_000) / 100.0);
+            booking.setStatus(statuses[random.nextInt(statuses.length)]);
+            all.add(booking);
+            byMonth.computeIfAbsent(date.substring(0, 7), k -> new ArrayList<>()).add(booking);
+        }
+        List<Supplier<List<Booking>>> shards = new ArrayList<>();
+        for (List<Booking> month : byMonth.values()) {
+            shards.add(() -> month);
+        }
+
+        System.out.println("cores " + Runtime.getRuntime().availableProcessors() + ", records " + records
+                + ", shards " + shards.size());
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            Aggregation<Booking>.Result expected = aggregation().run(all);
+            long sequential = System.nanoTime() - start;
+            StringBuilder line = new StringBuilder(String.format("sequential %.0f ms", sequential / 1e6));
+
+            for (int poolSize : POOL_SIZES) {
+                ForkJoinPool pool = new ForkJoinPool(poolSize);
+                start = System.nanoTime();
+                Aggregation<Booking>.Result result = aggregation().runSharded(shards, pool);
+                long elapsed = System.nanoTime() - start;
+                pool.shutdown();
+                line.append(String.format(" | p=%d %.0f ms (x%.2f)", poolSize, elapsed / 1e6,
+                        (double) sequential / elapsed));
+                if (!sameResult(expected, result)) {
+                    line.append(" MISMATCH");
+                }
+            }
+            System.out.println(line);
+        }
+    }
+
+    private static Aggregation<Booking> aggregation() {
+        return new Aggregation<Booking>(b -> b.getBookingDate().startsWith("20"))
+                .count("bookings")
+                .sum("value", Booking::getTotalAmount)
+                .countBy("status", Booking::getStatus)
+                .countBy("package", Booking::getPackageId)
+                .countBy("season", b -> b.getBookingDate().substring(5, 7))
+                .distinct("days", Booking::getBookingDate);
+    }
+
+    private static boolean sameResult(Aggregation<Booking>.Result expected, Aggregation<Booking>.Result actual) {
+        return expected.count("bookings") == actual.count("bookings")
+                && expected.sum("value") == actual.sum("value")
+                && expected.counts("package").equals(actual.counts("package"))
+                && expected.counts("status").toString().equals(actual.counts("status").toString());
+    }
+}
@@ -4,23 +4,109 @@ import model.*;
 import enumtype.BookingStatus;
 import util.Logger;
 import util.FileHandler;
+import util.MappedRecordReader;
 import util.DateUtil;
+import util.DateRangeIndex;
+import util.Leaderboard;
+import util.PersistenceService;
+import util.RunningTotals;
+import util.SecondaryIndex;
+import util.TimeBuckets;
+import util.TrigramIndex;
+import util.QueryCondition;
+import util.QueryEngine;
+import util.WriteAheadJournal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-public class BookingManager {
+// Final because the constructor's load path replays the journal and may compact it through instance methods
+public final class BookingManager {
     private Map<String, Booking> bookings;
-    private static final String BOOKINGS_FILE = "bookings.dat";
+    private WriteAheadJournal journal;
+    private SecondaryIndex<String> userIndex;
+    private SecondaryIndex<String> packageIndex;
+    private SecondaryIndex<String> travelDateIndex;
+    private DateRangeIndex bookingDateIndex;
+    private DateRangeIndex travelDateRangeIndex;
+    private TrigramIndex searchIndex;
+    // Package ids ranked by booking count, kept in step with packageIndex
+    private Leaderboard<Integer> packagePopularity;
+    private List<BiConsumer<String, Integer>> popularityListeners;
+    // Called with the booking date of every booking added, updated or removed
+    private List<Consumer<String>> dateChangeListeners;
+    private QueryEngine<Booking> queryEngine;
+    // Booking counts per status and package, plus confirmed/completed revenue, for dashboard reads
+    private RunningTotals<Booking> totals;
+    // Every booking by booking day, month and year, with confirmed/completed amounts, for trend series and range revenue
+    private TimeBuckets bookingBuckets;
+    // Key values each booking was last indexed under; bookings are mutated in place before updateBooking,
+    // so the old keys cannot be read back from the object itself
+    private Map<String, IndexedKeys> indexedKeys;
+    static final String BOOKINGS_FILE = "bookings.dat";
+    private static final String BOOKINGS_JOURNAL_FILE = "bookings.journal";
+    private static final String BOOKINGS_SNAPSHOT_TEMP_FILE = "bookings.dat.tmp";
+    private static final int MIN_JOURNAL_RECORDS_BEFORE_COMPACTION = 1000;
 
     public BookingManager() {
-        this.bookings = new HashMap<>();
+        this.bookings = new ConcurrentHashMap<>();
+        this.journal = new WriteAheadJournal(BOOKINGS_JOURNAL_FILE);
+        this.userIndex = new SecondaryIndex<>();
+        this.packageIndex = new SecondaryIndex<>();
+        this.travelDateIndex = new SecondaryIndex<>();
+        this.bookingDateIndex = new DateRangeIndex();
+        this.travelDateRangeIndex = new DateRangeIndex();
+        this.bookingBuckets = new TimeBuckets();
+        this.searchIndex = new TrigramIndex();
+        this.packagePopularity = new Leaderboard<>();
+        this.popularityListeners = new CopyOnWriteArrayList<>();
+        this.dateChangeListeners = new CopyOnWriteArrayList<>();
+        this.queryEngine = new QueryEngine<>(bookings::get, bookings::values)
+                .addField("bookingId", Booking::getBookingId)
+                .addField("userId", Booking::getUserId)
+                .addField("packageId", Booking::getPackageId)
+                .addBitmapField("status", Booking::getStatus)
+                .addField("travelDate", Booking::getTravelDate)
+                .addField("bookingDate", Booking::getBookingDate)
+                .addField("numberOfPeople", Booking::getNumberOfPeople)
+                .addField("totalAmount", Booking::getTotalAmount)
+                .addBitmapField("paid", Booking::isPaid)
+                .addIndex("userId", QueryEngine.equalityIndex(userIndex))
+                .addIndex("packageId", QueryEngine.equalityIndex(packageIndex))
+                .addIndex("travelDate", QueryEngine.equalityIndex(travelDateIndex))
+                .addIndex("travelDate", QueryEngine.dateRangeIndex(travelDateRangeIndex))
+                .addIndex("bookingDate", QueryEngine.dateRangeIndex(bookingDateIndex));
+        for (String field : new String[] {"bookingId", "userId", "packageId"}) {
+            queryEngine.addIndex(field, QueryEngine.substringIndex(searchIndex));
+        }
+        this.totals = new RunningTotals<>(Booking::getTotalAmount, BookingManager::isRevenueBooking)
+                .addDimension("status", Booking::getStatus)
+                .addDimension("packageId", Booking::getPackageId);
+        this.indexedKeys = new HashMap<>();
         loadBookingsFromFile();
     }
 
+    private static class IndexedKeys {
+        final String userId;
+        final String packageId;
+        final String travelDate;
+
+        IndexedKeys(Booking booking) {
+            this.userId = booking.getUserId();
+            this.packageId = booking.getPackageId();
+            this.travelDate = booking.getTravelDate();
+        }
+    }
+
     public void addBooking(Booking booking) {
         if (booking != null && !bookings.containsKey(booking.getBookingId())) {
             bookings.put(booking.getBookingId(), booking);
-            saveBookingsToFile();
+            indexBooking(booking);
+            journalPut(booking);
+            fireDateChange(booking.getBookingDate());
             Logger.log("Booking added: " + booking.getBookingId());
         }
     }
@@ -28,7 +114,9 @@ public class BookingManager {
     public void removeBooking(String bookingId) {
         Booking removed = bookings.remove(bookingId);
         if (removed != null) {
-            saveBookingsToFile();
+            unindexBooking(bookingId);
+            journalDelete(bookingId);
+            fireDateChange(removed.getBookingDate());
             Logger.log("Booking removed: " + bookingId);
         }
     }
@@ -39,47 +127,58 @@ public class BookingManager {
 
     public void updateBooking(Booking booking) {
         if (booking != null && bookings.containsKey(booking.getBookingId())) {
-            bookings.put(booking.getBookingId(), booking);
-            saveBookingsToFile();
+            Booking previous = bookings.put(booking.getBookingId(), booking);
+            indexBooking(booking);
+            journalPut(booking);
+            if (previous != null && !Objects.equals(previous.getBookingDate(), booking.getBookingDate())) {
+                fireDateChange(previous.getBookingDate());
+            }
+            fireDateChange(booking.getBookingDate());
             Logger.log("Booking updated: " + booking.getBookingId());
         }
     }
 
+    // Composable filter over booking fields; see the field names registered in the constructor
+    public QueryEngine.Query<Booking> query() {
+        return queryEngine.query();
+    }
+
     public List<Booking> getAllBookings() {
         return new ArrayList<>(bookings.values());
     }
 
     public List<Booking> getBookingsByUser(String userId) {
-        return bookings.values().stream()
-                .filter(booking -> booking.getUserId().equals(userId))
-                .collect(Collectors.toList());
+        return userIndex.resolve(userId, bookings::get);
     }
 
     public List<Booking> getBookingsByPackage(String packageId) {
-        return bookings.values().stream()
-                .filter(booking -> booking.getPackageId().equals(packageId))
-                .collect(Collectors.toList());
+        return packageIndex.resolve(packageId, bookings::get);
     }
 
     public List<Booking> getBookingsByStatus(BookingStatus status) {
-        return bookings.values().stream()
-                .filter(booking -> booking.getStatus() == status)
-                .collect(Collectors.toList());
+        return queryEngine.query().where(QueryCondition.equalTo("status", status)).list();
     }
 
     public List<Booking> getBookingsByDate(String date) {
-        return bookings.values().stream()
-                .filter(booking -> booking.getBookingDate().equals(date))
-                .collect(Collectors.toList());
+        int epochDay = DateRangeIndex.toEpochDay(date);
+        if (epochDay == DateRangeIndex.NULL_EPOCH_DAY || date.length() != 10) {
+            return bookings.values().stream()
+                    .filter(booking -> booking.getBookingDate().equals(date))
+                    .collect(Collectors.toList());
+        }
+        return resolveBookings(bookingDateIndex.getIds(epochDay, epochDay));
     }
 
     public List<Booking> getBookingsByTravelDate(String travelDate) {
-        return bookings.values().stream()
-                .filter(booking -> booking.getTravelDate().equals(travelDate))
-                .collect(Collectors.toList());
+        return travelDateIndex.resolve(travelDate, bookings::get);
     }
 
     public List<Booking> getBookingsInDateRange(String startDate, String endDate) {
+        int fromDay = DateRangeIndex.toEpochDay(startDate);
+        int toDay = DateRangeIndex.toEpochDay(endDate);
+        if (fromDay != DateRangeIndex.NULL_EPOCH_DAY && toDay != DateRangeIndex.NULL_EPOCH_DAY) {
+            return resolveBookings(bookingDateIndex.getIds(fromDay, toDay));
+        }
         return bookings.values().stream()
                 .filter(booking -> {
                     String bookingDate = booking.getBookingDate();
@@ -89,6 +188,11 @@ public class BookingManager {
                 .collect(Collectors.toList());
     }
 
+    // True when some booking date cannot be placed on the date index, so date-range lookups would miss it
+    public boolean hasUndatedBookings() {
+        return bookingDateIndex.size() < bookings.size();
+    }
+
     public List<Booking> getPendingBookings() {
         return getBookingsByStatus(BookingStatus.PENDING);
     }
@@ -135,20 +239,24 @@ public class BookingManager {
     }
 
     public double getTotalRevenue() {
-        return bookings.values().stream()
-                .filter(booking -> booking.getStatus() == BookingStatus.CONFIRMED || 
-                                 booking.getStatus() == BookingStatus.COMPLETED)
+        return totals.revenue();
+    }
+
+    // Revenue of confirmed and completed bookings made between the two dates, inclusive
+    public double getRevenueInDateRange(String startDate, String endDate) {
+        int fromDay = DateRangeIndex.toEpochDay(startDate);
+        int toDay = DateRangeIndex.toEpochDay(endDate);
+        if (fromDay != DateRangeIndex.NULL_EPOCH_DAY && toDay != DateRangeIndex.NULL_EPOCH_DAY) {
+            return bookingBuckets.amount(fromDay, toDay);
+        }
+        return getBookingsInDateRange(startDate, endDate).stream()
+                .filter(BookingManager::isRevenueBooking)
                 .mapToDouble(Booking::getTotalAmount)
                 .sum();
     }
 
     public double getRevenueByPackage(String packageId) {
-        return bookings.values().stream()
-                .filter(booking -> booking.getPackageId().equals(packageId) &&
-                                 (booking.getStatus() == BookingStatus.CONFIRMED || 
-                                  booking.getStatus() == BookingStatus.COMPLETED))
-                .mapToDouble(Booking::getTotalAmount)
-                .sum();
+        return totals.revenue("packageId", packageId);
     }
 
     public int getTotalBookings() {
@@ -156,18 +264,54 @@ public class BookingManager {
     }
 
     public int getBookingsCountByStatus(BookingStatus status) {
-        return (int) bookings.values().stream()
-                .filter(booking -> booking.getStatus() == status)
-                .count();
+        return totals.count("status", status);
+    }
+
+    public int getBookingCountByPackage(String packageId) {
+        return packageIndex.count(packageId);
+    }
+
+    // Cross-checks the running counts and revenue against a full scan; mismatches are logged
+    public boolean verifyAggregates() {
+        List<String> mismatches = totals.verify(bookings.values(), Booking::getBookingId);
+        for (String mismatch : mismatches) {
+            Logger.error("Booking aggregates out of step: " + mismatch);
+        }
+        return mismatches.isEmpty();
+    }
+
+    // When on, every aggregate read is verified against a full scan first; for debugging only
+    public void setAggregateVerification(boolean enabled) {
+        totals.setVerificationSource(enabled ? bookings::values : null, Booking::getBookingId);
+    }
+
+    // Package ids with the most bookings, most booked first; ties are ordered by package id
+    public List<String> getMostBookedPackageIds(int limit) {
+        return packagePopularity.top(limit);
+    }
+
+    // Called with a package id and its new booking count whenever that count changes
+    public void addPopularityListener(BiConsumer<String, Integer> listener) {
+        popularityListeners.add(listener);
+    }
+
+    public void addDateChangeListener(Consumer<String> listener) {
+        dateChangeListeners.add(listener);
+    }
+
+    private void fireDateChange(String bookingDate) {
+        for (Consumer<String> listener : dateChangeListeners) {
+            listener.accept(bookingDate);
+        }
     }
 
     public List<Booking> getUpcomingBookings() {
-        String today = DateUtil.getCurrentDate();
-        return bookings.values().stream()
-                .filter(booking -> booking.getTravelDate().compareTo(today) > 0 &&
-                                 booking.getStatus() == BookingStatus.CONFIRMED)
-                .sorted(Comparator.comparing(Booking::getTravelDate))
-                .collect(Collectors.toList());
+        String tomorrow = DateUtil.addDays(DateUtil.getCurrentDate(), 1);
+        return query()
+                .where(QueryCondition.equalTo("status", BookingStatus.CONFIRMED))
+                .where(QueryCondition.range("travelDate", tomorrow, null))
+                .orderBy(Comparator.comparing(Booking::getTravelDate))
+                .list();
     }
 
     public List<Booking> getTodaysBookings() {
@@ -175,7 +319,11 @@ public class BookingManager {
         return getBookingsByTravelDate(today);
     }
 
+    // Read from the booking buckets in date order; the scan below only runs while a booking has an unparseable date
     public Map<String, Integer> getBookingCountsByMonth() {
+        if (bookingBuckets.undatedCount() == 0) {
+            return bookingBuckets.monthlyCounts();
+        }
         Map<String, Integer> monthlyCount = new HashMap<>();
         for (Booking booking : bookings.values()) {
             String month = booking.getBookingDate().substring(0, 7); // YYYY-MM
@@ -185,6 +333,10 @@ public class BookingManager {
     }
 
     public List<Booking> searchBookings(String keyword) {
+        List<String> bookingIds = searchIndex.search(keyword);
+        if (bookingIds != null) {
+            return resolveBookings(bookingIds);
+        }
         return bookings.values().stream()
                 .filter(booking -> booking.getBookingId().toLowerCase().contains(keyword.toLowerCase()) ||
                                  booking.getPackageId().toLowerCase().contains(keyword.toLowerCase()) ||
@@ -192,29 +344,185 @@ public class BookingManager {
                 .collect(Collectors.toList());
     }
 
+    // Folds the journal into a fresh snapshot; safe to repeat because replay is idempotent
+    public void compactJournal() {
+        saveBookingsToFile();
+    }
+
+    // Compacts first so the columnar snapshot reflects every journaled mutation
+    public boolean exportColumnarSnapshot() {
+        compactJournal();
+        return SnapshotConverter.convertBookingsToColumnar();
+    }
+
+    public int getJournalRecordCount() {
+        return journal.getRecordCount();
+    }
+
+    private void journalPut(Booking booking) {
+        try {
+            journal.appendPut(convertBookingToString(booking));
+            PersistenceService.markDirty(this, BOOKINGS_FILE, this::flushBookings);
+        } catch (Exception e) {
+            Logger.error("Failed to journal booking " + booking.getBookingId() + ": " + e.getMessage());
+        }
+    }
+
+    private void journalDelete(String bookingId) {
+        try {
+            journal.appendDelete(bookingId);
+            PersistenceService.markDirty(this, BOOKINGS_FILE, this::flushBookings);
+        } catch (Exception e) {
+            Logger.error("Failed to journal booking removal " + bookingId + ": " + e.getMessage());
+        }
+    }
+
+    private void indexBooking(Booking booking) {
+        synchronized (indexedKeys) {
+            String bookingId = booking.getBookingId();
+            IndexedKeys current = new IndexedKeys(booking);
+            IndexedKeys previous = indexedKeys.put(bookingId, current);
+            if (previous == null) {
+                userIndex.add(current.userId, bookingId);
+                packageIndex.add(current.packageId, bookingId);
+                refreshPopularity(current.packageId);
+                travelDateIndex.add(current.travelDate, bookingId);
+            } else {
+                userIndex.update(previous.userId, current.userId, bookingId);
+                packageIndex.update(previous.packageId, current.packageId, bookingId);
+                if (!Objects.equals(previous.packageId, current.packageId)) {
+                    refreshPopularity(previous.packageId);
+                    refreshPopularity(current.packageId);
+                }
+                travelDateIndex.update(previous.travelDate, current.travelDate, bookingId);
+            }
+            bookingDateIndex.put(bookingId, booking.getBookingDate(), 0.0);
+            travelDateRangeIndex.put(bookingId, booking.getTravelDate(), 0.0);
+            bookingBuckets.put(bookingId, booking.getBookingDate(),
+                    isRevenueBooking(booking) ? booking.getTotalAmount() : 0.0);
+            queryEngine.put(bookingId, booking);
+            totals.put(bookingId, booking);
+            searchIndex.put(bookingId, bookingId, booking.getPackageId(), booking.getUserId());
+        }
+    }
+
+    private void unindexBooking(String bookingId) {
+        synchronized (indexedKeys) {
+            IndexedKeys previous = indexedKeys.remove(bookingId);
+            if (previous != null) {
+                userIndex.remove(previous.userId, bookingId);
+                packageIndex.remove(previous.packageId, bookingId);
+                refreshPopularity(previous.packageId);
+                travelDateIndex.remove(previous.travelDate, bookingId);
+            }
+            bookingDateIndex.remove(bookingId);
+            travelDateRangeIndex.remove(bookingId);
+            bookingBuckets.remove(bookingId);
+            queryEngine.remove(bookingId);
+            totals.remove(bookingId);
+            searchIndex.remove(bookingId);
+        }
+    }
+
+    private void refreshPopularity(String packageId) {
+        if (packageId != null) {
+            int count = packageIndex.count(packageId);
+            packagePopularity.put(packageId, count > 0 ? count : null);
+            for (BiConsumer<String, Integer> listener : popularityListeners) {
+                listener.accept(packageId, count);
+            }
+        }
+    }
+
+    private static boolean isRevenueBooking(Booking booking) {
+        return booking.getStatus() == BookingStatus.CONFIRMED || booking.getStatus() == BookingStatus.COMPLETED;
+    }
+
+    private List<Booking> resolveBookings(Collection<String> bookingIds) {
+        List<Booking> result = new ArrayList<>(bookingIds.size());
+        for (String bookingId : bookingIds) {
+            Booking booking = bookings.get(bookingId);
+            if (booking != null) {
+                result.add(booking);
+            }
+        }
+        return result;
+    }
+
+    private void rebuildIndexes() {
+        synchronized (indexedKeys) {
+            indexedKeys.clear();
+            userIndex.clear();
+            packageIndex.clear();
+            packagePopularity.clear();
+            queryEngine.clear();
+            totals.clear();
+            travelDateIndex.clear();
+            bookingDateIndex.clear();
+            travelDateRangeIndex.clear();
+            bookingBuckets.clear();
+            searchIndex.clear();
+            for (Booking booking : bookings.values()) {
+                indexBooking(booking);
+            }
+        }
+    }
+
+    // Runs on the persistence thread: one batched journal append per group commit
+    private synchronized boolean flushBookings() {
+        return isCompactionDue() ? saveBookingsToFile() : journal.flush();
+    }
+
+    // Compacting only once the journal outgrows the live set keeps the amortized cost per write constant
+    private boolean isCompactionDue() {
+        return journal.getRecordCount() > Math.max(MIN_JOURNAL_RECORDS_BEFORE_COMPACTION, bookings.size());
+    }
+
     private void loadBookingsFromFile() {
         try {
-            List<String> lines = FileHandler.readFromFile(BOOKINGS_FILE);
-            for (String line : lines) {
-                Booking booking = parseBookingFromString(line);
+            FileHandler.scanRecords(BOOKINGS_FILE, record -> {
+                Booking booking = parseBookingFromRecord(record);
                 if (booking != null) {
                     bookings.put(booking.getBookingId(), booking);
                 }
+            });
+
+            // Replay the journal tail written since the last snapshot
+            journal.replay((bookingId, record) -> {
+                Booking booking = parseBookingFromString(record);
+                if (booking != null) {
+                    bookings.put(booking.getBookingId(), booking);
+                }
+            }, bookings::remove);
+            rebuildIndexes();
+
+            if (journal.getRecordCount() > 0) {
+                Logger.log("Replayed " + journal.getRecordCount() + " booking journal records");
+                if (isCompactionDue()) {
+                    saveBookingsToFile();
+                }
             }
         } catch (Exception e) {
             Logger.error("Failed to load bookings from file: " + e.getMessage());
         }
     }
 
-    private void saveBookingsToFile() {
+    // Queued records are appended first so the journal never loses an entry the snapshot might miss;
+    // anything queued while the snapshot is written stays pending for the next flush
+    // Durable once either the journal append or the snapshot succeeded; records the journal kept for retry are
+    // already covered by a successful snapshot, so appending them later only repeats their final state
+    private synchronized boolean saveBookingsToFile() {
         try {
-            FileHandler.clearFile(BOOKINGS_FILE);
-            for (Booking booking : bookings.values()) {
-                String bookingString = convertBookingToString(booking);
-                FileHandler.writeToFile(BOOKINGS_FILE, bookingString);
+            boolean journaled = journal.flush();
+            if (FileHandler.writeAllToFile(BOOKINGS_SNAPSHOT_TEMP_FILE, bookings.values(), this::convertBookingToString)
+                    && FileHandler.replaceFile(BOOKINGS_SNAPSHOT_TEMP_FILE, BOOKINGS_FILE)) {
+                journal.truncate();
+                return true;
             }
+            return journaled;
         } catch (Exception e) {
             Logger.error("Failed to save bookings to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -235,6 +543,22 @@ public class BookingManager {
         return null;
     }
 
+    private Booking parseBookingFromRecord(MappedRecordReader.Record record) {
+        try {
+            if (record.getFieldCount() >= 8) {
+                Booking booking = new Booking(record.getString(0), record.getString(1), record.getString(2),
+                                            record.getString(3), record.getInt(4));
+                booking.setTotalAmount(record.getDouble(5));
+                booking.setStatus(record.getEnum(6, BookingStatus.class));
+                booking.setPaid(record.getBoolean(7));
+                return booking;
+            }
+        } catch (Exception e) {
+            Logger.error("Failed to parse booking: " + e.getMessage());
+        }
+        return null;
+    }
+
     private String convertBookingToString(Booking booking) {
         return String.join("|",
             booking.getBookingId(), booking.getUserId(), booking.getPackageId(),
@@ -0,0 +1,45 @@
+package manager;
+
+// Registry of the manager instances shared by every screen and report, created once at startup
+public class DataContext {
+    private final UserManager userManager;
+    private final PackageManager packageManager;
+    private final BookingManager bookingManager;
+    private final PaymentManager paymentManager;
+    private final HotelManager hotelManager;
+    private final TransportManager transportManager;
+    private final GuideManager guideManager;
+    private final ReviewManager reviewManager;
+    private final RefundManager refundManager;
+    private final RoomManager roomManager;
+    private final LocationManager locationManager;
+
+    public DataContext(UserManager userManager, PackageManager packageManager, BookingManager bookingManager,
+                       PaymentManager paymentManager, HotelManager hotelManager, TransportManager transportManager,
+                       GuideManager guideManager, ReviewManager reviewManager, RefundManager refundManager,
+                       RoomManager roomManager, LocationManager locationManager) {
+        this.userManager = userManager;
+        this.packageManager = packageManager;
+        this.bookingManager = bookingManager;
+        this.paymentManager = paymentManager;
+        this.hotelManager = hotelManager;
+        this.transportManager = transportManager;
+        this.guideManager = guideManager;
+        this.reviewManager = reviewManager;
+        this.refundManager = refundManager;
+        this.roomManager = roomManager;
+        this.locationManager = locationManager;
+    }
+
+    public UserManager getUserManager() { return userManager; }
+    public PackageManager getPackageManager() { return packageManager; }
+    public BookingManager getBookingManager() { return bookingManager; }
+    public PaymentManager getPaymentManager() { return paymentManager; }
+    public HotelManager getHotelManager() { return hotelManager; }
+    public TransportManager getTransportManager() { return transportManager; }
+    public GuideManager getGuideManager() { return guideManager; }
+    public ReviewManager getReviewManager() { return reviewManager; }
+    public RefundManager getRefundManager() { return refundManager; }
+    public RoomManager getRoomManager() { return roomManager; }
+    public LocationManager getLocationManager() { return locationManager; }
+}
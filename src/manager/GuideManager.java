@@ -5,21 +5,29 @@ import schedule.GuideAssignment;
 import schedule.GuideSchedule;
 import util.Logger;
 import util.FileHandler;
+import util.PersistenceService;
+import util.SpatialIndex;
 import util.IDGenerator;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 public class GuideManager {
     private Map<String, TourGuide> guides;
+    private SpatialIndex spatialIndex; // guides by the coordinates of their base location
+    private LocationManager locationManager;
     private Map<String, GuideSchedule> guideSchedules;
+    // Copy-on-write lists: saveAssignmentsToFile iterates them on the persistence thread while tours are assigned
     private Map<String, List<GuideAssignment>> guideAssignments;
     private static final String GUIDES_FILE = "guides.dat";
     private static final String ASSIGNMENTS_FILE = "guide_assignments.dat";
 
     public GuideManager() {
-        this.guides = new HashMap<>();
+        this.guides = new ConcurrentHashMap<>();
+        this.spatialIndex = new SpatialIndex();
         this.guideSchedules = new HashMap<>();
-        this.guideAssignments = new HashMap<>();
+        this.guideAssignments = new ConcurrentHashMap<>();
         loadGuidesFromFile();
         loadAssignmentsFromFile();
         initializeSchedules();
@@ -28,9 +36,10 @@ public class GuideManager {
     public void addGuide(TourGuide guide) {
         if (guide != null && !guides.containsKey(guide.getGuideId())) {
             guides.put(guide.getGuideId(), guide);
+            indexCoordinates(guide);
             guideSchedules.put(guide.getGuideId(), new GuideSchedule(guide.getGuideId(), guide.getName()));
-            guideAssignments.put(guide.getGuideId(), new ArrayList<>());
-            saveGuidesToFile();
+            guideAssignments.put(guide.getGuideId(), new CopyOnWriteArrayList<>());
+            PersistenceService.markDirty(this, GUIDES_FILE, this::saveGuidesToFile);
             Logger.log("Tour guide added: " + guide.getName());
         }
     }
@@ -38,9 +47,10 @@ public class GuideManager {
     public void removeGuide(String guideId) {
         TourGuide removed = guides.remove(guideId);
         if (removed != null) {
+            spatialIndex.remove(guideId);
             guideSchedules.remove(guideId);
             guideAssignments.remove(guideId);
-            saveGuidesToFile();
+            PersistenceService.markDirty(this, GUIDES_FILE, this::saveGuidesToFile);
             Logger.log("Tour guide removed: " + removed.getName());
         }
     }
@@ -52,7 +62,8 @@ public class GuideManager {
     public void updateGuide(TourGuide guide) {
         if (guide != null && guides.containsKey(guide.getGuideId())) {
             guides.put(guide.getGuideId(), guide);
-            saveGuidesToFile();
+            indexCoordinates(guide);
+            PersistenceService.markDirty(this, GUIDES_FILE, this::saveGuidesToFile);
             Logger.log("Tour guide updated: " + guide.getName());
         }
     }
@@ -73,6 +84,22 @@ public class GuideManager {
                 .collect(Collectors.toList());
     }
 
+    // Geocodes guides through the gazetteer; the spatial index follows guide and gazetteer changes from here on
+    public void setLocationManager(LocationManager locationManager) {
+        this.locationManager = locationManager;
+        locationManager.addChangeListener(this::reindexCoordinates);
+        reindexCoordinates();
+    }
+
+    // Nearest first
+    public List<TourGuide> getGuidesWithinRadius(double latitude, double longitude, double radiusKm) {
+        return resolveGuides(spatialIndex.withinRadius(latitude, longitude, radiusKm));
+    }
+
+    public List<TourGuide> getNearestGuides(double latitude, double longitude, int count) {
+        return resolveGuides(spatialIndex.nearest(latitude, longitude, count));
+    }
+
     public List<TourGuide> getGuidesByRating(double minRating) {
         return guides.values().stream()
                 .filter(guide -> guide.getRating() >= minRating)
@@ -127,7 +154,7 @@ public class GuideManager {
         guide.assignTour(packageId);
         updateGuide(guide);
 
-        saveAssignmentsToFile();
+        PersistenceService.markDirty(this, ASSIGNMENTS_FILE, this::saveAssignmentsToFile);
         Logger.log("Guide assigned to tour: " + guide.getName() + " -> " + packageId);
         
         return assignment;
@@ -157,7 +184,7 @@ public class GuideManager {
                     updateGuide(guide);
                 }
 
-                saveAssignmentsToFile();
+                PersistenceService.markDirty(this, ASSIGNMENTS_FILE, this::saveAssignmentsToFile);
                 Logger.log("Guide unassigned from tour: " + guideId + " -> " + assignmentId);
                 return true;
             }
@@ -282,7 +309,7 @@ public class GuideManager {
                 guideSchedules.put(guide.getGuideId(), new GuideSchedule(guide.getGuideId(), guide.getName()));
             }
             if (!guideAssignments.containsKey(guide.getGuideId())) {
-                guideAssignments.put(guide.getGuideId(), new ArrayList<>());
+                guideAssignments.put(guide.getGuideId(), new CopyOnWriteArrayList<>());
             }
         }
     }
@@ -301,15 +328,39 @@ public class GuideManager {
         }
     }
 
-    private void saveGuidesToFile() {
-        try {
-            FileHandler.clearFile(GUIDES_FILE);
-            for (TourGuide guide : guides.values()) {
-                String guideString = convertGuideToString(guide);
-                FileHandler.writeToFile(GUIDES_FILE, guideString);
+    private void reindexCoordinates() {
+        spatialIndex.clear();
+        for (TourGuide guide : guides.values()) {
+            indexCoordinates(guide);
+        }
+    }
+
+    private void indexCoordinates(TourGuide guide) {
+        double[] point = locationManager == null ? null : locationManager.getCoordinates(guide.getBaseLocation());
+        if (point == null) {
+            spatialIndex.remove(guide.getGuideId());
+        } else {
+            spatialIndex.put(guide.getGuideId(), point[0], point[1]);
+        }
+    }
+
+    private List<TourGuide> resolveGuides(List<String> ids) {
+        List<TourGuide> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            TourGuide guide = guides.get(id);
+            if (guide != null) {
+                result.add(guide);
             }
+        }
+        return result;
+    }
+
+    private boolean saveGuidesToFile() {
+        try {
+            return FileHandler.writeAllToFile(GUIDES_FILE, guides.values(), this::convertGuideToString);
         } catch (Exception e) {
             Logger.error("Failed to save guides to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -319,7 +370,7 @@ public class GuideManager {
             for (String line : lines) {
                 GuideAssignment assignment = parseAssignmentFromString(line);
                 if (assignment != null) {
-                    guideAssignments.computeIfAbsent(assignment.getGuideId(), k -> new ArrayList<>()).add(assignment);
+                    guideAssignments.computeIfAbsent(assignment.getGuideId(), k -> new CopyOnWriteArrayList<>()).add(assignment);
                 }
             }
         } catch (Exception e) {
@@ -327,17 +378,16 @@ public class GuideManager {
         }
     }
 
-    private void saveAssignmentsToFile() {
+    private boolean saveAssignmentsToFile() {
         try {
-            FileHandler.clearFile(ASSIGNMENTS_FILE);
+            List<GuideAssignment> allAssignments = new ArrayList<>();
             for (List<GuideAssignment> assignments : guideAssignments.values()) {
-                for (GuideAssignment assignment : assignments) {
-                    String assignmentString = convertAssignmentToString(assignment);
-                    FileHandler.writeToFile(ASSIGNMENTS_FILE, assignmentString);
-                }
+                allAssignments.addAll(assignments);
             }
+            return FileHandler.writeAllToFile(ASSIGNMENTS_FILE, allAssignments, this::convertAssignmentToString);
         } catch (Exception e) {
             Logger.error("Failed to save assignments to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -355,6 +405,9 @@ public class GuideManager {
                 if (parts.length > 6) {
                     guide.setAvailable(Boolean.parseBoolean(parts[6]));
                 }
+                if (parts.length > 7 && !parts[7].isEmpty()) {
+                    guide.setBaseLocation(parts[7]);
+                }
                 return guide;
             }
         } catch (Exception e) {
@@ -367,7 +420,8 @@ public class GuideManager {
         return String.join("|",
             guide.getGuideId(), guide.getName(), guide.getPhone(), guide.getEmail(),
             String.valueOf(guide.getDailyRate()), String.valueOf(guide.getRating()),
-            String.valueOf(guide.isAvailable()));
+            String.valueOf(guide.isAvailable()),
+            guide.getBaseLocation() != null ? guide.getBaseLocation() : "");
     }
 
     private GuideAssignment parseAssignmentFromString(String assignmentString) {
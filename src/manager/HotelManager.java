@@ -5,22 +5,39 @@ import model.Room;
 import enumtype.RoomType;
 import util.Logger;
 import util.FileHandler;
+import util.FuzzyIndex;
+import util.PersistenceService;
+import util.PrefixIndex;
+import util.SpatialIndex;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class HotelManager {
     private Map<String, Hotel> hotels;
+    private SpatialIndex spatialIndex;
+    // Typo-tolerant fallbacks for searches that find nothing exactly
+    private FuzzyIndex fuzzySearchIndex;
+    private FuzzyIndex fuzzyLocationIndex;
+    // Prompt completions by name and location, best rated first
+    private PrefixIndex completionIndex;
+    private LocationManager locationManager;
     private static final String HOTELS_FILE = "hotels.dat";
 
     public HotelManager() {
-        this.hotels = new HashMap<>();
+        this.hotels = new ConcurrentHashMap<>();
+        this.spatialIndex = new SpatialIndex();
+        this.fuzzySearchIndex = new FuzzyIndex();
+        this.fuzzyLocationIndex = new FuzzyIndex();
+        this.completionIndex = new PrefixIndex();
         loadHotelsFromFile();
     }
 
     public void addHotel(Hotel hotel) {
         if (hotel != null && !hotels.containsKey(hotel.getHotelId())) {
             hotels.put(hotel.getHotelId(), hotel);
-            saveHotelsToFile();
+            indexHotel(hotel);
+            PersistenceService.markDirty(this, HOTELS_FILE, this::saveHotelsToFile);
             Logger.log("Hotel added: " + hotel.getName());
         }
     }
@@ -28,7 +45,11 @@ public class HotelManager {
     public void removeHotel(String hotelId) {
         Hotel removed = hotels.remove(hotelId);
         if (removed != null) {
-            saveHotelsToFile();
+            spatialIndex.remove(hotelId);
+            fuzzySearchIndex.remove(hotelId);
+            fuzzyLocationIndex.remove(hotelId);
+            completionIndex.remove(hotelId);
+            PersistenceService.markDirty(this, HOTELS_FILE, this::saveHotelsToFile);
             Logger.log("Hotel removed: " + removed.getName());
         }
     }
@@ -40,7 +61,8 @@ public class HotelManager {
     public void updateHotel(Hotel hotel) {
         if (hotel != null && hotels.containsKey(hotel.getHotelId())) {
             hotels.put(hotel.getHotelId(), hotel);
-            saveHotelsToFile();
+            indexHotel(hotel);
+            PersistenceService.markDirty(this, HOTELS_FILE, this::saveHotelsToFile);
             Logger.log("Hotel updated: " + hotel.getName());
         }
     }
@@ -55,17 +77,47 @@ public class HotelManager {
                 .collect(Collectors.toList());
     }
 
+    // Falls back to names and locations within a small edit distance when nothing contains the keyword
     public List<Hotel> searchHotels(String keyword) {
-        return hotels.values().stream()
+        List<Hotel> results = hotels.values().stream()
                 .filter(hotel -> hotel.getName().toLowerCase().contains(keyword.toLowerCase()) ||
                                hotel.getLocation().toLowerCase().contains(keyword.toLowerCase()))
                 .collect(Collectors.toList());
+        return results.isEmpty() ? resolveHotels(fuzzySearchIndex.search(keyword)) : results;
     }
 
     public List<Hotel> getHotelsByLocation(String location) {
-        return hotels.values().stream()
+        List<Hotel> results = hotels.values().stream()
                 .filter(hotel -> hotel.getLocation().toLowerCase().contains(location.toLowerCase()))
                 .collect(Collectors.toList());
+        return results.isEmpty() ? resolveHotels(fuzzyLocationIndex.search(location)) : results;
+    }
+
+    // Hotels whose name or location starts with the typed text, or has a word starting with it; best rated first
+    public List<Hotel> completeHotels(String prefix, int limit) {
+        return resolveHotels(completionIndex.complete(prefix, limit));
+    }
+
+    // Geocodes hotels through the gazetteer; the spatial index follows hotel and gazetteer changes from here on
+    public void setLocationManager(LocationManager locationManager) {
+        this.locationManager = locationManager;
+        locationManager.addChangeListener(this::reindexCoordinates);
+        reindexCoordinates();
+    }
+
+    // Nearest first
+    public List<Hotel> getHotelsWithinRadius(double latitude, double longitude, double radiusKm) {
+        return resolveHotels(spatialIndex.withinRadius(latitude, longitude, radiusKm));
+    }
+
+    public List<Hotel> getNearestHotels(double latitude, double longitude, int count) {
+        return resolveHotels(spatialIndex.nearest(latitude, longitude, count));
+    }
+
+    // Hotels around a named place such as a package location; empty when the place is not in the gazetteer
+    public List<Hotel> getHotelsNear(String place, double radiusKm) {
+        double[] point = locationManager == null ? null : locationManager.getCoordinates(place);
+        return point == null ? new ArrayList<>() : getHotelsWithinRadius(point[0], point[1], radiusKm);
     }
 
     public List<Hotel> getHotelsByRating(double minRating) {
@@ -187,6 +239,40 @@ public class HotelManager {
         return totalRooms > 0 ? (double) occupiedRooms / totalRooms * 100 : 0.0;
     }
 
+    private void indexHotel(Hotel hotel) {
+        indexCoordinates(hotel);
+        fuzzySearchIndex.put(hotel.getHotelId(), hotel.getName(), hotel.getLocation());
+        fuzzyLocationIndex.put(hotel.getHotelId(), hotel.getLocation());
+        completionIndex.put(hotel.getHotelId(), hotel.getRating(), hotel.getName(), hotel.getLocation());
+    }
+
+    private void reindexCoordinates() {
+        spatialIndex.clear();
+        for (Hotel hotel : hotels.values()) {
+            indexCoordinates(hotel);
+        }
+    }
+
+    private void indexCoordinates(Hotel hotel) {
+        double[] point = locationManager == null ? null : locationManager.getCoordinates(hotel.getLocation());
+        if (point == null) {
+            spatialIndex.remove(hotel.getHotelId());
+        } else {
+            spatialIndex.put(hotel.getHotelId(), point[0], point[1]);
+        }
+    }
+
+    private List<Hotel> resolveHotels(List<String> ids) {
+        List<Hotel> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Hotel hotel = hotels.get(id);
+            if (hotel != null) {
+                result.add(hotel);
+            }
+        }
+        return result;
+    }
+
     private void loadHotelsFromFile() {
         try {
             List<String> lines = FileHandler.readFromFile(HOTELS_FILE);
@@ -194,6 +280,7 @@ public class HotelManager {
                 Hotel hotel = parseHotelFromString(line);
                 if (hotel != null) {
                     hotels.put(hotel.getHotelId(), hotel);
+                    indexHotel(hotel);
                 }
             }
         } catch (Exception e) {
@@ -201,15 +288,12 @@ public class HotelManager {
         }
     }
 
-    private void saveHotelsToFile() {
+    private boolean saveHotelsToFile() {
         try {
-            FileHandler.clearFile(HOTELS_FILE);
-            for (Hotel hotel : hotels.values()) {
-                String hotelString = convertHotelToString(hotel);
-                FileHandler.writeToFile(HOTELS_FILE, hotelString);
-            }
+            return FileHandler.writeAllToFile(HOTELS_FILE, hotels.values(), this::convertHotelToString);
         } catch (Exception e) {
             Logger.error("Failed to save hotels to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -0,0 +1,332 @@
+package manager;
+
+import model.Transport;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Time-dependent graph over active transport legs. Every leg runs daily at its "HH:mm" departure time,
+// so a traveller who misses it waits for the next day's run; a leg whose arrival time is earlier than its
+// departure time arrives the next day. The graph is patched leg by leg as transports change
+public class JourneyPlanner {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final Map<String, Integer> stationNumbers;
+    private final List<String> stationNames;
+    // Legs leaving each station, ordered by departure minute
+    private final List<List<Leg>> departures;
+    private final Map<String, Leg> legs;
+
+    private static class Leg {
+        final Transport transport;
+        final int from;
+        final int to;
+        final int departure;
+        final int duration;
+        final double fare;
+
+        Leg(Transport transport, int from, int to, int departure, int duration) {
+            this.transport = transport;
+            this.from = from;
+            this.to = to;
+            this.departure = departure;
+            this.duration = duration;
+            this.fare = transport.getFare();
+        }
+
+        // Arrival when ready to board at the given absolute minute
+        int arrivalFrom(int ready) {
+            int wait = Math.floorMod(departure - ready, MINUTES_PER_DAY);
+            return ready + wait + duration;
+        }
+    }
+
+    private static class Label implements Comparable<Label> {
+        final int station;
+        final double fare;
+        final int arrival;
+
+        Label(int station, double fare, int arrival) {
+            this.station = station;
+            this.fare = fare;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public int compareTo(Label other) {
+            int byFare = Double.compare(fare, other.fare);
+            return byFare != 0 ? byFare : Integer.compare(arrival, other.arrival);
+        }
+    }
+
+    public JourneyPlanner() {
+        this.stationNumbers = new HashMap<>();
+        this.stationNames = new ArrayList<>();
+        this.departures = new ArrayList<>();
+        this.legs = new HashMap<>();
+    }
+
+    // Adds, moves or drops the transport's leg; inactive transports and transports without valid times are dropped
+    public synchronized void update(Transport transport) {
+        int departure = parseMinutes(transport.getDepartureTime());
+        int arrival = parseMinutes(transport.getArrivalTime());
+        boolean routable = transport.isActive() && departure >= 0 && arrival >= 0
+                && transport.getDeparture() != null && transport.getArrival() != null;
+        Leg existing = legs.get(transport.getTransportId());
+        if (existing != null && routable && existing.transport == transport && existing.departure == departure
+                && existing.duration == Math.floorMod(arrival - departure, MINUTES_PER_DAY)
+                && existing.fare == transport.getFare()
+                && existing.from == stationNumbers.getOrDefault(normalize(transport.getDeparture()), -1)
+                && existing.to == stationNumbers.getOrDefault(normalize(transport.getArrival()), -1)) {
+            return;
+        }
+        remove(transport.getTransportId());
+        if (!routable) {
+            return;
+        }
+        Leg leg = new Leg(transport, station(transport.getDeparture()), station(transport.getArrival()),
+                departure, Math.floorMod(arrival - departure, MINUTES_PER_DAY));
+        List<Leg> list = departures.get(leg.from);
+        list.add(insertionPoint(list, leg.departure), leg);
+        legs.put(transport.getTransportId(), leg);
+    }
+
+    public synchronized void remove(String transportId) {
+        Leg leg = legs.remove(transportId);
+        if (leg != null) {
+            departures.get(leg.from).remove(leg);
+        }
+    }
+
+    public synchronized void clear() {
+        stationNumbers.clear();
+        stationNames.clear();
+        departures.clear();
+        legs.clear();
+    }
+
+    public synchronized int getLegCount() {
+        return legs.size();
+    }
+
+    // Journey reaching the destination soonest when starting at the origin at the given "HH:mm"; null if unreachable
+    public synchronized Journey findEarliestArrival(String origin, String destination, String startTime,
+                                                    int minConnectionMinutes) {
+        int[] route = routeEndpoints(origin, destination, startTime);
+        if (route == null) {
+            return null;
+        }
+        int stationCount = stationNames.size();
+        int[] arrival = new int[stationCount];
+        Arrays.fill(arrival, Integer.MAX_VALUE);
+        Leg[] via = new Leg[stationCount];
+        boolean[] settled = new boolean[stationCount];
+        arrival[route[0]] = route[2];
+
+        // Entries pack the arrival minute above the station number so the queue orders by time
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        queue.add(pack(route[2], route[0]));
+        while (!queue.isEmpty()) {
+            int station = (int) (queue.poll() & 0xFFFFFFFFL);
+            if (settled[station]) {
+                continue;
+            }
+            settled[station] = true;
+            if (station == route[1]) {
+                break;
+            }
+            int ready = arrival[station] + (station == route[0] ? 0 : minConnectionMinutes);
+            for (Leg leg : departures.get(station)) {
+                int reached = leg.arrivalFrom(ready);
+                if (!settled[leg.to] && reached < arrival[leg.to]) {
+                    arrival[leg.to] = reached;
+                    via[leg.to] = leg;
+                    queue.add(pack(reached, leg.to));
+                }
+            }
+        }
+        return buildJourney(route, via, arrival);
+    }
+
+    // Lowest total fare; among equally cheap journeys the one arriving first. Null if unreachable
+    public synchronized Journey findCheapestJourney(String origin, String destination, String startTime,
+                                                    int minConnectionMinutes) {
+        int[] route = routeEndpoints(origin, destination, startTime);
+        if (route == null) {
+            return null;
+        }
+        int stationCount = stationNames.size();
+        double[] fare = new double[stationCount];
+        int[] arrival = new int[stationCount];
+        Arrays.fill(fare, Double.MAX_VALUE);
+        Arrays.fill(arrival, Integer.MAX_VALUE);
+        Leg[] via = new Leg[stationCount];
+        boolean[] settled = new boolean[stationCount];
+        fare[route[0]] = 0;
+        arrival[route[0]] = route[2];
+
+        // Ordered by fare, then arrival: with a fixed fare an earlier arrival can never lead to a later one.
+        // Improved labels are queued again and stale queue entries are skipped
+        PriorityQueue<Label> queue = new PriorityQueue<>();
+        queue.add(new Label(route[0], 0, route[2]));
+        while (!queue.isEmpty()) {
+            Label label = queue.poll();
+            int station = label.station;
+            if (settled[station] || label.fare != fare[station] || label.arrival != arrival[station]) {
+                continue;
+            }
+            settled[station] = true;
+            if (station == route[1]) {
+                break;
+            }
+            int ready = arrival[station] + (station == route[0] ? 0 : minConnectionMinutes);
+            for (Leg leg : departures.get(station)) {
+                if (settled[leg.to]) {
+                    continue;
+                }
+                double reachedFare = fare[station] + leg.fare;
+                int reached = leg.arrivalFrom(ready);
+                if (reachedFare < fare[leg.to] || (reachedFare == fare[leg.to] && reached < arrival[leg.to])) {
+                    fare[leg.to] = reachedFare;
+                    arrival[leg.to] = reached;
+                    via[leg.to] = leg;
+                    queue.add(new Label(leg.to, reachedFare, reached));
+                }
+            }
+        }
+        return buildJourney(route, via, arrival);
+    }
+
+    // {origin station, destination station, start minute}, or null when the query cannot be answered
+    private int[] routeEndpoints(String origin, String destination, String startTime) {
+        Integer from = origin == null ? null : stationNumbers.get(normalize(origin));
+        Integer to = destination == null ? null : stationNumbers.get(normalize(destination));
+        int start = parseMinutes(startTime);
+        if (from == null || to == null || from.equals(to) || start < 0) {
+            return null;
+        }
+        return new int[] {from, to, start};
+    }
+
+    private Journey buildJourney(int[] route, Leg[] via, int[] arrival) {
+        if (via[route[1]] == null) {
+            return null;
+        }
+        List<Transport> transports = new ArrayList<>();
+        List<Integer> legDepartures = new ArrayList<>();
+        List<Integer> legArrivals = new ArrayList<>();
+        double totalFare = 0;
+        for (int station = route[1]; station != route[0]; station = via[station].from) {
+            Leg leg = via[station];
+            transports.add(leg.transport);
+            legArrivals.add(arrival[station]);
+            legDepartures.add(arrival[station] - leg.duration);
+            totalFare += leg.fare;
+        }
+        Collections.reverse(transports);
+        Collections.reverse(legDepartures);
+        Collections.reverse(legArrivals);
+        return new Journey(transports, legDepartures, legArrivals, totalFare, route[2]);
+    }
+
+    private int station(String name) {
+        String key = normalize(name);
+        Integer number = stationNumbers.get(key);
+        if (number == null) {
+            number = stationNames.size();
+            stationNumbers.put(key, number);
+            stationNames.add(name.trim());
+            departures.add(new ArrayList<>());
+        }
+        return number;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // First position whose departure is later than the given minute, so equal departures keep insertion order
+    private static int insertionPoint(List<Leg> list, int departure) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list.get(mid).departure <= departure) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long pack(int minute, int station) {
+        return ((long) minute << 32) | station;
+    }
+
+    // Minutes after midnight for "HH:mm", or -1
+    static int parseMinutes(String time) {
+        if (time == null) {
+            return -1;
+        }
+        try {
+            LocalTime parsed = LocalTime.parse(time.trim());
+            return parsed.getHour() * 60 + parsed.getMinute();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    // Minutes count from midnight of the travel day; a journey may run into later days
+    public static class Journey {
+        private final List<Transport> legs;
+        private final List<Integer> departures;
+        private final List<Integer> arrivals;
+        private final double totalFare;
+        private final int startMinute;
+
+        Journey(List<Transport> legs, List<Integer> departures, List<Integer> arrivals, double totalFare,
+                int startMinute) {
+            this.legs = legs;
+            this.departures = departures;
+            this.arrivals = arrivals;
+            this.totalFare = totalFare;
+            this.startMinute = startMinute;
+        }
+
+        public List<Transport> getLegs() { return legs; }
+        public int getLegDepartureMinute(int leg) { return departures.get(leg); }
+        public int getLegArrivalMinute(int leg) { return arrivals.get(leg); }
+        public int getArrivalMinute() { return arrivals.get(arrivals.size() - 1); }
+        public int getTotalMinutes() { return getArrivalMinute() - startMinute; }
+        public int getTransfers() { return legs.size() - 1; }
+        public double getTotalFare() { return totalFare; }
+
+        public String describe() {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < legs.size(); i++) {
+                Transport leg = legs.get(i);
+                text.append(leg.getTransportId()).append(" ").append(leg.getType()).append(": ")
+                    .append(leg.getDeparture()).append(" ").append(formatMinute(departures.get(i)))
+                    .append(" -> ").append(leg.getArrival()).append(" ").append(formatMinute(arrivals.get(i)))
+                    .append("\n");
+            }
+            text.append("Transfers: ").append(getTransfers())
+                .append(", total time: ").append(getTotalMinutes() / 60).append("h ").append(getTotalMinutes() % 60).append("m")
+                .append(", total fare: ").append(String.format("%.2f", totalFare));
+            return text.toString();
+        }
+
+        public static String formatMinute(int minute) {
+            int day = minute / MINUTES_PER_DAY;
+            int time = minute % MINUTES_PER_DAY;
+            return String.format("%02d:%02d", time / 60, time % 60) + (day > 0 ? " (+" + day + "d)" : "");
+        }
+    }
+}
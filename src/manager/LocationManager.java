@@ -0,0 +1,182 @@
+package manager;
+
+import model.Location;
+import util.Logger;
+import util.FileHandler;
+import util.PersistenceService;
+import util.SpatialIndex;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Gazetteer of known places with their coordinates. Hotels, packages and guides only store a place name,
+// so their spatial indexes geocode through this manager and rebuild when it changes
+public class LocationManager {
+    private Map<String, Location> locations;
+    private Map<String, String> locationIdsByName; // normalized city name -> locationId
+    private SpatialIndex spatialIndex;
+    private List<Runnable> changeListeners;
+    private static final String LOCATIONS_FILE = "locations.dat";
+
+    public LocationManager() {
+        this.locations = new ConcurrentHashMap<>();
+        this.locationIdsByName = new ConcurrentHashMap<>();
+        this.spatialIndex = new SpatialIndex();
+        this.changeListeners = new CopyOnWriteArrayList<>();
+        loadLocationsFromFile();
+    }
+
+    public void addLocation(Location location) {
+        if (location != null && !locations.containsKey(location.getLocationId())) {
+            locations.put(location.getLocationId(), location);
+            indexLocation(location);
+            PersistenceService.markDirty(this, LOCATIONS_FILE, this::saveLocationsToFile);
+            Logger.log("Location added: " + location.getCity());
+            notifyChanged();
+        }
+    }
+
+    public void removeLocation(String locationId) {
+        Location removed = locations.remove(locationId);
+        if (removed != null) {
+            unindexLocation(removed);
+            PersistenceService.markDirty(this, LOCATIONS_FILE, this::saveLocationsToFile);
+            Logger.log("Location removed: " + removed.getCity());
+            notifyChanged();
+        }
+    }
+
+    public void updateLocation(Location location) {
+        if (location != null && locations.containsKey(location.getLocationId())) {
+            unindexLocation(locations.get(location.getLocationId()));
+            locations.put(location.getLocationId(), location);
+            indexLocation(location);
+            PersistenceService.markDirty(this, LOCATIONS_FILE, this::saveLocationsToFile);
+            Logger.log("Location updated: " + location.getCity());
+            notifyChanged();
+        }
+    }
+
+    public Location getLocationById(String locationId) {
+        return locations.get(locationId);
+    }
+
+    public List<Location> getAllLocations() {
+        return new ArrayList<>(locations.values());
+    }
+
+    // Matches the city name ignoring case; "Bangkok, Thailand" style names fall back to the part before the comma
+    public Location getLocationForPlace(String place) {
+        if (place == null) {
+            return null;
+        }
+        String locationId = locationIdsByName.get(normalize(place));
+        if (locationId == null && place.contains(",")) {
+            locationId = locationIdsByName.get(normalize(place.substring(0, place.indexOf(','))));
+        }
+        return locationId == null ? null : locations.get(locationId);
+    }
+
+    // {latitude, longitude} of a place name, or null when the place is unknown
+    public double[] getCoordinates(String place) {
+        Location location = getLocationForPlace(place);
+        return location == null ? null : new double[] {location.getLatitude(), location.getLongitude()};
+    }
+
+    public List<Location> getLocationsWithinRadius(double latitude, double longitude, double radiusKm) {
+        return resolveLocations(spatialIndex.withinRadius(latitude, longitude, radiusKm));
+    }
+
+    public List<Location> getNearestLocations(double latitude, double longitude, int count) {
+        return resolveLocations(spatialIndex.nearest(latitude, longitude, count));
+    }
+
+    // Called after any location is added, changed or removed
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public int getTotalLocations() {
+        return locations.size();
+    }
+
+    private List<Location> resolveLocations(List<String> locationIds) {
+        List<Location> result = new ArrayList<>(locationIds.size());
+        for (String locationId : locationIds) {
+            Location location = locations.get(locationId);
+            if (location != null) {
+                result.add(location);
+            }
+        }
+        return result;
+    }
+
+    private void indexLocation(Location location) {
+        if (location.getCity() != null) {
+            locationIdsByName.put(normalize(location.getCity()), location.getLocationId());
+        }
+        spatialIndex.put(location.getLocationId(), location.getLatitude(), location.getLongitude());
+    }
+
+    private void unindexLocation(Location location) {
+        if (location.getCity() != null) {
+            locationIdsByName.remove(normalize(location.getCity()), location.getLocationId());
+        }
+        spatialIndex.remove(location.getLocationId());
+    }
+
+    private void notifyChanged() {
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void loadLocationsFromFile() {
+        try {
+            List<String> lines = FileHandler.readFromFile(LOCATIONS_FILE);
+            for (String line : lines) {
+                Location location = parseLocationFromString(line);
+                if (location != null) {
+                    locations.put(location.getLocationId(), location);
+                    indexLocation(location);
+                }
+            }
+        } catch (Exception e) {
+            Logger.error("Failed to load locations from file: " + e.getMessage());
+        }
+    }
+
+    private boolean saveLocationsToFile() {
+        try {
+            return FileHandler.writeAllToFile(LOCATIONS_FILE, locations.values(), this::convertLocationToString);
+        } catch (Exception e) {
+            Logger.error("Failed to save locations to file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private Location parseLocationFromString(String locationString) {
+        try {
+            String[] parts = locationString.split("\\|");
+            if (parts.length >= 5) {
+                Location location = new Location(parts[0], parts[1], parts[2]);
+                location.setLatitude(Double.parseDouble(parts[3]));
+                location.setLongitude(Double.parseDouble(parts[4]));
+                return location;
+            }
+        } catch (Exception e) {
+            Logger.error("Failed to parse location: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private String convertLocationToString(Location location) {
+        return String.join("|",
+            location.getLocationId(), location.getCity(), location.getCountry(),
+            String.valueOf(location.getLatitude()), String.valueOf(location.getLongitude()));
+    }
+}
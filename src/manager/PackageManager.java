@@ -5,22 +5,89 @@ import enumtype.PackageCategory;
 import enumtype.TourType;
 import util.Logger;
 import util.FileHandler;
+import util.PersistenceService;
+import util.FacetIndex;
+import util.FuzzyIndex;
+import util.InvertedIndex;
+import util.PrefixIndex;
+import util.QueryCondition;
+import util.QueryEngine;
+import util.SortedNumericIndex;
+import util.SpatialIndex;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class PackageManager {
     private Map<String, TourPackage> packages;
+    private InvertedIndex searchIndex;
+    // Typo-tolerant fallbacks for searches that find nothing exactly
+    private FuzzyIndex fuzzyNameIndex;
+    private FuzzyIndex fuzzyLocationIndex;
+    // Prompt completions: packages by id, name and location weighted by bookings, and locations by package count
+    private PrefixIndex completionIndex;
+    private PrefixIndex locationCompletionIndex;
+    private Map<String, String> completedLocations;
+    private Map<String, Integer> packagesPerLocation;
+    private BookingManager bookingManager;
+    private QueryEngine<TourPackage> queryEngine;
+    private FacetIndex<TourPackage> facetIndex;
+    private SortedNumericIndex priceIndex;
+    private SortedNumericIndex durationIndex;
+    private SpatialIndex spatialIndex;
+    private LocationManager locationManager;
     private static final String PACKAGES_FILE = "packages.dat";
 
+    public static final String FACET_ACTIVE = "active";
+    public static final String FACET_CATEGORY = "category";
+    public static final String FACET_TOUR_TYPE = "tourType";
+    public static final String FACET_PRICE = "priceBucket";
+    public static final String FACET_DURATION = "duration";
+    public static final String FACET_LOCATION = "location";
+    // Lower bounds of the price facet buckets; the last bucket is open-ended
+    private static final int[] PRICE_BUCKETS = {0, 10000, 25000, 50000, 100000};
+
     public PackageManager() {
-        this.packages = new HashMap<>();
+        this.packages = new ConcurrentHashMap<>();
+        this.searchIndex = new InvertedIndex();
+        this.fuzzyNameIndex = new FuzzyIndex();
+        this.fuzzyLocationIndex = new FuzzyIndex();
+        this.completionIndex = new PrefixIndex();
+        this.locationCompletionIndex = new PrefixIndex();
+        this.completedLocations = new HashMap<>();
+        this.packagesPerLocation = new HashMap<>();
+        this.priceIndex = new SortedNumericIndex();
+        this.durationIndex = new SortedNumericIndex();
+        this.spatialIndex = new SpatialIndex();
+        this.queryEngine = new QueryEngine<>(packages::get, packages::values)
+                .addField("packageId", TourPackage::getPackageId)
+                .addField("name", TourPackage::getName)
+                .addField("location", TourPackage::getLocation)
+                .addField("description", TourPackage::getDescription)
+                .addField("basePrice", TourPackage::getBasePrice)
+                .addField("duration", TourPackage::getDuration)
+                .addField("available", TourPackage::isAvailable)
+                .addBitmapField("active", TourPackage::isActive)
+                .addBitmapField("category", TourPackage::getCategory)
+                .addBitmapField("tourType", TourPackage::getTourType)
+                .addIndexedField("createdBy", TourPackage::getCreatedBy)
+                .addIndex("basePrice", QueryEngine.numericRangeIndex(priceIndex))
+                .addIndex("duration", QueryEngine.numericRangeIndex(durationIndex));
+        this.facetIndex = new FacetIndex<TourPackage>()
+                .addFacet(FACET_ACTIVE, TourPackage::isActive)
+                .addFacet(FACET_CATEGORY, TourPackage::getCategory)
+                .addFacet(FACET_TOUR_TYPE, TourPackage::getTourType)
+                .addFacet(FACET_PRICE, pkg -> getPriceBucket(pkg.getBasePrice()))
+                .addFacet(FACET_DURATION, TourPackage::getDuration)
+                .addFacet(FACET_LOCATION, TourPackage::getLocation);
         loadPackagesFromFile();
     }
 
     public void addPackage(TourPackage tourPackage) {
         if (tourPackage != null && !packages.containsKey(tourPackage.getPackageId())) {
             packages.put(tourPackage.getPackageId(), tourPackage);
-            savePackagesToFile();
+            indexPackage(tourPackage);
+            PersistenceService.markDirty(this, PACKAGES_FILE, this::savePackagesToFile);
             Logger.log("Package added: " + tourPackage.getName());
         }
     }
@@ -28,7 +95,17 @@ public class PackageManager {
     public void removePackage(String packageId) {
         TourPackage removedPackage = packages.remove(packageId);
         if (removedPackage != null) {
-            savePackagesToFile();
+            searchIndex.remove(packageId);
+            fuzzyNameIndex.remove(packageId);
+            fuzzyLocationIndex.remove(packageId);
+            completionIndex.remove(packageId);
+            unindexLocationCompletion(packageId);
+            queryEngine.remove(packageId);
+            facetIndex.remove(packageId);
+            priceIndex.remove(packageId);
+            durationIndex.remove(packageId);
+            spatialIndex.remove(packageId);
+            PersistenceService.markDirty(this, PACKAGES_FILE, this::savePackagesToFile);
             Logger.log("Package removed: " + removedPackage.getName());
         }
     }
@@ -38,16 +115,23 @@ public class PackageManager {
     }
 
     public List<TourPackage> listActivePackages() {
-        return packages.values().stream()
-                .filter(TourPackage::isActive)
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.equalTo("active", true)).list();
     }
 
     public TourPackage getPackageById(String packageId) {
         return packages.get(packageId);
     }
 
+    // Ranked by relevance; every word must match and the last one may be partially typed.
+    // When nothing matches, falls back to names and locations within a small edit distance of the keyword
     public List<TourPackage> searchPackages(String keyword) {
+        List<String> packageIds = searchIndex.search(keyword);
+        if (packageIds != null) {
+            List<TourPackage> results = resolvePackages(packageIds);
+            return results.isEmpty() ? resolvePackages(fuzzyNameIndex.search(keyword)) : results;
+        }
+
+        // Keywords without any word characters keep the plain substring match
         return packages.values().stream()
                 .filter(pkg -> pkg.getName().toLowerCase().contains(keyword.toLowerCase()) ||
                               pkg.getLocation().toLowerCase().contains(keyword.toLowerCase()) ||
@@ -55,46 +139,77 @@ public class PackageManager {
                 .collect(Collectors.toList());
     }
 
+    // Composable filter over package fields; see the field names registered in the constructor
+    public QueryEngine.Query<TourPackage> query() {
+        return queryEngine.query();
+    }
+
     public List<TourPackage> getPackagesByCategory(PackageCategory category) {
-        return packages.values().stream()
-                .filter(pkg -> pkg.getCategory() == category)
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.equalTo("category", category)).list();
     }
 
     public List<TourPackage> getPackagesByTourType(TourType tourType) {
-        return packages.values().stream()
-                .filter(pkg -> pkg.getTourType() == tourType)
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.equalTo("tourType", tourType)).list();
     }
 
     public List<TourPackage> getPackagesByPriceRange(double minPrice, double maxPrice) {
-        return packages.values().stream()
-                .filter(pkg -> pkg.getBasePrice() >= minPrice && pkg.getBasePrice() <= maxPrice)
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.range("basePrice", minPrice, maxPrice)).list();
     }
 
     public List<TourPackage> getPackagesByDuration(int minDays, int maxDays) {
-        return packages.values().stream()
-                .filter(pkg -> pkg.getDuration() >= minDays && pkg.getDuration() <= maxDays)
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.range("duration", minDays, maxDays)).list();
     }
 
+    // Misspelled locations such as "Sylet" fall back to the closest matching locations
     public List<TourPackage> getPackagesByLocation(String location) {
-        return packages.values().stream()
-                .filter(pkg -> pkg.getLocation().toLowerCase().contains(location.toLowerCase()))
-                .collect(Collectors.toList());
+        List<TourPackage> results = query().where(QueryCondition.contains("location", location)).list();
+        return results.isEmpty() ? resolvePackages(fuzzyLocationIndex.search(location)) : results;
+    }
+
+    // Geocodes packages through the gazetteer; the spatial index follows package and gazetteer changes from here on
+    public void setLocationManager(LocationManager locationManager) {
+        this.locationManager = locationManager;
+        locationManager.addChangeListener(this::reindexCoordinates);
+        reindexCoordinates();
+    }
+
+    // Nearest first
+    public List<TourPackage> getPackagesWithinRadius(double latitude, double longitude, double radiusKm) {
+        return resolvePackages(spatialIndex.withinRadius(latitude, longitude, radiusKm));
+    }
+
+    public List<TourPackage> getNearestPackages(double latitude, double longitude, int count) {
+        return resolvePackages(spatialIndex.nearest(latitude, longitude, count));
+    }
+
+    // Ranks completions by booking count; the counts follow booking changes from here on
+    public void setBookingManager(BookingManager bookingManager) {
+        this.bookingManager = bookingManager;
+        bookingManager.addPopularityListener((packageId, bookings) -> completionIndex.setWeight(packageId, bookings));
+        for (String packageId : packages.keySet()) {
+            completionIndex.setWeight(packageId, bookingManager.getBookingCountByPackage(packageId));
+        }
+    }
+
+    // Packages whose id, name or location starts with the typed text, or has a word starting with it; most booked first
+    public List<TourPackage> completePackages(String prefix, int limit) {
+        return resolvePackages(completionIndex.complete(prefix, limit));
+    }
+
+    // Known package locations starting with the typed text, or with a word starting with it; most packages first
+    public List<String> completeLocations(String prefix, int limit) {
+        return locationCompletionIndex.complete(prefix, limit);
     }
 
     public List<TourPackage> getPackagesByCreator(String creatorId) {
-        return packages.values().stream()
-                .filter(pkg -> creatorId.equals(pkg.getCreatedBy()))
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.equalTo("createdBy", creatorId)).list();
     }
 
     public void updatePackage(TourPackage tourPackage) {
         if (tourPackage != null && packages.containsKey(tourPackage.getPackageId())) {
             packages.put(tourPackage.getPackageId(), tourPackage);
-            savePackagesToFile();
+            indexPackage(tourPackage);
+            PersistenceService.markDirty(this, PACKAGES_FILE, this::savePackagesToFile);
             Logger.log("Package updated: " + tourPackage.getName());
         }
     }
@@ -120,7 +235,7 @@ public class PackageManager {
     }
 
     public int getActivePackagesCount() {
-        return (int) packages.values().stream().filter(TourPackage::isActive).count();
+        return query().where(QueryCondition.equalTo("active", true)).count();
     }
 
     public double getAveragePackagePrice() {
@@ -131,27 +246,78 @@ public class PackageManager {
     }
 
     public TourPackage getMostExpensivePackage() {
-        return packages.values().stream()
-                .max(Comparator.comparing(TourPackage::getBasePrice))
-                .orElse(null);
+        String packageId = priceIndex.highest();
+        return packageId == null ? null : packages.get(packageId);
     }
 
     public TourPackage getCheapestPackage() {
-        return packages.values().stream()
-                .min(Comparator.comparing(TourPackage::getBasePrice))
-                .orElse(null);
+        String packageId = priceIndex.lowest();
+        return packageId == null ? null : packages.get(packageId);
+    }
+
+    // Up to count packages, cheapest first
+    public List<TourPackage> getCheapestPackages(int count) {
+        List<TourPackage> results = new ArrayList<>();
+        for (String packageId : priceIndex.lowest(count)) {
+            TourPackage pkg = packages.get(packageId);
+            if (pkg != null) {
+                results.add(pkg);
+            }
+        }
+        return results;
     }
 
     public Map<PackageCategory, Long> getPackageCountByCategory() {
-        return packages.values().stream()
-                .filter(pkg -> pkg.getCategory() != null)
-                .collect(Collectors.groupingBy(TourPackage::getCategory, Collectors.counting()));
+        Map<PackageCategory, Long> counts = new EnumMap<>(PackageCategory.class);
+        for (Map.Entry<Object, Integer> entry : facetIndex.getCounts(FACET_CATEGORY).entrySet()) {
+            counts.put((PackageCategory) entry.getKey(), (long) entry.getValue());
+        }
+        return counts;
     }
 
     public Map<TourType, Long> getPackageCountByTourType() {
-        return packages.values().stream()
-                .filter(pkg -> pkg.getTourType() != null)
-                .collect(Collectors.groupingBy(TourPackage::getTourType, Collectors.counting()));
+        Map<TourType, Long> counts = new EnumMap<>(TourType.class);
+        for (Map.Entry<Object, Integer> entry : facetIndex.getCounts(FACET_TOUR_TYPE).entrySet()) {
+            counts.put((TourType) entry.getKey(), (long) entry.getValue());
+        }
+        return counts;
+    }
+
+    // Counts per value of every facet within the selection (facet name -> selected value, see the FACET_ names);
+    // each facet ignores its own selection so the other values still show how many packages they would give
+    public Map<String, Map<Object, Integer>> getPackageFacetCounts(Map<String, Object> selection) {
+        return facetIndex.getCounts(selection);
+    }
+
+    public List<TourPackage> getPackagesByFacets(Map<String, Object> selection) {
+        List<TourPackage> results = new ArrayList<>();
+        for (String packageId : facetIndex.getIds(selection)) {
+            TourPackage pkg = packages.get(packageId);
+            if (pkg != null) {
+                results.add(pkg);
+            }
+        }
+        return results;
+    }
+
+    // Price facet value of a price: the lower bound of its bucket
+    public static Integer getPriceBucket(double price) {
+        int bucket = PRICE_BUCKETS[0];
+        for (int lowerBound : PRICE_BUCKETS) {
+            if (price >= lowerBound) {
+                bucket = lowerBound;
+            }
+        }
+        return bucket;
+    }
+
+    public static String getPriceBucketLabel(Integer bucket) {
+        for (int i = 0; i < PRICE_BUCKETS.length - 1; i++) {
+            if (PRICE_BUCKETS[i] == bucket) {
+                return "$" + bucket + " - $" + (PRICE_BUCKETS[i + 1] - 1);
+            }
+        }
+        return "$" + bucket + "+";
     }
 
     public List<TourPackage> getAvailablePackages() {
@@ -173,6 +339,7 @@ public class PackageManager {
                 TourPackage pkg = parsePackageFromString(line);
                 if (pkg != null) {
                     packages.put(pkg.getPackageId(), pkg);
+                    indexPackage(pkg);
                 }
             }
         } catch (Exception e) {
@@ -180,15 +347,80 @@ public class PackageManager {
         }
     }
 
-    private void savePackagesToFile() {
-        try {
-            FileHandler.clearFile(PACKAGES_FILE);
-            for (TourPackage pkg : packages.values()) {
-                String packageString = convertPackageToString(pkg);
-                FileHandler.writeToFile(PACKAGES_FILE, packageString);
+    private void indexPackage(TourPackage pkg) {
+        queryEngine.put(pkg.getPackageId(), pkg);
+        facetIndex.put(pkg.getPackageId(), pkg);
+        priceIndex.put(pkg.getPackageId(), pkg.getBasePrice());
+        durationIndex.put(pkg.getPackageId(), pkg.getDuration());
+        indexCoordinates(pkg);
+        searchIndex.put(pkg.getPackageId(), pkg.getName(), pkg.getLocation(), pkg.getDescription(),
+                String.join(" ", pkg.getHighlights()));
+        fuzzyNameIndex.put(pkg.getPackageId(), pkg.getName(), pkg.getLocation());
+        fuzzyLocationIndex.put(pkg.getPackageId(), pkg.getLocation());
+        completionIndex.put(pkg.getPackageId(),
+                bookingManager == null ? 0 : bookingManager.getBookingCountByPackage(pkg.getPackageId()),
+                pkg.getPackageId(), pkg.getName(), pkg.getLocation());
+        indexLocationCompletion(pkg);
+    }
+
+    private synchronized void indexLocationCompletion(TourPackage pkg) {
+        String location = pkg.getLocation();
+        if (location == null || location.equals(completedLocations.get(pkg.getPackageId()))) {
+            return;
+        }
+        unindexLocationCompletion(pkg.getPackageId());
+        completedLocations.put(pkg.getPackageId(), location);
+        int count = packagesPerLocation.merge(location, 1, Integer::sum);
+        locationCompletionIndex.put(location, count, location);
+    }
+
+    private synchronized void unindexLocationCompletion(String packageId) {
+        String location = completedLocations.remove(packageId);
+        if (location == null) {
+            return;
+        }
+        int count = packagesPerLocation.merge(location, -1, Integer::sum);
+        if (count <= 0) {
+            packagesPerLocation.remove(location);
+            locationCompletionIndex.remove(location);
+        } else {
+            locationCompletionIndex.setWeight(location, count);
+        }
+    }
+
+    private void reindexCoordinates() {
+        spatialIndex.clear();
+        for (TourPackage pkg : packages.values()) {
+            indexCoordinates(pkg);
+        }
+    }
+
+    private void indexCoordinates(TourPackage pkg) {
+        double[] point = locationManager == null ? null : locationManager.getCoordinates(pkg.getLocation());
+        if (point == null) {
+            spatialIndex.remove(pkg.getPackageId());
+        } else {
+            spatialIndex.put(pkg.getPackageId(), point[0], point[1]);
+        }
+    }
+
+    private List<TourPackage> resolvePackages(List<String> ids) {
+        List<TourPackage> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            TourPackage pkg = packages.get(id);
+            if (pkg != null) {
+                result.add(pkg);
             }
+        }
+        return result;
+    }
+
+    private boolean savePackagesToFile() {
+        try {
+            return FileHandler.writeAllToFile(PACKAGES_FILE, packages.values(), this::convertPackageToString);
         } catch (Exception e) {
             Logger.error("Failed to save packages to file: " + e.getMessage());
+            return false;
         }
     }
 
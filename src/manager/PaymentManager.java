@@ -4,23 +4,64 @@ import model.Payment;
 import model.Booking;
 import util.Logger;
 import util.FileHandler;
+import util.PersistenceService;
+import util.RunningTotals;
+import util.TimeBuckets;
+import util.MappedRecordReader;
 import util.DateUtil;
+import util.DateRangeIndex;
+import util.TrigramIndex;
+import util.QueryCondition;
+import util.QueryEngine;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class PaymentManager {
     private Map<String, Payment> payments;
-    private static final String PAYMENTS_FILE = "payments.dat";
+    private DateRangeIndex paymentDateIndex;
+    private TrigramIndex searchIndex;
+    private QueryEngine<Payment> queryEngine;
+    // Payment counts per status and method, plus completed revenue, for dashboard reads
+    private RunningTotals<Payment> totals;
+    // Completed revenue by payment day, month and year, for revenue series and period totals
+    private TimeBuckets revenueBuckets;
+    // Called with the payment date of every payment added, updated or removed
+    private List<Consumer<String>> dateChangeListeners;
+    static final String PAYMENTS_FILE = "payments.dat";
 
     public PaymentManager() {
-        this.payments = new HashMap<>();
+        this.payments = new ConcurrentHashMap<>();
+        this.paymentDateIndex = new DateRangeIndex();
+        this.searchIndex = new TrigramIndex();
+        this.revenueBuckets = new TimeBuckets();
+        this.dateChangeListeners = new CopyOnWriteArrayList<>();
+        this.totals = new RunningTotals<>(Payment::getAmount, payment -> "COMPLETED".equals(payment.getPaymentStatus()))
+                .addDimension("paymentStatus", Payment::getPaymentStatus)
+                .addDimension("paymentMethod", Payment::getPaymentMethod);
+        this.queryEngine = new QueryEngine<>(payments::get, payments::values)
+                .addField("paymentId", Payment::getPaymentId)
+                .addField("amount", Payment::getAmount)
+                .addField("transactionId", Payment::getTransactionId)
+                .addField("paymentDate", Payment::getPaymentDate)
+                .addIndexedField("bookingId", Payment::getBookingId)
+                .addBitmapField("paymentMethod", Payment::getPaymentMethod)
+                .addBitmapField("paymentStatus", Payment::getPaymentStatus)
+                .addIndex("paymentDate", QueryEngine.dateRangeIndex(paymentDateIndex));
+        for (String field : new String[] {"paymentId", "bookingId", "paymentMethod", "transactionId"}) {
+            queryEngine.addIndex(field, QueryEngine.substringIndex(searchIndex));
+        }
         loadPaymentsFromFile();
     }
 
     public void addPayment(Payment payment) {
         if (payment != null && !payments.containsKey(payment.getPaymentId())) {
             payments.put(payment.getPaymentId(), payment);
-            savePaymentsToFile();
+            indexPayment(payment);
+            PersistenceService.markDirty(this, PAYMENTS_FILE, this::savePaymentsToFile);
+            fireDateChange(payment.getPaymentDate());
             Logger.log("Payment added: " + payment.getPaymentId() + " - Amount: $" + payment.getAmount());
         }
     }
@@ -28,7 +69,13 @@ public class PaymentManager {
     public void removePayment(String paymentId) {
         Payment removed = payments.remove(paymentId);
         if (removed != null) {
-            savePaymentsToFile();
+            paymentDateIndex.remove(paymentId);
+            searchIndex.remove(paymentId);
+            queryEngine.remove(paymentId);
+            totals.remove(paymentId);
+            revenueBuckets.remove(paymentId);
+            PersistenceService.markDirty(this, PAYMENTS_FILE, this::savePaymentsToFile);
+            fireDateChange(removed.getPaymentDate());
             Logger.log("Payment removed: " + paymentId);
         }
     }
@@ -39,20 +86,32 @@ public class PaymentManager {
 
     public void updatePayment(Payment payment) {
         if (payment != null && payments.containsKey(payment.getPaymentId())) {
-            payments.put(payment.getPaymentId(), payment);
-            savePaymentsToFile();
+            Payment previous = payments.put(payment.getPaymentId(), payment);
+            indexPayment(payment);
+            PersistenceService.markDirty(this, PAYMENTS_FILE, this::savePaymentsToFile);
+            if (previous != null && !Objects.equals(previous.getPaymentDate(), payment.getPaymentDate())) {
+                fireDateChange(previous.getPaymentDate());
+            }
+            fireDateChange(payment.getPaymentDate());
             Logger.log("Payment updated: " + payment.getPaymentId());
         }
     }
 
+    public void addDateChangeListener(Consumer<String> listener) {
+        dateChangeListeners.add(listener);
+    }
+
     public List<Payment> getAllPayments() {
         return new ArrayList<>(payments.values());
     }
 
+    // Composable filter over payment fields; see the field names registered in the constructor
+    public QueryEngine.Query<Payment> query() {
+        return queryEngine.query();
+    }
+
     public List<Payment> getPaymentsByBooking(String bookingId) {
-        return payments.values().stream()
-                .filter(payment -> payment.getBookingId().equals(bookingId))
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.equalTo("bookingId", bookingId)).list();
     }
 
     public List<Payment> getPaymentsByUser(List<Booking> userBookings) {
@@ -60,15 +119,11 @@ public class PaymentManager {
                 .map(Booking::getBookingId)
                 .collect(Collectors.toSet());
         
-        return payments.values().stream()
-                .filter(payment -> bookingIds.contains(payment.getBookingId()))
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.in("bookingId", bookingIds.toArray())).list();
     }
 
     public List<Payment> getPaymentsByStatus(String status) {
-        return payments.values().stream()
-                .filter(payment -> payment.getPaymentStatus().equals(status))
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.equalTo("paymentStatus", status)).list();
     }
 
     public List<Payment> getCompletedPayments() {
@@ -88,18 +143,25 @@ public class PaymentManager {
     }
 
     public List<Payment> getPaymentsByMethod(String paymentMethod) {
-        return payments.values().stream()
-                .filter(payment -> payment.getPaymentMethod().equals(paymentMethod))
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.equalTo("paymentMethod", paymentMethod)).list();
     }
 
     public List<Payment> getPaymentsByDate(String date) {
+        int[] days = DateRangeIndex.toDayRange(date);
+        if (days != null) {
+            return resolvePayments(paymentDateIndex.getIds(days[0], days[1]));
+        }
         return payments.values().stream()
                 .filter(payment -> payment.getPaymentDate().startsWith(date))
                 .collect(Collectors.toList());
     }
 
     public List<Payment> getPaymentsInDateRange(String startDate, String endDate) {
+        int fromDay = DateRangeIndex.toEpochDay(startDate);
+        int toDay = DateRangeIndex.toEpochDay(endDate);
+        if (fromDay != DateRangeIndex.NULL_EPOCH_DAY && toDay != DateRangeIndex.NULL_EPOCH_DAY) {
+            return resolvePayments(paymentDateIndex.getIds(fromDay, toDay));
+        }
         return payments.values().stream()
                 .filter(payment -> {
                     String paymentDate = payment.getPaymentDate().substring(0, 10); // Extract date part
@@ -109,10 +171,13 @@ public class PaymentManager {
                 .collect(Collectors.toList());
     }
 
+    // True when some payment date cannot be placed on the date index, so date-range lookups would miss it
+    public boolean hasUndatedPayments() {
+        return paymentDateIndex.size() < payments.size();
+    }
+
     public List<Payment> getPaymentsByAmountRange(double minAmount, double maxAmount) {
-        return payments.values().stream()
-                .filter(payment -> payment.getAmount() >= minAmount && payment.getAmount() <= maxAmount)
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.range("amount", minAmount, maxAmount)).list();
     }
 
     public boolean processPayment(String paymentId) {
@@ -149,12 +214,14 @@ public class PaymentManager {
     }
 
     public double getTotalRevenue() {
-        return getCompletedPayments().stream()
-                .mapToDouble(Payment::getAmount)
-                .sum();
+        return totals.revenue();
     }
 
     public double getRevenueByDate(String date) {
+        int[] days = DateRangeIndex.toDayRange(date);
+        if (days != null) {
+            return revenueBuckets.amount(days[0], days[1]);
+        }
         return getPaymentsByDate(date).stream()
                 .filter(payment -> "COMPLETED".equals(payment.getPaymentStatus()))
                 .mapToDouble(Payment::getAmount)
@@ -162,6 +229,11 @@ public class PaymentManager {
     }
 
     public double getRevenueInDateRange(String startDate, String endDate) {
+        int fromDay = DateRangeIndex.toEpochDay(startDate);
+        int toDay = DateRangeIndex.toEpochDay(endDate);
+        if (fromDay != DateRangeIndex.NULL_EPOCH_DAY && toDay != DateRangeIndex.NULL_EPOCH_DAY) {
+            return revenueBuckets.amount(fromDay, toDay);
+        }
         return getPaymentsInDateRange(startDate, endDate).stream()
                 .filter(payment -> "COMPLETED".equals(payment.getPaymentStatus()))
                 .mapToDouble(Payment::getAmount)
@@ -169,10 +241,7 @@ public class PaymentManager {
     }
 
     public double getRevenueByPaymentMethod(String paymentMethod) {
-        return getPaymentsByMethod(paymentMethod).stream()
-                .filter(payment -> "COMPLETED".equals(payment.getPaymentStatus()))
-                .mapToDouble(Payment::getAmount)
-                .sum();
+        return totals.revenue("paymentMethod", paymentMethod);
     }
 
     public int getTotalPayments() {
@@ -180,9 +249,7 @@ public class PaymentManager {
     }
 
     public int getPaymentCountByStatus(String status) {
-        return (int) payments.values().stream()
-                .filter(payment -> payment.getPaymentStatus().equals(status))
-                .count();
+        return totals.count("paymentStatus", status);
     }
 
     public double getAveragePaymentAmount() {
@@ -205,23 +272,18 @@ public class PaymentManager {
     }
 
     public Map<String, Double> getRevenueByPaymentMethod() {
-        Map<String, Double> revenueByMethod = new HashMap<>();
-        
-        for (Payment payment : getCompletedPayments()) {
-            String method = payment.getPaymentMethod();
-            revenueByMethod.put(method, revenueByMethod.getOrDefault(method, 0.0) + payment.getAmount());
-        }
-        
-        return revenueByMethod;
+        return totals.revenues("paymentMethod");
     }
 
     public Map<String, Integer> getPaymentCountByMethod() {
-        return payments.values().stream()
-                .collect(Collectors.groupingBy(Payment::getPaymentMethod, 
-                        Collectors.collectingAndThen(Collectors.counting(), Math::toIntExact)));
+        return totals.counts("paymentMethod");
     }
 
+    // Read from the revenue buckets in date order; the scan below only runs while a completed payment has an unparseable date
     public Map<String, Double> getDailyRevenue() {
+        if (revenueBuckets.undatedCount() == 0) {
+            return revenueBuckets.dailyAmounts();
+        }
         Map<String, Double> dailyRevenue = new HashMap<>();
         
         for (Payment payment : getCompletedPayments()) {
@@ -233,6 +295,9 @@ public class PaymentManager {
     }
 
     public Map<String, Double> getMonthlyRevenue() {
+        if (revenueBuckets.undatedCount() == 0) {
+            return revenueBuckets.monthlyAmounts();
+        }
         Map<String, Double> monthlyRevenue = new HashMap<>();
         
         for (Payment payment : getCompletedPayments()) {
@@ -243,6 +308,20 @@ public class PaymentManager {
         return monthlyRevenue;
     }
 
+    public Map<String, Double> getYearlyRevenue() {
+        if (revenueBuckets.undatedCount() == 0) {
+            return revenueBuckets.yearlyAmounts();
+        }
+        Map<String, Double> yearlyRevenue = new HashMap<>();
+        
+        for (Payment payment : getCompletedPayments()) {
+            String year = payment.getPaymentDate().substring(0, 4);
+            yearlyRevenue.put(year, yearlyRevenue.getOrDefault(year, 0.0) + payment.getAmount());
+        }
+        
+        return yearlyRevenue;
+    }
+
     public double getSuccessRate() {
         int totalPayments = getTotalPayments();
         if (totalPayments == 0) return 0.0;
@@ -259,6 +338,20 @@ public class PaymentManager {
         return (double) failedPayments / totalPayments * 100;
     }
 
+    // Cross-checks the running counts and revenue against a full scan; mismatches are logged
+    public boolean verifyAggregates() {
+        List<String> mismatches = totals.verify(payments.values(), Payment::getPaymentId);
+        for (String mismatch : mismatches) {
+            Logger.error("Payment aggregates out of step: " + mismatch);
+        }
+        return mismatches.isEmpty();
+    }
+
+    // When on, every aggregate read is verified against a full scan first; for debugging only
+    public void setAggregateVerification(boolean enabled) {
+        totals.setVerificationSource(enabled ? payments::values : null, Payment::getPaymentId);
+    }
+
     public List<Payment> getTodaysPayments() {
         String today = DateUtil.getCurrentDate();
         return getPaymentsByDate(today);
@@ -270,50 +363,83 @@ public class PaymentManager {
     }
 
     public List<Payment> searchPayments(String keyword) {
+        List<String> paymentIds = searchIndex.search(keyword);
+        if (paymentIds != null) {
+            return resolvePayments(paymentIds);
+        }
         return payments.values().stream()
                 .filter(payment -> payment.getPaymentId().toLowerCase().contains(keyword.toLowerCase()) ||
                                  payment.getBookingId().toLowerCase().contains(keyword.toLowerCase()) ||
                                  payment.getPaymentMethod().toLowerCase().contains(keyword.toLowerCase()) ||
-                                 payment.getTransactionId().toLowerCase().contains(keyword.toLowerCase()))
+                                 (payment.getTransactionId() != null &&
+                                  payment.getTransactionId().toLowerCase().contains(keyword.toLowerCase())))
                 .collect(Collectors.toList());
     }
 
     private void loadPaymentsFromFile() {
         try {
-            List<String> lines = FileHandler.readFromFile(PAYMENTS_FILE);
-            for (String line : lines) {
-                Payment payment = parsePaymentFromString(line);
+            FileHandler.scanRecords(PAYMENTS_FILE, record -> {
+                Payment payment = parsePaymentFromRecord(record);
                 if (payment != null) {
                     payments.put(payment.getPaymentId(), payment);
+                    indexPayment(payment);
                 }
-            }
+            });
         } catch (Exception e) {
             Logger.error("Failed to load payments from file: " + e.getMessage());
         }
     }
 
-    private void savePaymentsToFile() {
-        try {
-            FileHandler.clearFile(PAYMENTS_FILE);
-            for (Payment payment : payments.values()) {
-                String paymentString = convertPaymentToString(payment);
-                FileHandler.writeToFile(PAYMENTS_FILE, paymentString);
+    private void fireDateChange(String paymentDate) {
+        for (Consumer<String> listener : dateChangeListeners) {
+            listener.accept(paymentDate);
+        }
+    }
+
+    // Only completed payments count towards the indexed revenue totals; the search index covers the fields searchPayments matches
+    private void indexPayment(Payment payment) {
+        queryEngine.put(payment.getPaymentId(), payment);
+        totals.put(payment.getPaymentId(), payment);
+        paymentDateIndex.put(payment.getPaymentId(), payment.getPaymentDate(), 0.0);
+        if ("COMPLETED".equals(payment.getPaymentStatus())) {
+            revenueBuckets.put(payment.getPaymentId(), payment.getPaymentDate(), payment.getAmount());
+        } else {
+            revenueBuckets.remove(payment.getPaymentId());
+        }
+        searchIndex.put(payment.getPaymentId(), payment.getPaymentId(), payment.getBookingId(),
+                payment.getPaymentMethod(), payment.getTransactionId());
+    }
+
+    private List<Payment> resolvePayments(Collection<String> paymentIds) {
+        List<Payment> result = new ArrayList<>(paymentIds.size());
+        for (String paymentId : paymentIds) {
+            Payment payment = payments.get(paymentId);
+            if (payment != null) {
+                result.add(payment);
             }
+        }
+        return result;
+    }
+
+    private boolean savePaymentsToFile() {
+        try {
+            return FileHandler.writeAllToFile(PAYMENTS_FILE, payments.values(), this::convertPaymentToString);
         } catch (Exception e) {
             Logger.error("Failed to save payments to file: " + e.getMessage());
+            return false;
         }
     }
 
-    private Payment parsePaymentFromString(String paymentString) {
+    private Payment parsePaymentFromRecord(MappedRecordReader.Record record) {
         try {
-            String[] parts = paymentString.split("\\|");
-            if (parts.length >= 4) {
-                Payment payment = new Payment(parts[0], parts[1], Double.parseDouble(parts[2]), parts[3]);
-                if (parts.length > 4) {
-                    payment.setPaymentStatus(parts[4]);
+            if (record.getFieldCount() >= 4) {
+                Payment payment = new Payment(record.getString(0), record.getString(1),
+                                            record.getDouble(2), record.getString(3));
+                if (record.getFieldCount() > 4) {
+                    payment.setPaymentStatus(record.getString(4));
                 }
-                if (parts.length > 5) {
-                    payment.setTransactionId(parts[5]);
+                if (record.getFieldCount() > 5 && !record.isEmpty(5)) {
+                    payment.setTransactionId(record.getString(5));
                 }
                 return payment;
             }
@@ -4,24 +4,34 @@ import model.Payment;
 import schedule.CancellationRequest;
 import util.Logger;
 import util.FileHandler;
+import util.PersistenceService;
 import util.DateUtil;
+import util.DateRangeIndex;
+import util.TrigramIndex;
 import util.IDGenerator;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class RefundManager {
     private Map<String, CancellationRequest> refundRequests;
     private PaymentManager paymentManager;
+    private DateRangeIndex requestDateIndex;
+    private TrigramIndex searchIndex;
     private static final String REFUNDS_FILE = "refunds.dat";
 
     public RefundManager() {
-        this.refundRequests = new HashMap<>();
+        this.refundRequests = new ConcurrentHashMap<>();
+        this.requestDateIndex = new DateRangeIndex();
+        this.searchIndex = new TrigramIndex();
         this.paymentManager = new PaymentManager();
         loadRefundsFromFile();
     }
 
     public RefundManager(PaymentManager paymentManager) {
-        this.refundRequests = new HashMap<>();
+        this.refundRequests = new ConcurrentHashMap<>();
+        this.requestDateIndex = new DateRangeIndex();
+        this.searchIndex = new TrigramIndex();
         this.paymentManager = paymentManager;
         loadRefundsFromFile();
     }
@@ -32,7 +42,8 @@ public class RefundManager {
         request.setOriginalAmount(originalAmount);
         
         refundRequests.put(requestId, request);
-        saveRefundsToFile();
+        indexRefundRequest(requestId, request);
+        PersistenceService.markDirty(this, REFUNDS_FILE, this::saveRefundsToFile);
         
         Logger.log("Refund request created: " + requestId + " for booking " + bookingId);
         return request;
@@ -41,7 +52,9 @@ public class RefundManager {
     public void removeRefundRequest(String requestId) {
         CancellationRequest removed = refundRequests.remove(requestId);
         if (removed != null) {
-            saveRefundsToFile();
+            requestDateIndex.remove(requestId);
+            searchIndex.remove(requestId);
+            PersistenceService.markDirty(this, REFUNDS_FILE, this::saveRefundsToFile);
             Logger.log("Refund request removed: " + requestId);
         }
     }
@@ -226,7 +239,8 @@ public class RefundManager {
     public void updateRefundRequest(CancellationRequest request) {
         if (request != null && refundRequests.containsKey(request.getRequestId())) {
             refundRequests.put(request.getRequestId(), request);
-            saveRefundsToFile();
+            indexRefundRequest(request.getRequestId(), request);
+            PersistenceService.markDirty(this, REFUNDS_FILE, this::saveRefundsToFile);
         }
     }
 
@@ -238,6 +252,10 @@ public class RefundManager {
     }
 
     public double getTotalRefundAmountByDate(String date) {
+        int[] days = DateRangeIndex.toDayRange(date);
+        if (days != null) {
+            return requestDateIndex.sum(days[0], days[1]);
+        }
         return refundRequests.values().stream()
                 .filter(request -> request.isProcessingComplete() && 
                                  request.getRequestDate().startsWith(date))
@@ -287,6 +305,17 @@ public class RefundManager {
     }
 
     public List<CancellationRequest> searchRefundRequests(String keyword) {
+        List<String> requestIds = searchIndex.search(keyword);
+        if (requestIds != null) {
+            List<CancellationRequest> results = new ArrayList<>(requestIds.size());
+            for (String requestId : requestIds) {
+                CancellationRequest request = refundRequests.get(requestId);
+                if (request != null) {
+                    results.add(request);
+                }
+            }
+            return results;
+        }
         return refundRequests.values().stream()
                 .filter(request -> request.getRequestId().toLowerCase().contains(keyword.toLowerCase()) ||
                                  request.getBookingId().toLowerCase().contains(keyword.toLowerCase()) ||
@@ -302,6 +331,7 @@ public class RefundManager {
                 CancellationRequest request = parseRefundFromString(line);
                 if (request != null) {
                     refundRequests.put(request.getRequestId(), request);
+                    indexRefundRequest(request.getRequestId(), request);
                 }
             }
         } catch (Exception e) {
@@ -309,15 +339,20 @@ public class RefundManager {
         }
     }
 
-    private void saveRefundsToFile() {
+    // Only completed refunds count towards the indexed refund totals; the search index covers the fields searchRefundRequests matches
+    private void indexRefundRequest(String requestId, CancellationRequest request) {
+        requestDateIndex.put(requestId, request.getRequestDate(),
+                request.isProcessingComplete() ? request.getRefundAmount() : 0.0);
+        searchIndex.put(requestId, request.getRequestId(), request.getBookingId(), request.getUserId(),
+                request.getReason());
+    }
+
+    private boolean saveRefundsToFile() {
         try {
-            FileHandler.clearFile(REFUNDS_FILE);
-            for (CancellationRequest request : refundRequests.values()) {
-                String refundString = convertRefundToString(request);
-                FileHandler.writeToFile(REFUNDS_FILE, refundString);
-            }
+            return FileHandler.writeAllToFile(REFUNDS_FILE, refundRequests.values(), this::convertRefundToString);
         } catch (Exception e) {
             Logger.error("Failed to save refunds to file: " + e.getMessage());
+            return false;
         }
     }
 
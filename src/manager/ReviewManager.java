@@ -5,26 +5,83 @@ import feedback.HotelReview;
 import feedback.Rating;
 import util.Logger;
 import util.FileHandler;
+import util.PersistenceService;
 import util.DateUtil;
 import util.IDGenerator;
+import util.Leaderboard;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class ReviewManager {
     private Map<String, PackageReview> packageReviews;
     private Map<String, HotelReview> hotelReviews;
     private Map<String, Rating> ratings;
+    private ReviewRankings packageRankings;
+    private ReviewRankings hotelRankings;
     private static final String PACKAGE_REVIEWS_FILE = "package_reviews.dat";
     private static final String HOTEL_REVIEWS_FILE = "hotel_reviews.dat";
     private static final String RATINGS_FILE = "ratings.dat";
 
     public ReviewManager() {
-        this.packageReviews = new HashMap<>();
-        this.hotelReviews = new HashMap<>();
-        this.ratings = new HashMap<>();
+        this.packageReviews = new ConcurrentHashMap<>();
+        this.hotelReviews = new ConcurrentHashMap<>();
+        this.ratings = new ConcurrentHashMap<>();
+        this.packageRankings = new ReviewRankings();
+        this.hotelRankings = new ReviewRankings();
         loadReviewsFromFile();
     }
 
+    // Leaderboards over one kind of review, updated as reviews change: reviews by rating and by date,
+    // and reviewed items by average rating from running totals
+    private static class ReviewRankings {
+        final Leaderboard<Double> reviewsByRating = new Leaderboard<>();
+        final Leaderboard<String> reviewsByDate = new Leaderboard<>();
+        final Leaderboard<Double> targetsByAverage = new Leaderboard<>();
+        // Target and rating each review was last ranked under; reviews are edited in place before
+        // the update call, so the old values cannot be read back from the object itself
+        final Map<String, String> rankedTargets = new HashMap<>();
+        final Map<String, Double> rankedRatings = new HashMap<>();
+        // targetId -> {rating sum, review count}
+        final Map<String, double[]> ratingTotals = new HashMap<>();
+
+        synchronized void put(String reviewId, String targetId, double rating, String reviewDate) {
+            remove(reviewId);
+            rankedTargets.put(reviewId, targetId);
+            rankedRatings.put(reviewId, rating);
+            reviewsByRating.put(reviewId, rating);
+            reviewsByDate.put(reviewId, reviewDate);
+            if (targetId != null) {
+                double[] totals = ratingTotals.computeIfAbsent(targetId, id -> new double[2]);
+                totals[0] += rating;
+                totals[1]++;
+                targetsByAverage.put(targetId, totals[0] / totals[1]);
+            }
+        }
+
+        synchronized void remove(String reviewId) {
+            if (!rankedRatings.containsKey(reviewId)) {
+                return;
+            }
+            String targetId = rankedTargets.remove(reviewId);
+            double rating = rankedRatings.remove(reviewId);
+            reviewsByRating.remove(reviewId);
+            reviewsByDate.remove(reviewId);
+            double[] totals = targetId == null ? null : ratingTotals.get(targetId);
+            if (totals != null) {
+                totals[0] -= rating;
+                totals[1]--;
+                if (totals[1] <= 0) {
+                    ratingTotals.remove(targetId);
+                    targetsByAverage.remove(targetId);
+                } else {
+                    targetsByAverage.put(targetId, totals[0] / totals[1]);
+                }
+            }
+        }
+    }
+
     // Package Review Management
     public PackageReview addPackageReview(String userId, String packageId, String reviewText, double rating) {
         try {
@@ -32,11 +89,12 @@ public class ReviewManager {
             PackageReview review = new PackageReview(reviewId, userId, packageId, reviewText, rating);
             
             packageReviews.put(reviewId, review);
+            rankPackageReview(review);
             
             // Also add a rating entry
             addRating(userId, packageId, rating, "PACKAGE");
             
-            savePackageReviewsToFile();
+            PersistenceService.markDirty(this, PACKAGE_REVIEWS_FILE, this::savePackageReviewsToFile);
             Logger.log("Package review added: " + reviewId + " for package " + packageId);
             
             return review;
@@ -50,7 +108,8 @@ public class ReviewManager {
         try {
             PackageReview removed = packageReviews.remove(reviewId);
             if (removed != null) {
-                savePackageReviewsToFile();
+                packageRankings.remove(reviewId);
+                PersistenceService.markDirty(this, PACKAGE_REVIEWS_FILE, this::savePackageReviewsToFile);
                 Logger.log("Package review removed: " + reviewId);
             }
         } catch (Exception e) {
@@ -101,11 +160,12 @@ public class ReviewManager {
             HotelReview review = new HotelReview(reviewId, userId, hotelId, comments, rating);
             
             hotelReviews.put(reviewId, review);
+            rankHotelReview(review);
             
             // Also add a rating entry
             addRating(userId, hotelId, rating, "HOTEL");
             
-            saveHotelReviewsToFile();
+            PersistenceService.markDirty(this, HOTEL_REVIEWS_FILE, this::saveHotelReviewsToFile);
             Logger.log("Hotel review added: " + reviewId + " for hotel " + hotelId);
             
             return review;
@@ -119,7 +179,8 @@ public class ReviewManager {
         try {
             HotelReview removed = hotelReviews.remove(reviewId);
             if (removed != null) {
-                saveHotelReviewsToFile();
+                hotelRankings.remove(reviewId);
+                PersistenceService.markDirty(this, HOTEL_REVIEWS_FILE, this::saveHotelReviewsToFile);
                 Logger.log("Hotel review removed: " + reviewId);
             }
         } catch (Exception e) {
@@ -170,7 +231,7 @@ public class ReviewManager {
             Rating rating = new Rating(ratingId, userId, entityId, ratingValue, entityType);
             
             ratings.put(ratingId, rating);
-            saveRatingsToFile();
+            PersistenceService.markDirty(this, RATINGS_FILE, this::saveRatingsToFile);
             
             Logger.log("Rating added: " + ratingId + " for " + entityType + " " + entityId);
             return rating;
@@ -184,7 +245,7 @@ public class ReviewManager {
         try {
             Rating removed = ratings.remove(ratingId);
             if (removed != null) {
-                saveRatingsToFile();
+                PersistenceService.markDirty(this, RATINGS_FILE, this::saveRatingsToFile);
                 Logger.log("Rating removed: " + ratingId);
             }
         } catch (Exception e) {
@@ -249,31 +310,48 @@ public class ReviewManager {
     }
 
     public List<PackageReview> getTopRatedPackageReviews(int limit) {
-        return packageReviews.values().stream()
-                .sorted(Comparator.comparing(PackageReview::getRating).reversed())
-                .limit(limit)
-                .collect(Collectors.toList());
+        return resolveReviews(packageRankings.reviewsByRating.top(limit), packageReviews);
     }
 
     public List<HotelReview> getTopRatedHotelReviews(int limit) {
-        return hotelReviews.values().stream()
-                .sorted(Comparator.comparing(HotelReview::getRating).reversed())
-                .limit(limit)
-                .collect(Collectors.toList());
+        return resolveReviews(hotelRankings.reviewsByRating.top(limit), hotelReviews);
     }
 
+    // Newest first by review date
     public List<PackageReview> getRecentPackageReviews(int limit) {
-        return packageReviews.values().stream()
-                .sorted(Comparator.comparing(PackageReview::getReviewDate).reversed())
-                .limit(limit)
-                .collect(Collectors.toList());
+        return resolveReviews(packageRankings.reviewsByDate.top(limit), packageReviews);
     }
 
     public List<HotelReview> getRecentHotelReviews(int limit) {
-        return hotelReviews.values().stream()
-                .sorted(Comparator.comparing(HotelReview::getReviewDate).reversed())
-                .limit(limit)
-                .collect(Collectors.toList());
+        return resolveReviews(hotelRankings.reviewsByDate.top(limit), hotelReviews);
+    }
+
+    // Reviewed package ids by average review rating, highest first
+    public List<String> getTopRatedPackageIds(int limit) {
+        return packageRankings.targetsByAverage.top(limit);
+    }
+
+    public List<String> getTopRatedHotelIds(int limit) {
+        return hotelRankings.targetsByAverage.top(limit);
+    }
+
+    private void rankPackageReview(PackageReview review) {
+        packageRankings.put(review.getReviewId(), review.getPackageId(), review.getRating(), review.getReviewDate());
+    }
+
+    private void rankHotelReview(HotelReview review) {
+        hotelRankings.put(review.getReviewId(), review.getHotelId(), review.getRating(), review.getReviewDate());
+    }
+
+    private static <R> List<R> resolveReviews(List<String> reviewIds, Map<String, R> reviews) {
+        List<R> result = new ArrayList<>(reviewIds.size());
+        for (String reviewId : reviewIds) {
+            R review = reviews.get(reviewId);
+            if (review != null) {
+                result.add(review);
+            }
+        }
+        return result;
     }
 
     public boolean hasUserReviewedPackage(String userId, String packageId) {
@@ -356,6 +434,7 @@ public class ReviewManager {
                 PackageReview review = parsePackageReviewFromString(line);
                 if (review != null) {
                     packageReviews.put(review.getReviewId(), review);
+                    rankPackageReview(review);
                 }
             }
         } catch (Exception e) {
@@ -363,15 +442,12 @@ public class ReviewManager {
         }
     }
 
-    private void savePackageReviewsToFile() {
+    private boolean savePackageReviewsToFile() {
         try {
-            FileHandler.clearFile(PACKAGE_REVIEWS_FILE);
-            for (PackageReview review : packageReviews.values()) {
-                String reviewString = convertPackageReviewToString(review);
-                FileHandler.writeToFile(PACKAGE_REVIEWS_FILE, reviewString);
-            }
+            return FileHandler.writeAllToFile(PACKAGE_REVIEWS_FILE, packageReviews.values(), this::convertPackageReviewToString);
         } catch (Exception e) {
             Logger.error("Failed to save package reviews to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -382,6 +458,7 @@ public class ReviewManager {
                 HotelReview review = parseHotelReviewFromString(line);
                 if (review != null) {
                     hotelReviews.put(review.getReviewId(), review);
+                    rankHotelReview(review);
                 }
             }
         } catch (Exception e) {
@@ -389,15 +466,12 @@ public class ReviewManager {
         }
     }
 
-    private void saveHotelReviewsToFile() {
+    private boolean saveHotelReviewsToFile() {
         try {
-            FileHandler.clearFile(HOTEL_REVIEWS_FILE);
-            for (HotelReview review : hotelReviews.values()) {
-                String reviewString = convertHotelReviewToString(review);
-                FileHandler.writeToFile(HOTEL_REVIEWS_FILE, reviewString);
-            }
+            return FileHandler.writeAllToFile(HOTEL_REVIEWS_FILE, hotelReviews.values(), this::convertHotelReviewToString);
         } catch (Exception e) {
             Logger.error("Failed to save hotel reviews to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -415,15 +489,12 @@ public class ReviewManager {
         }
     }
 
-    private void saveRatingsToFile() {
+    private boolean saveRatingsToFile() {
         try {
-            FileHandler.clearFile(RATINGS_FILE);
-            for (Rating rating : ratings.values()) {
-                String ratingString = convertRatingToString(rating);
-                FileHandler.writeToFile(RATINGS_FILE, ratingString);
-            }
+            return FileHandler.writeAllToFile(RATINGS_FILE, ratings.values(), this::convertRatingToString);
         } catch (Exception e) {
             Logger.error("Failed to save ratings to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -486,7 +557,8 @@ public class ReviewManager {
     public void updatePackageReview(PackageReview review) {
         if (review != null && packageReviews.containsKey(review.getReviewId())) {
             packageReviews.put(review.getReviewId(), review);
-            savePackageReviewsToFile();
+            rankPackageReview(review);
+            PersistenceService.markDirty(this, PACKAGE_REVIEWS_FILE, this::savePackageReviewsToFile);
             Logger.log("Package review updated: " + review.getReviewId());
         }
     }
@@ -494,7 +566,8 @@ public class ReviewManager {
     public void updateHotelReview(HotelReview review) {
         if (review != null && hotelReviews.containsKey(review.getReviewId())) {
             hotelReviews.put(review.getReviewId(), review);
-            saveHotelReviewsToFile();
+            rankHotelReview(review);
+            PersistenceService.markDirty(this, HOTEL_REVIEWS_FILE, this::saveHotelReviewsToFile);
             Logger.log("Hotel review updated: " + review.getReviewId());
         }
     }
@@ -502,21 +575,35 @@ public class ReviewManager {
     public void updateRating(Rating rating) {
         if (rating != null && ratings.containsKey(rating.getRatingId())) {
             ratings.put(rating.getRatingId(), rating);
-            saveRatingsToFile();
+            PersistenceService.markDirty(this, RATINGS_FILE, this::saveRatingsToFile);
             Logger.log("Rating updated: " + rating.getRatingId());
         }
     }
 
     // Bulk operations
+    // Matching ids are collected first, then each review is removed from the map and from its leaderboards
+    private static <R> void removeReviews(Map<String, R> reviews, ReviewRankings rankings, Predicate<R> filter) {
+        List<String> reviewIds = new ArrayList<>();
+        for (Map.Entry<String, R> entry : reviews.entrySet()) {
+            if (filter.test(entry.getValue())) {
+                reviewIds.add(entry.getKey());
+            }
+        }
+        for (String reviewId : reviewIds) {
+            reviews.remove(reviewId);
+            rankings.remove(reviewId);
+        }
+    }
+
     public void removeAllReviewsByUser(String userId) {
         try {
-            packageReviews.entrySet().removeIf(entry -> entry.getValue().getUserId().equals(userId));
-            hotelReviews.entrySet().removeIf(entry -> entry.getValue().getUserId().equals(userId));
+            removeReviews(packageReviews, packageRankings, review -> review.getUserId().equals(userId));
+            removeReviews(hotelReviews, hotelRankings, review -> review.getUserId().equals(userId));
             ratings.entrySet().removeIf(entry -> entry.getValue().getUserId().equals(userId));
             
-            savePackageReviewsToFile();
-            saveHotelReviewsToFile();
-            saveRatingsToFile();
+            PersistenceService.markDirty(this, PACKAGE_REVIEWS_FILE, this::savePackageReviewsToFile);
+            PersistenceService.markDirty(this, HOTEL_REVIEWS_FILE, this::saveHotelReviewsToFile);
+            PersistenceService.markDirty(this, RATINGS_FILE, this::saveRatingsToFile);
             
             Logger.log("All reviews removed for user: " + userId);
         } catch (Exception e) {
@@ -526,13 +613,13 @@ public class ReviewManager {
 
     public void removeAllReviewsForPackage(String packageId) {
         try {
-            packageReviews.entrySet().removeIf(entry -> entry.getValue().getPackageId().equals(packageId));
+            removeReviews(packageReviews, packageRankings, review -> review.getPackageId().equals(packageId));
             ratings.entrySet().removeIf(entry -> 
                 entry.getValue().getEntityId().equals(packageId) && 
                 "PACKAGE".equals(entry.getValue().getEntityType()));
             
-            savePackageReviewsToFile();
-            saveRatingsToFile();
+            PersistenceService.markDirty(this, PACKAGE_REVIEWS_FILE, this::savePackageReviewsToFile);
+            PersistenceService.markDirty(this, RATINGS_FILE, this::saveRatingsToFile);
             
             Logger.log("All reviews removed for package: " + packageId);
         } catch (Exception e) {
@@ -542,13 +629,13 @@ public class ReviewManager {
 
     public void removeAllReviewsForHotel(String hotelId) {
         try {
-            hotelReviews.entrySet().removeIf(entry -> entry.getValue().getHotelId().equals(hotelId));
+            removeReviews(hotelReviews, hotelRankings, review -> review.getHotelId().equals(hotelId));
             ratings.entrySet().removeIf(entry -> 
                 entry.getValue().getEntityId().equals(hotelId) && 
                 "HOTEL".equals(entry.getValue().getEntityType()));
             
-            saveHotelReviewsToFile();
-            saveRatingsToFile();
+            PersistenceService.markDirty(this, HOTEL_REVIEWS_FILE, this::saveHotelReviewsToFile);
+            PersistenceService.markDirty(this, RATINGS_FILE, this::saveRatingsToFile);
             
             Logger.log("All reviews removed for hotel: " + hotelId);
         } catch (Exception e) {
@@ -4,29 +4,47 @@ import model.Room;
 import enumtype.RoomType;
 import util.Logger;
 import util.FileHandler;
+import util.PersistenceService;
+import util.QueryCondition;
+import util.QueryEngine;
+import util.SortedNumericIndex;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class RoomManager {
     private Map<String, Room> rooms;
     private Map<String, List<String>> hotelRooms; // hotelId -> List of roomIds
+    private QueryEngine<Room> queryEngine;
+    private SortedNumericIndex priceIndex;
     private static final String ROOMS_FILE = "rooms.dat";
 
     public RoomManager() {
-        this.rooms = new HashMap<>();
+        this.rooms = new ConcurrentHashMap<>();
         this.hotelRooms = new HashMap<>();
+        this.priceIndex = new SortedNumericIndex();
+        this.queryEngine = new QueryEngine<>(rooms::get, rooms::values)
+                .addField("roomId", Room::getRoomId)
+                .addField("hotelId", Room::getHotelId)
+                .addField("roomNumber", Room::getRoomNumber)
+                .addField("price", Room::getPrice)
+                .addField("capacity", Room::getCapacity)
+                .addBitmapField("roomType", Room::getRoomType)
+                .addBitmapField("available", Room::isAvailable)
+                .addIndex("price", QueryEngine.numericRangeIndex(priceIndex));
         loadRoomsFromFile();
     }
 
     public void addRoom(Room room) {
         if (room != null && !rooms.containsKey(room.getRoomId())) {
             rooms.put(room.getRoomId(), room);
+            indexRoom(room);
             
             // Add to hotel rooms mapping
             String hotelId = room.getHotelId();
             hotelRooms.computeIfAbsent(hotelId, k -> new ArrayList<>()).add(room.getRoomId());
             
-            saveRoomsToFile();
+            PersistenceService.markDirty(this, ROOMS_FILE, this::saveRoomsToFile);
             Logger.log("Room added: " + room.getRoomId() + " in hotel " + hotelId);
         }
     }
@@ -34,6 +52,8 @@ public class RoomManager {
     public void removeRoom(String roomId) {
         Room room = rooms.remove(roomId);
         if (room != null) {
+            queryEngine.remove(roomId);
+            priceIndex.remove(roomId);
             // Remove from hotel rooms mapping
             String hotelId = room.getHotelId();
             List<String> roomIds = hotelRooms.get(hotelId);
@@ -44,7 +64,7 @@ public class RoomManager {
                 }
             }
             
-            saveRoomsToFile();
+            PersistenceService.markDirty(this, ROOMS_FILE, this::saveRoomsToFile);
             Logger.log("Room removed: " + roomId);
         }
     }
@@ -56,7 +76,8 @@ public class RoomManager {
     public void updateRoom(Room room) {
         if (room != null && rooms.containsKey(room.getRoomId())) {
             rooms.put(room.getRoomId(), room);
-            saveRoomsToFile();
+            indexRoom(room);
+            PersistenceService.markDirty(this, ROOMS_FILE, this::saveRoomsToFile);
             Logger.log("Room updated: " + room.getRoomId());
         }
     }
@@ -73,10 +94,13 @@ public class RoomManager {
                 .collect(Collectors.toList());
     }
 
+    // Composable filter over room fields; see the field names registered in the constructor
+    public QueryEngine.Query<Room> query() {
+        return queryEngine.query();
+    }
+
     public List<Room> getAvailableRooms() {
-        return rooms.values().stream()
-                .filter(Room::isAvailable)
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.equalTo("available", true)).list();
     }
 
     public List<Room> getAvailableRoomsByHotel(String hotelId) {
@@ -86,21 +110,18 @@ public class RoomManager {
     }
 
     public List<Room> getRoomsByType(RoomType roomType) {
-        return rooms.values().stream()
-                .filter(room -> room.getRoomType() == roomType)
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.equalTo("roomType", roomType)).list();
     }
 
     public List<Room> getAvailableRoomsByType(RoomType roomType) {
-        return rooms.values().stream()
-                .filter(room -> room.getRoomType() == roomType && room.isAvailable())
-                .collect(Collectors.toList());
+        return query()
+                .where(QueryCondition.equalTo("roomType", roomType))
+                .where(QueryCondition.equalTo("available", true))
+                .list();
     }
 
     public List<Room> getRoomsByPriceRange(double minPrice, double maxPrice) {
-        return rooms.values().stream()
-                .filter(room -> room.getPrice() >= minPrice && room.getPrice() <= maxPrice)
-                .collect(Collectors.toList());
+        return query().where(QueryCondition.range("price", minPrice, maxPrice)).list();
     }
 
     public boolean assignRoomToBooking(String roomId, String bookingId) {
@@ -161,7 +182,7 @@ public class RoomManager {
     }
 
     public int getAvailableRoomsCount() {
-        return (int) rooms.values().stream().filter(Room::isAvailable).count();
+        return query().where(QueryCondition.equalTo("available", true)).count();
     }
 
     public int getOccupiedRoomsCount() {
@@ -186,15 +207,13 @@ public class RoomManager {
     }
 
     public Room getMostExpensiveRoom() {
-        return rooms.values().stream()
-                .max(Comparator.comparing(Room::getPrice))
-                .orElse(null);
+        String roomId = priceIndex.highest();
+        return roomId == null ? null : rooms.get(roomId);
     }
 
     public Room getCheapestRoom() {
-        return rooms.values().stream()
-                .min(Comparator.comparing(Room::getPrice))
-                .orElse(null);
+        String roomId = priceIndex.lowest();
+        return roomId == null ? null : rooms.get(roomId);
     }
 
     public List<Room> searchRooms(String keyword) {
@@ -205,6 +224,11 @@ public class RoomManager {
                 .collect(Collectors.toList());
     }
 
+    private void indexRoom(Room room) {
+        queryEngine.put(room.getRoomId(), room);
+        priceIndex.put(room.getRoomId(), room.getPrice());
+    }
+
     private void loadRoomsFromFile() {
         try {
             List<String> lines = FileHandler.readFromFile(ROOMS_FILE);
@@ -212,6 +236,7 @@ public class RoomManager {
                 Room room = parseRoomFromString(line);
                 if (room != null) {
                     rooms.put(room.getRoomId(), room);
+                    indexRoom(room);
                     
                     // Update hotel rooms mapping
                     String hotelId = room.getHotelId();
@@ -223,15 +248,12 @@ public class RoomManager {
         }
     }
 
-    private void saveRoomsToFile() {
+    private boolean saveRoomsToFile() {
         try {
-            FileHandler.clearFile(ROOMS_FILE);
-            for (Room room : rooms.values()) {
-                String roomString = convertRoomToString(room);
-                FileHandler.writeToFile(ROOMS_FILE, roomString);
-            }
+            return FileHandler.writeAllToFile(ROOMS_FILE, rooms.values(), this::convertRoomToString);
         } catch (Exception e) {
             Logger.error("Failed to save rooms to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -0,0 +1,248 @@
+package manager;
+
+import enumtype.BookingStatus;
+import util.ColumnarFile;
+import util.FileHandler;
+import util.Logger;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Converts the pipe-delimited booking and payment files to and from the binary columnar snapshot format
+public class SnapshotConverter {
+    public static final String BOOKINGS_COLUMNAR_FILE = "bookings.col";
+    public static final String PAYMENTS_COLUMNAR_FILE = "payments.col";
+
+    public static final String BOOKING_ID = "bookingId";
+    public static final String BOOKING_USER_ID = "userId";
+    public static final String BOOKING_PACKAGE_ID = "packageId";
+    public static final String BOOKING_TRAVEL_DATE = "travelDate";
+    public static final String BOOKING_NUMBER_OF_PEOPLE = "numberOfPeople";
+    public static final String BOOKING_TOTAL_AMOUNT = "totalAmount";
+    public static final String BOOKING_STATUS = "status";
+    public static final String BOOKING_PAID = "paid";
+
+    public static final String PAYMENT_ID = "paymentId";
+    public static final String PAYMENT_BOOKING_ID = "bookingId";
+    public static final String PAYMENT_AMOUNT = "amount";
+    public static final String PAYMENT_METHOD = "paymentMethod";
+    public static final String PAYMENT_STATUS = "paymentStatus";
+    public static final String PAYMENT_TRANSACTION_ID = "transactionId";
+
+    private static final BookingStatus[] BOOKING_STATUSES = BookingStatus.values();
+
+    public static boolean convertBookingsToColumnar() {
+        return convertBookingsToColumnar(BookingManager.BOOKINGS_FILE, BOOKINGS_COLUMNAR_FILE);
+    }
+
+    public static boolean convertBookingsToText() {
+        return convertBookingsToText(BOOKINGS_COLUMNAR_FILE, BookingManager.BOOKINGS_FILE);
+    }
+
+    public static boolean convertPaymentsToColumnar() {
+        return convertPaymentsToColumnar(PaymentManager.PAYMENTS_FILE, PAYMENTS_COLUMNAR_FILE);
+    }
+
+    public static boolean convertPaymentsToText() {
+        return convertPaymentsToText(PAYMENTS_COLUMNAR_FILE, PaymentManager.PAYMENTS_FILE);
+    }
+
+    // Reads the text snapshot only; pending booking journal records are not included
+    public static boolean convertBookingsToColumnar(String textFile, String columnarFile) {
+        try {
+            BookingColumns columns = new BookingColumns();
+            FileHandler.scanRecords(textFile, record -> {
+                try {
+                    if (record.getFieldCount() >= 8) {
+                        columns.add(record.getString(0), record.getString(1), record.getString(2),
+                                toEpochDay(record.getString(3)), record.getInt(4),
+                                ColumnarFile.toMinorUnits(record.getDouble(5)),
+                                (byte) record.getEnum(6, BookingStatus.class).ordinal(), record.getBoolean(7));
+                    }
+                } catch (Exception e) {
+                    Logger.error("Failed to convert booking record " + record.getRecordNumber() + ": " + e.getMessage());
+                }
+            });
+
+            int rows = columns.size;
+            new ColumnarFile.Writer(rows)
+                    .addDictionaryColumn(BOOKING_ID, columns.ids.toArray(new String[0]))
+                    .addDictionaryColumn(BOOKING_USER_ID, columns.userIds.toArray(new String[0]))
+                    .addDictionaryColumn(BOOKING_PACKAGE_ID, columns.packageIds.toArray(new String[0]))
+                    .addEpochDayColumn(BOOKING_TRAVEL_DATE, Arrays.copyOf(columns.travelDays, rows))
+                    .addIntColumn(BOOKING_NUMBER_OF_PEOPLE, Arrays.copyOf(columns.people, rows))
+                    .addMinorUnitsColumn(BOOKING_TOTAL_AMOUNT, Arrays.copyOf(columns.amounts, rows))
+                    .addEnumColumn(BOOKING_STATUS, Arrays.copyOf(columns.statuses, rows))
+                    .addBooleanColumn(BOOKING_PAID, Arrays.copyOf(columns.paid, rows))
+                    .writeTo(FileHandler.getDataPath(columnarFile));
+            Logger.log("Converted " + rows + " bookings to columnar snapshot " + columnarFile);
+            return true;
+        } catch (Exception e) {
+            Logger.error("Failed to convert bookings to columnar snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public static boolean convertBookingsToText(String columnarFile, String textFile) {
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(FileHandler.getDataPath(columnarFile))) {
+            String[] ids = reader.readDictionaryColumn(BOOKING_ID);
+            String[] userIds = reader.readDictionaryColumn(BOOKING_USER_ID);
+            String[] packageIds = reader.readDictionaryColumn(BOOKING_PACKAGE_ID);
+            int[] travelDays = reader.readEpochDayColumn(BOOKING_TRAVEL_DATE);
+            int[] people = reader.readIntColumn(BOOKING_NUMBER_OF_PEOPLE);
+            long[] amounts = reader.readMinorUnitsColumn(BOOKING_TOTAL_AMOUNT);
+            byte[] statuses = reader.readEnumColumn(BOOKING_STATUS);
+            boolean[] paid = reader.readBooleanColumn(BOOKING_PAID);
+
+            List<Integer> rows = rowNumbers(reader.getRowCount());
+            // Same layout as BookingManager.convertBookingToString
+            boolean written = FileHandler.writeAllToFile(textFile, rows, row -> String.join("|",
+                    ids[row], userIds[row], packageIds[row], fromEpochDay(travelDays[row]),
+                    String.valueOf(people[row]), String.valueOf(ColumnarFile.fromMinorUnits(amounts[row])),
+                    BOOKING_STATUSES[statuses[row]].name(), String.valueOf(paid[row])));
+            if (written) {
+                Logger.log("Converted " + rows.size() + " bookings to text snapshot " + textFile);
+            }
+            return written;
+        } catch (Exception e) {
+            Logger.error("Failed to convert bookings to text snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public static boolean convertPaymentsToColumnar(String textFile, String columnarFile) {
+        try {
+            PaymentColumns columns = new PaymentColumns();
+            FileHandler.scanRecords(textFile, record -> {
+                try {
+                    if (record.getFieldCount() >= 4) {
+                        // A missing status column means the payment was never processed
+                        columns.add(record.getString(0), record.getString(1),
+                                ColumnarFile.toMinorUnits(record.getDouble(2)), record.getString(3),
+                                record.getFieldCount() > 4 ? record.getString(4) : "PENDING",
+                                record.getFieldCount() > 5 && !record.isEmpty(5) ? record.getString(5) : null);
+                    }
+                } catch (Exception e) {
+                    Logger.error("Failed to convert payment record " + record.getRecordNumber() + ": " + e.getMessage());
+                }
+            });
+
+            int rows = columns.size;
+            new ColumnarFile.Writer(rows)
+                    .addDictionaryColumn(PAYMENT_ID, columns.ids.toArray(new String[0]))
+                    .addDictionaryColumn(PAYMENT_BOOKING_ID, columns.bookingIds.toArray(new String[0]))
+                    .addMinorUnitsColumn(PAYMENT_AMOUNT, Arrays.copyOf(columns.amounts, rows))
+                    .addDictionaryColumn(PAYMENT_METHOD, columns.methods.toArray(new String[0]))
+                    .addDictionaryColumn(PAYMENT_STATUS, columns.statuses.toArray(new String[0]))
+                    .addDictionaryColumn(PAYMENT_TRANSACTION_ID, columns.transactionIds.toArray(new String[0]))
+                    .writeTo(FileHandler.getDataPath(columnarFile));
+            Logger.log("Converted " + rows + " payments to columnar snapshot " + columnarFile);
+            return true;
+        } catch (Exception e) {
+            Logger.error("Failed to convert payments to columnar snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public static boolean convertPaymentsToText(String columnarFile, String textFile) {
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(FileHandler.getDataPath(columnarFile))) {
+            String[] ids = reader.readDictionaryColumn(PAYMENT_ID);
+            String[] bookingIds = reader.readDictionaryColumn(PAYMENT_BOOKING_ID);
+            long[] amounts = reader.readMinorUnitsColumn(PAYMENT_AMOUNT);
+            String[] methods = reader.readDictionaryColumn(PAYMENT_METHOD);
+            String[] statuses = reader.readDictionaryColumn(PAYMENT_STATUS);
+            String[] transactionIds = reader.readDictionaryColumn(PAYMENT_TRANSACTION_ID);
+
+            List<Integer> rows = rowNumbers(reader.getRowCount());
+            // Same layout as PaymentManager.convertPaymentToString
+            boolean written = FileHandler.writeAllToFile(textFile, rows, row -> String.join("|",
+                    ids[row], bookingIds[row], String.valueOf(ColumnarFile.fromMinorUnits(amounts[row])),
+                    methods[row], statuses[row], transactionIds[row] != null ? transactionIds[row] : ""));
+            if (written) {
+                Logger.log("Converted " + rows.size() + " payments to text snapshot " + textFile);
+            }
+            return written;
+        } catch (Exception e) {
+            Logger.error("Failed to convert payments to text snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static int toEpochDay(String date) {
+        try {
+            return (int) LocalDate.parse(date).toEpochDay();
+        } catch (Exception e) {
+            Logger.warning("Storing unparseable travel date '" + date + "' as empty");
+            return ColumnarFile.NULL_EPOCH_DAY;
+        }
+    }
+
+    private static String fromEpochDay(int epochDay) {
+        return epochDay == ColumnarFile.NULL_EPOCH_DAY ? "" : LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    private static List<Integer> rowNumbers(int rowCount) {
+        List<Integer> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static class BookingColumns {
+        final List<String> ids = new ArrayList<>();
+        final List<String> userIds = new ArrayList<>();
+        final List<String> packageIds = new ArrayList<>();
+        int[] travelDays = new int[16];
+        int[] people = new int[16];
+        long[] amounts = new long[16];
+        byte[] statuses = new byte[16];
+        boolean[] paid = new boolean[16];
+        int size;
+
+        void add(String id, String userId, String packageId, int travelDay, int numberOfPeople,
+                 long amount, byte status, boolean isPaid) {
+            if (size == people.length) {
+                int capacity = size * 2;
+                travelDays = Arrays.copyOf(travelDays, capacity);
+                people = Arrays.copyOf(people, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+                paid = Arrays.copyOf(paid, capacity);
+            }
+            ids.add(id);
+            userIds.add(userId);
+            packageIds.add(packageId);
+            travelDays[size] = travelDay;
+            people[size] = numberOfPeople;
+            amounts[size] = amount;
+            statuses[size] = status;
+            paid[size] = isPaid;
+            size++;
+        }
+    }
+
+    private static class PaymentColumns {
+        final List<String> ids = new ArrayList<>();
+        final List<String> bookingIds = new ArrayList<>();
+        final List<String> methods = new ArrayList<>();
+        final List<String> statuses = new ArrayList<>();
+        final List<String> transactionIds = new ArrayList<>();
+        long[] amounts = new long[16];
+        int size;
+
+        void add(String id, String bookingId, long amount, String method, String status, String transactionId) {
+            if (size == amounts.length) {
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            ids.add(id);
+            bookingIds.add(bookingId);
+            amounts[size] = amount;
+            methods.add(method);
+            statuses.add(status);
+            transactionIds.add(transactionId);
+            size++;
+        }
+    }
+}
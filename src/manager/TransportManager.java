@@ -6,20 +6,24 @@ import model.Seat;
 import enumtype.TransportType;
 import util.Logger;
 import util.FileHandler;
+import util.PersistenceService;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class TransportManager {
     private Map<String, Transport> transports;
     private Map<String, Vehicle> vehicles;
     private Map<String, List<Seat>> transportSeats; // transportId -> List of seats
+    private JourneyPlanner journeyPlanner;
     private static final String TRANSPORTS_FILE = "transports.dat";
     private static final String VEHICLES_FILE = "vehicles.dat";
 
     public TransportManager() {
-        this.transports = new HashMap<>();
-        this.vehicles = new HashMap<>();
+        this.transports = new ConcurrentHashMap<>();
+        this.vehicles = new ConcurrentHashMap<>();
         this.transportSeats = new HashMap<>();
+        this.journeyPlanner = new JourneyPlanner();
         loadTransportsFromFile();
         loadVehiclesFromFile();
     }
@@ -28,7 +32,8 @@ public class TransportManager {
         if (transport != null && !transports.containsKey(transport.getTransportId())) {
             transports.put(transport.getTransportId(), transport);
             initializeSeatsForTransport(transport);
-            saveTransportsToFile();
+            journeyPlanner.update(transport);
+            PersistenceService.markDirty(this, TRANSPORTS_FILE, this::saveTransportsToFile);
             Logger.log("Transport added: " + transport.getTransportId() + " (" + transport.getType() + ")");
         }
     }
@@ -37,7 +42,8 @@ public class TransportManager {
         Transport removed = transports.remove(transportId);
         if (removed != null) {
             transportSeats.remove(transportId);
-            saveTransportsToFile();
+            journeyPlanner.remove(transportId);
+            PersistenceService.markDirty(this, TRANSPORTS_FILE, this::saveTransportsToFile);
             Logger.log("Transport removed: " + transportId);
         }
     }
@@ -49,7 +55,8 @@ public class TransportManager {
     public void updateTransport(Transport transport) {
         if (transport != null && transports.containsKey(transport.getTransportId())) {
             transports.put(transport.getTransportId(), transport);
-            saveTransportsToFile();
+            journeyPlanner.update(transport);
+            PersistenceService.markDirty(this, TRANSPORTS_FILE, this::saveTransportsToFile);
             Logger.log("Transport updated: " + transport.getTransportId());
         }
     }
@@ -90,6 +97,18 @@ public class TransportManager {
                 .collect(Collectors.toList());
     }
 
+    // Multi-leg journey over active scheduled transports that arrives soonest after leaving at startTime ("HH:mm");
+    // minConnectionMinutes is the least time allowed between arriving on one leg and departing on the next
+    public JourneyPlanner.Journey findFastestJourney(String departure, String arrival, String startTime,
+                                                     int minConnectionMinutes) {
+        return journeyPlanner.findEarliestArrival(departure, arrival, startTime, minConnectionMinutes);
+    }
+
+    public JourneyPlanner.Journey findCheapestJourney(String departure, String arrival, String startTime,
+                                                      int minConnectionMinutes) {
+        return journeyPlanner.findCheapestJourney(departure, arrival, startTime, minConnectionMinutes);
+    }
+
     public boolean bookSeat(String transportId) {
         Transport transport = getTransportById(transportId);
         if (transport != null && transport.bookSeat()) {
@@ -114,7 +133,7 @@ public class TransportManager {
     public void addVehicle(Vehicle vehicle) {
         if (vehicle != null && !vehicles.containsKey(vehicle.getVehicleId())) {
             vehicles.put(vehicle.getVehicleId(), vehicle);
-            saveVehiclesToFile();
+            PersistenceService.markDirty(this, VEHICLES_FILE, this::saveVehiclesToFile);
             Logger.log("Vehicle added: " + vehicle.getVehicleId() + " (" + vehicle.getModel() + ")");
         }
     }
@@ -122,7 +141,7 @@ public class TransportManager {
     public void removeVehicle(String vehicleId) {
         Vehicle removed = vehicles.remove(vehicleId);
         if (removed != null) {
-            saveVehiclesToFile();
+            PersistenceService.markDirty(this, VEHICLES_FILE, this::saveVehiclesToFile);
             Logger.log("Vehicle removed: " + vehicleId);
         }
     }
@@ -279,6 +298,7 @@ public class TransportManager {
                 Transport transport = parseTransportFromString(line);
                 if (transport != null) {
                     transports.put(transport.getTransportId(), transport);
+                    journeyPlanner.update(transport);
                 }
             }
         } catch (Exception e) {
@@ -286,15 +306,12 @@ public class TransportManager {
         }
     }
 
-    private void saveTransportsToFile() {
+    private boolean saveTransportsToFile() {
         try {
-            FileHandler.clearFile(TRANSPORTS_FILE);
-            for (Transport transport : transports.values()) {
-                String transportString = convertTransportToString(transport);
-                FileHandler.writeToFile(TRANSPORTS_FILE, transportString);
-            }
+            return FileHandler.writeAllToFile(TRANSPORTS_FILE, transports.values(), this::convertTransportToString);
         } catch (Exception e) {
             Logger.error("Failed to save transports to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -312,15 +329,12 @@ public class TransportManager {
         }
     }
 
-    private void saveVehiclesToFile() {
+    private boolean saveVehiclesToFile() {
         try {
-            FileHandler.clearFile(VEHICLES_FILE);
-            for (Vehicle vehicle : vehicles.values()) {
-                String vehicleString = convertVehicleToString(vehicle);
-                FileHandler.writeToFile(VEHICLES_FILE, vehicleString);
-            }
+            return FileHandler.writeAllToFile(VEHICLES_FILE, vehicles.values(), this::convertVehicleToString);
         } catch (Exception e) {
             Logger.error("Failed to save vehicles to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -336,6 +350,12 @@ public class TransportManager {
                 if (parts.length > 5) {
                     transport.setAvailableSeats(Integer.parseInt(parts[5]));
                 }
+                if (parts.length > 6 && !parts[6].isEmpty()) {
+                    transport.setDepartureTime(parts[6]);
+                }
+                if (parts.length > 7 && !parts[7].isEmpty()) {
+                    transport.setArrivalTime(parts[7]);
+                }
                 return transport;
             }
         } catch (Exception e) {
@@ -348,7 +368,9 @@ public class TransportManager {
         return String.join("|",
             transport.getTransportId(), transport.getType().name(),
             transport.getDeparture(), transport.getArrival(),
-            String.valueOf(transport.getFare()), String.valueOf(transport.getAvailableSeats()));
+            String.valueOf(transport.getFare()), String.valueOf(transport.getAvailableSeats()),
+            transport.getDepartureTime() != null ? transport.getDepartureTime() : "",
+            transport.getArrivalTime() != null ? transport.getArrivalTime() : "");
     }
 
     private Vehicle parseVehicleFromString(String vehicleString) {
@@ -3,17 +3,24 @@ package manager;
 import model.*;
 import util.Logger;
 import util.FileHandler;
+import util.PersistenceService;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class UserManager {
     private Map<String, user> users;
     private Map<String, user> usersByEmail;
+    // Called with the created date of every user added, updated or removed
+    private List<Consumer<String>> dateChangeListeners;
     private static final String USERS_FILE = "users.dat";
 
     public UserManager() {
-        this.users = new HashMap<>();
+        this.users = new ConcurrentHashMap<>();
         this.usersByEmail = new HashMap<>();
+        this.dateChangeListeners = new CopyOnWriteArrayList<>();
         loadUsersFromFile();
     }
 
@@ -21,7 +28,8 @@ public class UserManager {
         if (user != null && !users.containsKey(user.getId())) {
             users.put(user.getId(), user);
             usersByEmail.put(user.getEmail(), user);
-            saveUsersToFile();
+            PersistenceService.markDirty(this, USERS_FILE, this::saveUsersToFile);
+            fireDateChange(user.getCreatedDate());
             Logger.log("User added: " + user.getEmail());
         }
     }
@@ -31,7 +39,8 @@ public class UserManager {
         if (user != null) {
             users.remove(userId);
             usersByEmail.remove(user.getEmail());
-            saveUsersToFile();
+            PersistenceService.markDirty(this, USERS_FILE, this::saveUsersToFile);
+            fireDateChange(user.getCreatedDate());
             Logger.log("User removed: " + user.getEmail());
         }
     }
@@ -54,11 +63,25 @@ public class UserManager {
             
             users.put(user.getId(), user);
             usersByEmail.put(user.getEmail(), user);
-            saveUsersToFile();
+            PersistenceService.markDirty(this, USERS_FILE, this::saveUsersToFile);
+            if (!Objects.equals(oldUser.getCreatedDate(), user.getCreatedDate())) {
+                fireDateChange(oldUser.getCreatedDate());
+            }
+            fireDateChange(user.getCreatedDate());
             Logger.log("User updated: " + user.getEmail());
         }
     }
 
+    public void addDateChangeListener(Consumer<String> listener) {
+        dateChangeListeners.add(listener);
+    }
+
+    private void fireDateChange(String createdDate) {
+        for (Consumer<String> listener : dateChangeListeners) {
+            listener.accept(createdDate);
+        }
+    }
+
     public List<user> getAllUsers() {
         return new ArrayList<>(users.values());
     }
@@ -131,15 +154,12 @@ public class UserManager {
         }
     }
 
-    private void saveUsersToFile() {
+    private boolean saveUsersToFile() {
         try {
-            FileHandler.clearFile(USERS_FILE);
-            for (user user : users.values()) {
-                String userString = convertUserToString(user);
-                FileHandler.writeToFile(USERS_FILE, userString);
-            }
+            return FileHandler.writeAllToFile(USERS_FILE, users.values(), this::convertUserToString);
         } catch (Exception e) {
             Logger.error("Failed to save users to file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -16,6 +16,7 @@ public class TourGuide {
     private boolean isAvailable;
     private String experience;
     private String certifications;
+    private String baseLocation;
     private List<String> assignedTours;
 
     public TourGuide(String guideId, String name, String phone, String email) {
@@ -79,6 +80,8 @@ public class TourGuide {
     public void setExperience(String experience) { this.experience = experience; }
     public String getCertifications() { return certifications; }
     public void setCertifications(String certifications) { this.certifications = certifications; }
+    public String getBaseLocation() { return baseLocation; }
+    public void setBaseLocation(String baseLocation) { this.baseLocation = baseLocation; }
     public List<String> getAssignedTours() { return assignedTours; }
 
     @Override
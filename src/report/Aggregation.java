@@ -0,0 +1,303 @@
+package report;
+
+import util.ColumnarFile;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+// Computes every metric a report needs from one pass over a data source. Metrics are declared up front
+// (counts, sums, min/max, group-by counts and sums, distinct counts, collected rows), each optionally limited by
+// its own condition, and run() feeds each record of the period through all of them once.
+// Sums are kept in long minor units, so results of runs over disjoint parts of a source merge into exactly
+// the result of a single run over the whole, whatever the order
+public class Aggregation<T> {
+    private enum Kind { COUNT, SUM, MIN, MAX, COUNT_BY, SUM_BY, DISTINCT, COLLECT }
+
+    private final Predicate<T> period;
+    private final List<Metric<T>> metrics;
+    private final Map<String, Integer> positions;
+
+    private static class Metric<T> {
+        final Kind kind;
+        final Predicate<T> when;
+        final Function<T, ?> key;
+        final ToDoubleFunction<T> value;
+
+        Metric(Kind kind, Predicate<T> when, Function<T, ?> key, ToDoubleFunction<T> value) {
+            this.kind = kind;
+            this.when = when;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    // Only records passing the period filter reach any metric
+    public Aggregation(Predicate<T> period) {
+        this.period = period;
+        this.metrics = new ArrayList<>();
+        this.positions = new HashMap<>();
+    }
+
+    public Aggregation<T> count(String name) {
+        return count(name, record -> true);
+    }
+
+    public Aggregation<T> count(String name, Predicate<T> when) {
+        return add(name, new Metric<>(Kind.COUNT, when, null, null));
+    }
+
+    public Aggregation<T> sum(String name, ToDoubleFunction<T> value) {
+        return sum(name, value, record -> true);
+    }
+
+    public Aggregation<T> sum(String name, ToDoubleFunction<T> value, Predicate<T> when) {
+        return add(name, new Metric<>(Kind.SUM, when, null, value));
+    }
+
+    public Aggregation<T> min(String name, ToDoubleFunction<T> value) {
+        return add(name, new Metric<>(Kind.MIN, record -> true, null, value));
+    }
+
+    public Aggregation<T> max(String name, ToDoubleFunction<T> value) {
+        return add(name, new Metric<>(Kind.MAX, record -> true, null, value));
+    }
+
+    public Aggregation<T> countBy(String name, Function<T, ?> key) {
+        return add(name, new Metric<>(Kind.COUNT_BY, record -> true, key, null));
+    }
+
+    public Aggregation<T> sumBy(String name, Function<T, ?> key, ToDoubleFunction<T> value, Predicate<T> when) {
+        return add(name, new Metric<>(Kind.SUM_BY, when, key, value));
+    }
+
+    public Aggregation<T> distinct(String name, Function<T, ?> key) {
+        return add(name, new Metric<>(Kind.DISTINCT, record -> true, key, null));
+    }
+
+    // Keeps the matching records themselves, in encounter order, for detail listings
+    public Aggregation<T> collect(String name) {
+        return add(name, new Metric<>(Kind.COLLECT, record -> true, null, null));
+    }
+
+    public Result run(Iterable<T> source) {
+        Result result = new Result();
+        for (T record : source) {
+            result.accept(record);
+        }
+        return result;
+    }
+
+    // Aggregates every shard as its own fork-join task and merges the partial results in shard order, so the
+    // outcome equals run() over the shards one after another; each shard is only fetched by the task that runs it
+    public Result runSharded(List<? extends Supplier<? extends Iterable<T>>> shards, ForkJoinPool pool) {
+        return pool.invoke(new ShardTask(shards, 0, shards.size()));
+    }
+
+    private class ShardTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+        // Tasks are never serialized; the shard suppliers only live for one runSharded call
+        private final transient List<? extends Supplier<? extends Iterable<T>>> shards;
+        private final int from;
+        private final int to;
+
+        ShardTask(List<? extends Supplier<? extends Iterable<T>>> shards, int from, int to) {
+            this.shards = shards;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from <= 1) {
+                return from < to ? run(shards.get(from).get()) : new Result();
+            }
+            int mid = (from + to) >>> 1;
+            ShardTask left = new ShardTask(shards, from, mid);
+            left.fork();
+            Result right = new ShardTask(shards, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    private Aggregation<T> add(String name, Metric<T> metric) {
+        positions.put(name, metrics.size());
+        metrics.add(metric);
+        return this;
+    }
+
+    public class Result {
+        private final Object[] states;
+
+        Result() {
+            states = new Object[metrics.size()];
+            for (int i = 0; i < states.length; i++) {
+                switch (metrics.get(i).kind) {
+                    case COUNT:
+                    case SUM:
+                        states[i] = new long[1];
+                        break;
+                    case MIN:
+                        states[i] = new double[] {Double.POSITIVE_INFINITY};
+                        break;
+                    case MAX:
+                        states[i] = new double[] {Double.NEGATIVE_INFINITY};
+                        break;
+                    case COUNT_BY:
+                    case SUM_BY:
+                        states[i] = new LinkedHashMap<Object, long[]>();
+                        break;
+                    case DISTINCT:
+                        states[i] = new HashSet<Object>();
+                        break;
+                    default:
+                        states[i] = new ArrayList<T>();
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public void accept(T record) {
+            if (!period.test(record)) {
+                return;
+            }
+            for (int i = 0; i < states.length; i++) {
+                Metric<T> metric = metrics.get(i);
+                if (!metric.when.test(record)) {
+                    continue;
+                }
+                switch (metric.kind) {
+                    case COUNT:
+                        ((long[]) states[i])[0]++;
+                        break;
+                    case SUM:
+                        ((long[]) states[i])[0] += ColumnarFile.toMinorUnits(metric.value.applyAsDouble(record));
+                        break;
+                    case MIN:
+                        double[] min = (double[]) states[i];
+                        min[0] = Math.min(min[0], metric.value.applyAsDouble(record));
+                        break;
+                    case MAX:
+                        double[] max = (double[]) states[i];
+                        max[0] = Math.max(max[0], metric.value.applyAsDouble(record));
+                        break;
+                    case COUNT_BY:
+                        ((Map<Object, long[]>) states[i]).computeIfAbsent(metric.key.apply(record), k -> new long[1])[0]++;
+                        break;
+                    case SUM_BY:
+                        ((Map<Object, long[]>) states[i]).computeIfAbsent(metric.key.apply(record), k -> new long[1])[0]
+                                += ColumnarFile.toMinorUnits(metric.value.applyAsDouble(record));
+                        break;
+                    case DISTINCT:
+                        ((Set<Object>) states[i]).add(metric.key.apply(record));
+                        break;
+                    default:
+                        ((List<T>) states[i]).add(record);
+                }
+            }
+        }
+
+        // Folds in the result of another run of the same aggregation; collected records are appended
+        @SuppressWarnings("unchecked")
+        public Result merge(Result other) {
+            for (int i = 0; i < states.length; i++) {
+                switch (metrics.get(i).kind) {
+                    case COUNT:
+                    case SUM:
+                        ((long[]) states[i])[0] += ((long[]) other.states[i])[0];
+                        break;
+                    case MIN:
+                        ((double[]) states[i])[0] = Math.min(((double[]) states[i])[0], ((double[]) other.states[i])[0]);
+                        break;
+                    case MAX:
+                        ((double[]) states[i])[0] = Math.max(((double[]) states[i])[0], ((double[]) other.states[i])[0]);
+                        break;
+                    case COUNT_BY:
+                    case SUM_BY:
+                        Map<Object, long[]> groups = (Map<Object, long[]>) states[i];
+                        for (Map.Entry<Object, long[]> entry : ((Map<Object, long[]>) other.states[i]).entrySet()) {
+                            groups.computeIfAbsent(entry.getKey(), k -> new long[1])[0] += entry.getValue()[0];
+                        }
+                        break;
+                    case DISTINCT:
+                        ((Set<Object>) states[i]).addAll((Set<Object>) other.states[i]);
+                        break;
+                    default:
+                        ((List<T>) states[i]).addAll((List<T>) other.states[i]);
+                }
+            }
+            return this;
+        }
+
+        public long count(String name) {
+            return ((long[]) state(name, Kind.COUNT))[0];
+        }
+
+        public double sum(String name) {
+            return ColumnarFile.fromMinorUnits(((long[]) state(name, Kind.SUM))[0]);
+        }
+
+        // NaN when no record was seen
+        public double min(String name) {
+            double min = ((double[]) state(name, Kind.MIN))[0];
+            return min == Double.POSITIVE_INFINITY ? Double.NaN : min;
+        }
+
+        public double max(String name) {
+            double max = ((double[]) state(name, Kind.MAX))[0];
+            return max == Double.NEGATIVE_INFINITY ? Double.NaN : max;
+        }
+
+        // Group counts; the map is filled in key order, so its iteration order depends only on the keys present
+        @SuppressWarnings("unchecked")
+        public <K> Map<K, Long> counts(String name) {
+            Map<K, Long> counts = new HashMap<>();
+            for (Map.Entry<Object, long[]> entry : sortedGroups((Map<Object, long[]>) state(name, Kind.COUNT_BY))) {
+                counts.put((K) entry.getKey(), entry.getValue()[0]);
+            }
+            return counts;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <K> Map<K, Double> sums(String name) {
+            Map<K, Double> sums = new HashMap<>();
+            for (Map.Entry<Object, long[]> entry : sortedGroups((Map<Object, long[]>) state(name, Kind.SUM_BY))) {
+                sums.put((K) entry.getKey(), ColumnarFile.fromMinorUnits(entry.getValue()[0]));
+            }
+            return sums;
+        }
+
+        public int distinct(String name) {
+            return ((Set<?>) state(name, Kind.DISTINCT)).size();
+        }
+
+        @SuppressWarnings("unchecked")
+        public List<T> items(String name) {
+            return new ArrayList<>((List<T>) state(name, Kind.COLLECT));
+        }
+
+        private Object state(String name, Kind kind) {
+            Integer position = positions.get(name);
+            if (position == null || metrics.get(position).kind != kind) {
+                throw new IllegalArgumentException("No " + kind + " metric named " + name);
+            }
+            return states[position];
+        }
+
+        private List<Map.Entry<Object, long[]>> sortedGroups(Map<Object, long[]> groups) {
+            List<Map.Entry<Object, long[]>> entries = new ArrayList<>(groups.entrySet());
+            entries.sort(Comparator.comparing(entry -> String.valueOf(entry.getKey())));
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package report;
+
+import util.DateRangeIndex;
+import util.DateUtil;
+import util.FileHandler;
+import util.Logger;
+import util.PersistenceService;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Generated report texts keyed by report type, period and parameters. Each entry is stamped with the modification
+// versions of the managers it was built from and served again until one of them commits a change.
+// Reports of closed periods (wholly before the current month) are kept permanently instead: they are appended to
+// the store file with the days they cover, served from it after a restart, and dropped by invalidate() when a
+// record dated inside those days changes.
+// The "Generated: " line is cached empty and filled with the current time whenever a report is served
+public class ReportCache {
+    private static final int MAX_ENTRIES = 256;
+    private static final Pattern GENERATED_LINE = Pattern.compile("^Generated: .*$", Pattern.MULTILINE);
+
+    private final String storeName;
+    private final Map<String, Entry> entries;
+    // Closed-period reports read from the store file, loaded on first use
+    private Map<String, Entry> closedReports;
+    // Reports being generated outside the lock; a change landing in one's period marks it stale so it is not stored
+    private final List<Generation> generations;
+    private long hitCount;
+    private long missCount;
+
+    public interface Generator {
+        String generate() throws Exception;
+    }
+
+    private static class Entry {
+        final String text;
+        // null for closed periods, which are invalidated by record date instead
+        final long[] versions;
+        // Epoch days covered by a closed period, both inclusive
+        final int fromDay;
+        final int toDay;
+
+        Entry(String text, long[] versions) {
+            this(text, versions, 0, -1);
+        }
+
+        Entry(String text, int fromDay, int toDay) {
+            this(text, null, fromDay, toDay);
+        }
+
+        private Entry(String text, long[] versions, int fromDay, int toDay) {
+            this.text = text;
+            this.versions = versions;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+        }
+
+        boolean covers(int epochDay) {
+            return versions == null && epochDay >= fromDay && epochDay <= toDay;
+        }
+    }
+
+    private static class Generation {
+        final int fromDay;
+        final int toDay;
+        boolean stale;
+
+        Generation(int[] closedDays) {
+            this.fromDay = closedDays != null ? closedDays[0] : 0;
+            this.toDay = closedDays != null ? closedDays[1] : -1;
+        }
+    }
+
+    // Pass a null store name to keep every entry in memory only
+    public ReportCache(String storeName) {
+        this.storeName = storeName;
+        this.generations = new ArrayList<>();
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    public static String key(String type, String... parameters) {
+        StringBuilder key = new StringBuilder(type);
+        for (String parameter : parameters) {
+            key.append('|').append(parameter);
+        }
+        return key.toString();
+    }
+
+    // The cached text when still current, otherwise the generator's. closedDays holds the first and last epoch day
+    // of a closed period, or is null for a report that may still change.
+    // The generator runs without holding the lock, so mutations invalidating other reports are not held up by a
+    // long build. Versions are read before generating, so a change committed meanwhile leaves an open entry stale
+    // rather than wrongly current; a closed report whose period changed meanwhile is returned but not stored.
+    // A generator that throws leaves nothing cached
+    public String get(String key, int[] closedDays, Generator generator, Object... sources) throws Exception {
+        long[] versions;
+        Generation generation = new Generation(closedDays);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && (entry.versions == null || Arrays.equals(entry.versions, versionsOf(sources)))) {
+                hitCount++;
+                return withTimestamp(entry.text);
+            }
+            if (closedDays != null && storeName != null) {
+                Entry stored = loadClosedReports().get(key);
+                if (stored != null) {
+                    entries.put(key, stored);
+                    hitCount++;
+                    return withTimestamp(stored.text);
+                }
+            }
+            missCount++;
+            versions = versionsOf(sources);
+            generations.add(generation);
+        }
+
+        String text = null;
+        try {
+            text = GENERATED_LINE.matcher(generator.generate()).replaceFirst("Generated: ");
+        } finally {
+            // Checked and stored under one lock, so no invalidation can slip in between
+            synchronized (this) {
+                generations.remove(generation);
+                if (text != null && !generation.stale) {
+                    store(key, closedDays, text, versions);
+                }
+            }
+        }
+        return withTimestamp(text);
+    }
+
+    private void store(String key, int[] closedDays, String text, long[] versions) {
+        if (closedDays == null) {
+            entries.put(key, new Entry(text, versions));
+        } else {
+            Entry closed = new Entry(text, closedDays[0], closedDays[1]);
+            entries.put(key, closed);
+            if (storeName != null) {
+                loadClosedReports().put(key, closed);
+                FileHandler.writeToFile(storeName, encode(key, closed));
+            }
+        }
+    }
+
+    // Drops the closed-period reports covering the date of a record that was added, changed or removed
+    public synchronized void invalidate(String date) {
+        int epochDay = DateRangeIndex.toEpochDay(date);
+        if (epochDay == DateRangeIndex.NULL_EPOCH_DAY) {
+            return;
+        }
+        entries.values().removeIf(entry -> entry.covers(epochDay));
+        for (Generation generation : generations) {
+            if (epochDay >= generation.fromDay && epochDay <= generation.toDay) {
+                generation.stale = true;
+            }
+        }
+        if (storeName == null) {
+            return;
+        }
+        boolean removed = false;
+        Iterator<Entry> stored = loadClosedReports().values().iterator();
+        while (stored.hasNext()) {
+            if (stored.next().covers(epochDay)) {
+                stored.remove();
+                removed = true;
+            }
+        }
+        if (removed) {
+            saveClosedReports();
+        }
+    }
+
+    // Drops every entry, including the stored closed-period reports, e.g. after correcting historical records
+    public synchronized void clear() {
+        entries.clear();
+        for (Generation generation : generations) {
+            generation.stale = true;
+        }
+        closedReports = new HashMap<>();
+        if (storeName != null && FileHandler.fileExists(storeName)) {
+            FileHandler.clearFile(storeName);
+        }
+        Logger.log("Report cache cleared");
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private static long[] versionsOf(Object[] sources) {
+        long[] versions = new long[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            versions[i] = PersistenceService.getModificationVersion(sources[i]);
+        }
+        return versions;
+    }
+
+    private static String withTimestamp(String text) {
+        return GENERATED_LINE.matcher(text)
+                .replaceFirst(Matcher.quoteReplacement("Generated: " + DateUtil.getCurrentDateTime()));
+    }
+
+    // Lines are "key|fromDay|toDay|text" with key and text Base64 encoded; a key stored twice keeps its last text,
+    // and the file is rewritten without the older copies or unreadable lines
+    private Map<String, Entry> loadClosedReports() {
+        if (closedReports != null) {
+            return closedReports;
+        }
+        closedReports = new HashMap<>();
+        if (!FileHandler.fileExists(storeName)) {
+            return closedReports;
+        }
+        List<String> lines = FileHandler.readFromFile(storeName);
+        int records = 0;
+        for (String line : lines) {
+            String[] parts = line.split("\\|", -1);
+            if (parts.length != 4) {
+                continue;
+            }
+            try {
+                closedReports.put(decode(parts[0]),
+                        new Entry(decode(parts[3]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+                records++;
+            } catch (IllegalArgumentException e) {
+                Logger.error("Skipping unreadable cached report: " + e.getMessage());
+            }
+        }
+        if (records > closedReports.size() || records < lines.size()) {
+            saveClosedReports();
+        }
+        return closedReports;
+    }
+
+    private void saveClosedReports() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Entry> report : closedReports.entrySet()) {
+            lines.add(encode(report.getKey(), report.getValue()));
+        }
+        FileHandler.writeAllToFile(storeName, lines);
+    }
+
+    private static String encode(String key, Entry entry) {
+        return encode(key) + "|" + entry.fromDay + "|" + entry.toDay + "|" + encode(entry.text);
+    }
+
+    private static String encode(String text) {
+        return Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String text) {
+        return new String(Base64.getDecoder().decode(text), StandardCharsets.UTF_8);
+    }
+}
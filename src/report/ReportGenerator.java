@@ -1,6 +1,7 @@
 package report;
 
 import util.DateUtil;
+import util.DateRangeIndex;
 import util.CurrencyFormatter;
 import util.Logger;
 import util.FileHandler;
@@ -11,6 +12,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.WeakHashMap;
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class ReportGenerator {
@@ -23,30 +31,51 @@ public class ReportGenerator {
     private GuideManager guideManager;
     private ReviewManager reviewManager;
     private TourStats tourStats;
+    // Set in parallel mode: dated sources are aggregated as month or day shards on this pool
+    private ForkJoinPool pool;
+    private static final int MAX_DAILY_SHARD_SPAN = 62;
+    private static final String REPORT_CACHE_FILE = "report_cache.dat";
+    private static final Pattern DATABASE_RECORDS_LINE = Pattern.compile("^Database Records: .*$", Pattern.MULTILINE);
+    private static final Map<DataContext, ReportCache> REPORT_CACHES = new WeakHashMap<>();
+    private final ReportCache reportCache;
+
+    public ReportGenerator(DataContext dataContext) {
+        this.userManager = dataContext.getUserManager();
+        this.packageManager = dataContext.getPackageManager();
+        this.bookingManager = dataContext.getBookingManager();
+        this.paymentManager = dataContext.getPaymentManager();
+        this.hotelManager = dataContext.getHotelManager();
+        this.transportManager = dataContext.getTransportManager();
+        this.guideManager = dataContext.getGuideManager();
+        this.reviewManager = dataContext.getReviewManager();
+        this.tourStats = new TourStats(dataContext);
+        this.pool = Runtime.getRuntime().availableProcessors() > 1 ? ForkJoinPool.commonPool() : null;
+        this.reportCache = reportCacheFor(dataContext);
+    }
+
+    // Generators built on the same data context share one cache, so its listeners are registered only once
+    private static ReportCache reportCacheFor(DataContext dataContext) {
+        synchronized (REPORT_CACHES) {
+            return REPORT_CACHES.computeIfAbsent(dataContext, context -> {
+                ReportCache cache = new ReportCache(REPORT_CACHE_FILE);
+                // Closed-period reports stay cached until a record dated inside their period changes
+                context.getBookingManager().addDateChangeListener(cache::invalidate);
+                context.getPaymentManager().addDateChangeListener(cache::invalidate);
+                context.getUserManager().addDateChangeListener(cache::invalidate);
+                return cache;
+            });
+        }
+    }
+
+    // Reports come out byte-identical in both modes; parallel is the default on multi-core machines
+    public void setParallel(boolean parallel) {
+        this.pool = parallel ? ForkJoinPool.commonPool() : null;
+    }
 
-    public ReportGenerator() {
-        this.userManager = new UserManager();
-        this.packageManager = new PackageManager();
-        this.bookingManager = new BookingManager();
-        this.paymentManager = new PaymentManager();
-        this.hotelManager = new HotelManager();
-        this.transportManager = new TransportManager();
-        this.guideManager = new GuideManager();
-        this.reviewManager = new ReviewManager();
-        this.tourStats = new TourStats();
-    }
-
-    public ReportGenerator(UserManager userManager, PackageManager packageManager, 
-                          BookingManager bookingManager, PaymentManager paymentManager) {
-        this.userManager = userManager;
-        this.packageManager = packageManager;
-        this.bookingManager = bookingManager;
-        this.paymentManager = paymentManager;
-        this.hotelManager = new HotelManager();
-        this.transportManager = new TransportManager();
-        this.guideManager = new GuideManager();
-        this.reviewManager = new ReviewManager();
-        this.tourStats = new TourStats(packageManager, bookingManager, userManager, paymentManager);
+    // Regenerates on the next request every report served from the cache, stored closed periods included
+    public void clearReportCache() {
+        reportCache.clear();
+        tourStats.clearReportCache();
     }
 
     public String generateDaily() {
@@ -58,103 +87,89 @@ public class ReportGenerator {
         StringBuilder report = new StringBuilder();
         
         try {
-            report.append("==================== DAILY REPORT ====================\n");
-            report.append("Date: ").append(date).append("\n");
-            report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
-            report.append("=======================================================\n\n");
-
-            // Daily Bookings
-            List<Booking> dailyBookings = getDailyBookings(date);
-            report.append("📋 DAILY BOOKINGS\n");
-            report.append("Total Bookings: ").append(dailyBookings.size()).append("\n");
-            
-            if (!dailyBookings.isEmpty()) {
-                double totalAmount = 0.0;
-                for (Booking booking : dailyBookings) {
-                    totalAmount += booking.getTotalAmount();
-                }
-                
-                report.append("Total Revenue: ").append(CurrencyFormatter.formatBDT(totalAmount)).append("\n");
-                
-                long confirmedBookings = 0;
-                for (Booking booking : dailyBookings) {
-                    if (booking.getStatus() == BookingStatus.CONFIRMED) {
-                        confirmedBookings++;
-                    }
-                }
-                
-                report.append("Confirmed Bookings: ").append(confirmedBookings).append("\n");
-                
-                // Booking details
-                report.append("\nBooking Details:\n");
-                for (int i = 0; i < dailyBookings.size(); i++) {
-                    Booking booking = dailyBookings.get(i);
-                    report.append(String.format("%d. %s - %s (%d people) - %s\n",
-                        i + 1, booking.getBookingId(), booking.getPackageId(),
-                        booking.getNumberOfPeople(), booking.getStatus().getDisplayName()));
-                }
-            } else {
-                report.append("No bookings today.\n");
-            }
+            return reportCache.get(ReportCache.key("daily", date), closedPeriod(date),
+                    () -> buildDailyReport(report, date), bookingManager, paymentManager, userManager);
+        } catch (Exception e) {
+            Logger.error("Error generating daily report: " + e.getMessage());
+            report.append("Error generating report: ").append(e.getMessage()).append("\n");
+        }
+        
+        return report.toString();
+    }
 
-            // Daily Payments
-            List<Payment> dailyPayments = getDailyPayments(date);
-            report.append("\n💳 DAILY PAYMENTS\n");
-            report.append("Total Payments: ").append(dailyPayments.size()).append("\n");
-            
-            if (!dailyPayments.isEmpty()) {
-                double totalPayments = 0.0;
-                for (Payment payment : dailyPayments) {
-                    if ("COMPLETED".equals(payment.getPaymentStatus())) {
-                        totalPayments += payment.getAmount();
-                    }
-                }
-                
-                report.append("Total Amount: ").append(CurrencyFormatter.formatBDT(totalPayments)).append("\n");
-                
-                // Payment methods breakdown
-                Map<String, Long> methodCount = new HashMap<>();
-                for (Payment payment : dailyPayments) {
-                    String method = payment.getPaymentMethod();
-                    methodCount.put(method, methodCount.getOrDefault(method, 0L) + 1);
-                }
-                
-                report.append("Payment Methods:\n");
-                for (Map.Entry<String, Long> entry : methodCount.entrySet()) {
-                    report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
-                }
-            } else {
-                report.append("No payments today.\n");
-            }
+    private String buildDailyReport(StringBuilder report, String date) throws Exception {
+        report.append("==================== DAILY REPORT ====================\n");
+        report.append("Date: ").append(date).append("\n");
+        report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
+        report.append("=======================================================\n\n");
+
+        // One pass per source computes every figure below
+        Aggregation<Booking>.Result bookings = new Aggregation<Booking>(booking -> date.equals(booking.getBookingDate()))
+                .count("bookings")
+                .sum("amount", Booking::getTotalAmount)
+                .count("confirmed", booking -> booking.getStatus() == BookingStatus.CONFIRMED)
+                .collect("details")
+                .run(bookingManager.getAllBookings());
+        Aggregation<Payment>.Result payments = paymentMetrics(payment -> startsWith(payment.getPaymentDate(), date))
+                .run(paymentManager.getAllPayments());
+        Aggregation<user>.Result users = userMetrics(u -> date.equals(u.getCreatedDate()))
+                .run(userManager.getAllUsers());
+
+        // Daily Bookings
+        List<Booking> dailyBookings = bookings.items("details");
+        report.append("📋 DAILY BOOKINGS\n");
+        report.append("Total Bookings: ").append(bookings.count("bookings")).append("\n");
+        
+        if (!dailyBookings.isEmpty()) {
+            report.append("Total Revenue: ").append(CurrencyFormatter.formatBDT(bookings.sum("amount"))).append("\n");
+            report.append("Confirmed Bookings: ").append(bookings.count("confirmed")).append("\n");
+            
+            // Booking details
+            report.append("\nBooking Details:\n");
+            for (int i = 0; i < dailyBookings.size(); i++) {
+                Booking booking = dailyBookings.get(i);
+                report.append(String.format("%d. %s - %s (%d people) - %s\n",
+                    i + 1, booking.getBookingId(), booking.getPackageId(),
+                    booking.getNumberOfPeople(), booking.getStatus().getDisplayName()));
+            }
+        } else {
+            report.append("No bookings today.\n");
+        }
 
-            // New User Registrations
-            List<user> dailyUsers = getDailyUsers(date);
-            report.append("\n👥 NEW REGISTRATIONS\n");
-            report.append("New Users: ").append(dailyUsers.size()).append("\n");
+        // Daily Payments
+        report.append("\n💳 DAILY PAYMENTS\n");
+        report.append("Total Payments: ").append(payments.count("payments")).append("\n");
+        
+        if (payments.count("payments") > 0) {
+            report.append("Total Amount: ").append(CurrencyFormatter.formatBDT(payments.sum("revenue"))).append("\n");
             
-            if (!dailyUsers.isEmpty()) {
-                Map<String, Long> roleCount = new HashMap<>();
-                for (user u : dailyUsers) {
-                    String role = u.getRole();
-                    roleCount.put(role, roleCount.getOrDefault(role, 0L) + 1);
-                }
-                
-                for (Map.Entry<String, Long> entry : roleCount.entrySet()) {
-                    report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
-                }
+            // Payment methods breakdown
+            Map<String, Long> methodCount = payments.counts("method");
+            report.append("Payment Methods:\n");
+            for (Map.Entry<String, Long> entry : methodCount.entrySet()) {
+                report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
             }
+        } else {
+            report.append("No payments today.\n");
+        }
 
-            report.append("\n=======================================================\n");
-            
-            // Save report to file
-            String filename = "daily_report_" + date.replace("-", "_") + ".txt";
-            FileHandler.writeToFile(filename, report.toString());
-            Logger.log("Daily report generated for: " + date);
-            
-        } catch (Exception e) {
-            Logger.error("Error generating daily report: " + e.getMessage());
-            report.append("Error generating report: ").append(e.getMessage()).append("\n");
+        // New User Registrations
+        report.append("\n👥 NEW REGISTRATIONS\n");
+        report.append("New Users: ").append(users.count("users")).append("\n");
+        
+        if (users.count("users") > 0) {
+            Map<String, Long> roleCount = users.counts("role");
+            for (Map.Entry<String, Long> entry : roleCount.entrySet()) {
+                report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+            }
         }
+
+        report.append("\n=======================================================\n");
+        
+        // Save report to file
+        String filename = "daily_report_" + date.replace("-", "_") + ".txt";
+        FileHandler.writeToFile(filename, report.toString());
+        Logger.log("Daily report generated for: " + date);
         
         return report.toString();
     }
@@ -168,104 +183,89 @@ public class ReportGenerator {
         StringBuilder report = new StringBuilder();
         
         try {
-            report.append("=================== MONTHLY REPORT ===================\n");
-            report.append("Month: ").append(month).append("\n");
-            report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
-            report.append("=======================================================\n\n");
-
-            // Monthly Statistics
-            List<Booking> monthlyBookings = getMonthlyBookings(month);
-            List<Payment> monthlyPayments = getMonthlyPayments(month);
-            List<user> monthlyUsers = getMonthlyUsers(month);
-
-            report.append("📊 MONTHLY OVERVIEW\n");
-            report.append("Total Bookings: ").append(monthlyBookings.size()).append("\n");
-            report.append("Total Payments: ").append(monthlyPayments.size()).append("\n");
-            report.append("New Users: ").append(monthlyUsers.size()).append("\n");
-
-            // Revenue Analysis
-            double totalRevenue = 0.0;
-            for (Payment payment : monthlyPayments) {
-                if ("COMPLETED".equals(payment.getPaymentStatus())) {
-                    totalRevenue += payment.getAmount();
-                }
-            }
-            
-            double averageDailyRevenue = totalRevenue / 30; // Approximate
-            
-            report.append("Total Revenue: ").append(CurrencyFormatter.formatBDT(totalRevenue)).append("\n");
-            report.append("Average Daily Revenue: ").append(CurrencyFormatter.formatBDT(averageDailyRevenue)).append("\n");
-
-            // Booking Status Breakdown
-            report.append("\n📋 BOOKING STATUS BREAKDOWN\n");
-            Map<BookingStatus, Long> statusCount = new HashMap<>();
-            for (Booking booking : monthlyBookings) {
-                BookingStatus status = booking.getStatus();
-                statusCount.put(status, statusCount.getOrDefault(status, 0L) + 1);
-            }
-            
-            for (Map.Entry<BookingStatus, Long> entry : statusCount.entrySet()) {
-                report.append("  ").append(entry.getKey().getDisplayName()).append(": ").append(entry.getValue()).append("\n");
-            }
+            return reportCache.get(ReportCache.key("monthly", month), closedPeriod(month),
+                    () -> buildMonthlyReport(report, month), bookingManager, paymentManager, userManager, packageManager);
+        } catch (Exception e) {
+            Logger.error("Error generating monthly report: " + e.getMessage());
+            report.append("Error generating report: ").append(e.getMessage()).append("\n");
+        }
+        
+        return report.toString();
+    }
 
-            // Popular Packages
-            report.append("\n🏆 POPULAR PACKAGES\n");
-            Map<String, Long> packageCount = new HashMap<>();
-            for (Booking booking : monthlyBookings) {
-                String packageId = booking.getPackageId();
-                packageCount.put(packageId, packageCount.getOrDefault(packageId, 0L) + 1);
-            }
-            
-            // Sort by value and get top 5
-            List<Map.Entry<String, Long>> sortedEntries = new ArrayList<>(packageCount.entrySet());
-            sortedEntries.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
-            
-            int limit = Math.min(5, sortedEntries.size());
-            for (int i = 0; i < limit; i++) {
-                Map.Entry<String, Long> entry = sortedEntries.get(i);
-                TourPackage pkg = packageManager.getPackageById(entry.getKey());
-                String packageName = pkg != null ? pkg.getName() : entry.getKey();
-                report.append("  ").append(packageName).append(": ").append(entry.getValue()).append(" bookings\n");
-            }
+    private String buildMonthlyReport(StringBuilder report, String month) throws Exception {
+        report.append("=================== MONTHLY REPORT ===================\n");
+        report.append("Month: ").append(month).append("\n");
+        report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
+        report.append("=======================================================\n\n");
+
+        // Monthly Statistics, one pass per source
+        Aggregation<Booking>.Result bookings = aggregateBookings(
+                bookingMetrics(booking -> startsWith(booking.getBookingDate(), month)), month);
+        Aggregation<Payment>.Result payments = aggregatePayments(
+                paymentMetrics(payment -> startsWith(payment.getPaymentDate(), month)), month);
+        Aggregation<user>.Result users = userMetrics(u -> startsWith(u.getCreatedDate(), month))
+                .run(userManager.getAllUsers());
+        long paymentCount = payments.count("payments");
+
+        report.append("📊 MONTHLY OVERVIEW\n");
+        report.append("Total Bookings: ").append(bookings.count("bookings")).append("\n");
+        report.append("Total Payments: ").append(paymentCount).append("\n");
+        report.append("New Users: ").append(users.count("users")).append("\n");
+
+        // Revenue Analysis
+        double totalRevenue = payments.sum("revenue");
+        double averageDailyRevenue = totalRevenue / 30; // Approximate
+        
+        report.append("Total Revenue: ").append(CurrencyFormatter.formatBDT(totalRevenue)).append("\n");
+        report.append("Average Daily Revenue: ").append(CurrencyFormatter.formatBDT(averageDailyRevenue)).append("\n");
+
+        // Booking Status Breakdown
+        report.append("\n📋 BOOKING STATUS BREAKDOWN\n");
+        Map<BookingStatus, Long> statusCount = bookings.counts("status");
+        for (Map.Entry<BookingStatus, Long> entry : statusCount.entrySet()) {
+            report.append("  ").append(entry.getKey().getDisplayName()).append(": ").append(entry.getValue()).append("\n");
+        }
 
-            // Customer Analysis
-            report.append("\n👥 CUSTOMER ANALYSIS\n");
-            Map<String, Long> userRoleCount = new HashMap<>();
-            for (user u : monthlyUsers) {
-                String role = u.getRole();
-                userRoleCount.put(role, userRoleCount.getOrDefault(role, 0L) + 1);
-            }
-            
-            report.append("New Registrations by Role:\n");
-            for (Map.Entry<String, Long> entry : userRoleCount.entrySet()) {
-                report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
-            }
+        // Popular Packages
+        report.append("\n🏆 POPULAR PACKAGES\n");
+        Map<String, Long> packageCount = bookings.counts("package");
 
-            // Payment Methods Analysis
-            report.append("\n💳 PAYMENT METHODS\n");
-            Map<String, Long> paymentMethodCount = new HashMap<>();
-            for (Payment payment : monthlyPayments) {
-                String method = payment.getPaymentMethod();
-                paymentMethodCount.put(method, paymentMethodCount.getOrDefault(method, 0L) + 1);
-            }
-            
-            for (Map.Entry<String, Long> entry : paymentMethodCount.entrySet()) {
-                double percentage = (entry.getValue() * 100.0) / monthlyPayments.size();
-                report.append(String.format("  %s: %d (%.1f%%)\n", 
-                    entry.getKey(), entry.getValue(), percentage));
-            }
+        // Sort by value and get top 5
+        List<Map.Entry<String, Long>> sortedEntries = new ArrayList<>(packageCount.entrySet());
+        sortedEntries.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
+        
+        int limit = Math.min(5, sortedEntries.size());
+        for (int i = 0; i < limit; i++) {
+            Map.Entry<String, Long> entry = sortedEntries.get(i);
+            TourPackage pkg = packageManager.getPackageById(entry.getKey());
+            String packageName = pkg != null ? pkg.getName() : entry.getKey();
+            report.append("  ").append(packageName).append(": ").append(entry.getValue()).append(" bookings\n");
+        }
 
-            report.append("\n=======================================================\n");
-            
-            // Save report to file
-            String filename = "monthly_report_" + month.replace("-", "_") + ".txt";
-            FileHandler.writeToFile(filename, report.toString());
-            Logger.log("Monthly report generated for: " + month);
-            
-        } catch (Exception e) {
-            Logger.error("Error generating monthly report: " + e.getMessage());
-            report.append("Error generating report: ").append(e.getMessage()).append("\n");
+        // Customer Analysis
+        report.append("\n👥 CUSTOMER ANALYSIS\n");
+        Map<String, Long> userRoleCount = users.counts("role");
+        report.append("New Registrations by Role:\n");
+        for (Map.Entry<String, Long> entry : userRoleCount.entrySet()) {
+            report.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+
+        // Payment Methods Analysis
+        report.append("\n💳 PAYMENT METHODS\n");
+        Map<String, Long> paymentMethodCount = payments.counts("method");
+        for (Map.Entry<String, Long> entry : paymentMethodCount.entrySet()) {
+            double percentage = (entry.getValue() * 100.0) / paymentCount;
+            report.append(String.format("  %s: %d (%.1f%%)\n", 
+                entry.getKey(), entry.getValue(), percentage));
         }
+
+        report.append("\n=======================================================\n");
+        
+        // Save report to file
+        String filename = "monthly_report_" + month.replace("-", "_") + ".txt";
+        FileHandler.writeToFile(filename, report.toString());
+        Logger.log("Monthly report generated for: " + month);
         
         return report.toString();
     }
@@ -279,75 +279,74 @@ public class ReportGenerator {
         StringBuilder report = new StringBuilder();
         
         try {
-            report.append("=================== ANNUAL REPORT ====================\n");
-            report.append("Year: ").append(year).append("\n");
-            report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
-            report.append("=======================================================\n\n");
-
-            // Annual Overview
-            List<Booking> annualBookings = getAnnualBookings(year);
-            List<Payment> annualPayments = getAnnualPayments(year);
-            List<user> annualUsers = getAnnualUsers(year);
-
-            report.append("📊 ANNUAL OVERVIEW\n");
-            report.append("Total Bookings: ").append(annualBookings.size()).append("\n");
-            report.append("Total Payments: ").append(annualPayments.size()).append("\n");
-            report.append("New Users: ").append(annualUsers.size()).append("\n");
-
-            // Financial Summary
-            double totalRevenue = 0.0;
-            for (Payment payment : annualPayments) {
-                if ("COMPLETED".equals(payment.getPaymentStatus())) {
-                    totalRevenue += payment.getAmount();
-                }
-            }
-            
-            double averageMonthlyRevenue = totalRevenue / 12;
-            double averageBookingValue = 0.0;
-            if (!annualBookings.isEmpty()) {
-                double totalBookingValue = 0.0;
-                for (Booking booking : annualBookings) {
-                    totalBookingValue += booking.getTotalAmount();
-                }
-                averageBookingValue = totalBookingValue / annualBookings.size();
-            }
-            
-            report.append("\n💰 FINANCIAL SUMMARY\n");
-            report.append("Total Revenue: ").append(CurrencyFormatter.formatBDT(totalRevenue)).append("\n");
-            report.append("Average Monthly Revenue: ").append(CurrencyFormatter.formatBDT(averageMonthlyRevenue)).append("\n");
-            report.append("Average Booking Value: ").append(CurrencyFormatter.formatBDT(averageBookingValue)).append("\n");
+            String text = reportCache.get(ReportCache.key("annual", year), closedPeriod(year),
+                    () -> buildAnnualReport(report, year), bookingManager, paymentManager, userManager, packageManager);
+            // The record total counts every year, so it is refreshed even when the year itself is closed
+            return DATABASE_RECORDS_LINE.matcher(text).replaceFirst("Database Records: " + getTotalRecords());
+        } catch (Exception e) {
+            Logger.error("Error generating annual report: " + e.getMessage());
+            report.append("Error generating report: ").append(e.getMessage()).append("\n");
+        }
+        
+        return report.toString();
+    }
 
-            // Growth Analysis
-            report.append("\n📈 GROWTH ANALYSIS\n");
-            generateGrowthAnalysis(report, year);
+    private String buildAnnualReport(StringBuilder report, String year) throws Exception {
+        report.append("=================== ANNUAL REPORT ====================\n");
+        report.append("Year: ").append(year).append("\n");
+        report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
+        report.append("=======================================================\n\n");
+
+        // Annual Overview, one pass per source
+        Aggregation<Booking>.Result bookings = aggregateBookings(
+                bookingMetrics(booking -> startsWith(booking.getBookingDate(), year)), year);
+        Aggregation<Payment>.Result payments = aggregatePayments(
+                paymentMetrics(payment -> startsWith(payment.getPaymentDate(), year)), year);
+        Aggregation<user>.Result users = userMetrics(u -> startsWith(u.getCreatedDate(), year))
+                .run(userManager.getAllUsers());
+        long bookingCount = bookings.count("bookings");
+
+        report.append("📊 ANNUAL OVERVIEW\n");
+        report.append("Total Bookings: ").append(bookingCount).append("\n");
+        report.append("Total Payments: ").append(payments.count("payments")).append("\n");
+        report.append("New Users: ").append(users.count("users")).append("\n");
+
+        // Financial Summary
+        double totalRevenue = payments.sum("revenue");
+        double averageMonthlyRevenue = totalRevenue / 12;
+        double averageBookingValue = bookingCount > 0 ? bookings.sum("value") / bookingCount : 0.0;
+        
+        report.append("\n💰 FINANCIAL SUMMARY\n");
+        report.append("Total Revenue: ").append(CurrencyFormatter.formatBDT(totalRevenue)).append("\n");
+        report.append("Average Monthly Revenue: ").append(CurrencyFormatter.formatBDT(averageMonthlyRevenue)).append("\n");
+        report.append("Average Booking Value: ").append(CurrencyFormatter.formatBDT(averageBookingValue)).append("\n");
 
-            // Top Performing Packages
-            report.append("\n🏆 TOP PERFORMING PACKAGES\n");
-            generateTopPackagesReport(report, annualBookings);
+        // Growth Analysis
+        report.append("\n📈 GROWTH ANALYSIS\n");
+        generateGrowthAnalysis(report, year);
 
-            // Customer Insights
-            report.append("\n👥 CUSTOMER INSIGHTS\n");
-            generateCustomerInsights(report, annualBookings, annualUsers);
+        // Top Performing Packages
+        report.append("\n🏆 TOP PERFORMING PACKAGES\n");
+        generateTopPackagesReport(report, bookings.counts("package"));
 
-            // Seasonal Analysis
-            report.append("\n🌍 SEASONAL ANALYSIS\n");
-            generateSeasonalAnalysis(report, annualBookings);
+        // Customer Insights
+        report.append("\n👥 CUSTOMER INSIGHTS\n");
+        generateCustomerInsights(report, bookingCount, users.count("users"));
 
-            // System Statistics
-            report.append("\n⚙️ SYSTEM STATISTICS\n");
-            generateSystemStats(report);
+        // Seasonal Analysis
+        report.append("\n🌍 SEASONAL ANALYSIS\n");
+        generateSeasonalAnalysis(report, bookings.counts("season"), bookingCount);
 
-            report.append("\n=======================================================\n");
-            
-            // Save report to file
-            String filename = "annual_report_" + year + ".txt";
-            FileHandler.writeToFile(filename, report.toString());
-            Logger.log("Annual report generated for: " + year);
-            
-        } catch (Exception e) {
-            Logger.error("Error generating annual report: " + e.getMessage());
-            report.append("Error generating report: ").append(e.getMessage()).append("\n");
-        }
+        // System Statistics
+        report.append("\n⚙️ SYSTEM STATISTICS\n");
+        generateSystemStats(report);
+
+        report.append("\n=======================================================\n");
+        
+        // Save report to file
+        String filename = "annual_report_" + year + ".txt";
+        FileHandler.writeToFile(filename, report.toString());
+        Logger.log("Annual report generated for: " + year);
         
         return report.toString();
     }
@@ -356,65 +355,72 @@ public class ReportGenerator {
         StringBuilder report = new StringBuilder();
         
         try {
-            report.append("=================== SYSTEM REPORT ====================\n");
-            report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
-            report.append("=======================================================\n\n");
-
-            // System Overview
-            report.append("🖥️ SYSTEM OVERVIEW\n");
-            report.append("Total Users: ").append(userManager.getTotalUsers()).append("\n");
-            report.append("Total Packages: ").append(packageManager.getTotalPackages()).append("\n");
-            report.append("Active Packages: ").append(packageManager.getActivePackagesCount()).append("\n");
-            report.append("Total Hotels: ").append(hotelManager.getTotalHotels()).append("\n");
-            report.append("Total Transports: ").append(transportManager.getTotalTransports()).append("\n");
-            report.append("Total Guides: ").append(guideManager.getTotalGuides()).append("\n");
-            
-            // User Distribution
-            report.append("\n👥 USER DISTRIBUTION\n");
-            List<user> allUsers = userManager.getAllUsers();
-            Map<String, Long> usersByRole = new HashMap<>();
-            for (user u : allUsers) {
-                String role = u.getRole();
-                usersByRole.put(role, usersByRole.getOrDefault(role, 0L) + 1);
-            }
-            
-            for (Map.Entry<String, Long> entry : usersByRole.entrySet()) {
-                double percentage = (entry.getValue() * 100.0) / allUsers.size();
-                report.append(String.format("  %s: %d (%.1f%%)\n", 
-                    entry.getKey(), entry.getValue(), percentage));
-            }
+            return reportCache.get(ReportCache.key("system", DateUtil.getCurrentDate()), null,
+                    () -> buildSystemReport(report),
+                    userManager, packageManager, hotelManager, transportManager, guideManager);
+        } catch (Exception e) {
+            Logger.error("Error generating system report: " + e.getMessage());
+            report.append("Error generating report: ").append(e.getMessage()).append("\n");
+        }
+        
+        return report.toString();
+    }
 
-            // Package Distribution
-            report.append("\n📦 PACKAGE DISTRIBUTION\n");
-            List<TourPackage> allPackages = packageManager.listPackages();
-            if (!allPackages.isEmpty()) {
-                Map<PackageCategory, Long> packagesByCategory = new HashMap<>();
-                for (TourPackage pkg : allPackages) {
-                    if (pkg.getCategory() != null) {
-                        PackageCategory category = pkg.getCategory();
-                        packagesByCategory.put(category, packagesByCategory.getOrDefault(category, 0L) + 1);
-                    }
-                }
-                
-                for (Map.Entry<PackageCategory, Long> entry : packagesByCategory.entrySet()) {
-                    report.append("  ").append(entry.getKey().getDisplayName())
-                          .append(": ").append(entry.getValue()).append("\n");
+    private String buildSystemReport(StringBuilder report) throws Exception {
+        report.append("=================== SYSTEM REPORT ====================\n");
+        report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
+        report.append("=======================================================\n\n");
+
+        // System Overview
+        report.append("🖥️ SYSTEM OVERVIEW\n");
+        report.append("Total Users: ").append(userManager.getTotalUsers()).append("\n");
+        report.append("Total Packages: ").append(packageManager.getTotalPackages()).append("\n");
+        report.append("Active Packages: ").append(packageManager.getActivePackagesCount()).append("\n");
+        report.append("Total Hotels: ").append(hotelManager.getTotalHotels()).append("\n");
+        report.append("Total Transports: ").append(transportManager.getTotalTransports()).append("\n");
+        report.append("Total Guides: ").append(guideManager.getTotalGuides()).append("\n");
+        
+        // User Distribution
+        report.append("\n👥 USER DISTRIBUTION\n");
+        List<user> allUsers = userManager.getAllUsers();
+        Map<String, Long> usersByRole = new HashMap<>();
+        for (user u : allUsers) {
+            String role = u.getRole();
+            usersByRole.put(role, usersByRole.getOrDefault(role, 0L) + 1);
+        }
+        
+        for (Map.Entry<String, Long> entry : usersByRole.entrySet()) {
+            double percentage = (entry.getValue() * 100.0) / allUsers.size();
+            report.append(String.format("  %s: %d (%.1f%%)\n", 
+                entry.getKey(), entry.getValue(), percentage));
+        }
+
+        // Package Distribution
+        report.append("\n📦 PACKAGE DISTRIBUTION\n");
+        List<TourPackage> allPackages = packageManager.listPackages();
+        if (!allPackages.isEmpty()) {
+            Map<PackageCategory, Long> packagesByCategory = new HashMap<>();
+            for (TourPackage pkg : allPackages) {
+                if (pkg.getCategory() != null) {
+                    PackageCategory category = pkg.getCategory();
+                    packagesByCategory.put(category, packagesByCategory.getOrDefault(category, 0L) + 1);
                 }
             }
-
-            // System Health
-            report.append("\n🏥 SYSTEM HEALTH\n");
-            report.append("System Status: Operational\n");
-            report.append("Last Backup: ").append(getLastBackupDate()).append("\n");
-            
-            report.append("\n=======================================================\n");
-            
-            Logger.log("System report generated");
             
-        } catch (Exception e) {
-            Logger.error("Error generating system report: " + e.getMessage());
-            report.append("Error generating report: ").append(e.getMessage()).append("\n");
+            for (Map.Entry<PackageCategory, Long> entry : packagesByCategory.entrySet()) {
+                report.append("  ").append(entry.getKey().getDisplayName())
+                      .append(": ").append(entry.getValue()).append("\n");
+            }
         }
+
+        // System Health
+        report.append("\n🏥 SYSTEM HEALTH\n");
+        report.append("System Status: Operational\n");
+        report.append("Last Backup: ").append(getLastBackupDate()).append("\n");
+        
+        report.append("\n=======================================================\n");
+        
+        Logger.log("System report generated");
         
         return report.toString();
     }
@@ -423,36 +429,15 @@ public class ReportGenerator {
         StringBuilder report = new StringBuilder();
         
         try {
-            report.append("================== CUSTOM REPORT =====================\n");
-            report.append("Report Type: ").append(reportType).append("\n");
-            report.append("Period: ").append(startDate).append(" to ").append(endDate).append("\n");
-            report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
-            report.append("=======================================================\n\n");
-
-            switch (reportType.toUpperCase()) {
-                case "REVENUE":
-                    generateRevenueReport(report, startDate, endDate);
-                    break;
-                case "BOOKINGS":
-                    generateBookingsReport(report, startDate, endDate);
-                    break;
-                case "CUSTOMERS":
-                    generateCustomersReport(report, startDate, endDate);
-                    break;
-                case "PACKAGES":
-                    generatePackagesReport(report, startDate, endDate);
-                    break;
-                default:
-                    report.append("Unknown report type: ").append(reportType).append("\n");
-            }
-
-            report.append("\n=======================================================\n");
-            
-            String filename = "custom_report_" + reportType.toLowerCase() + "_" + 
-                             startDate.replace("-", "_") + "_to_" + endDate.replace("-", "_") + ".txt";
-            FileHandler.writeToFile(filename, report.toString());
-            Logger.log("Custom report generated: " + reportType);
-            
+            // The packages report counts the current catalogue, so it is never treated as closed and its entry
+            // stays stamped with the package manager's version instead
+            int[] closedDays = !"PACKAGES".equalsIgnoreCase(reportType)
+                    && DateUtil.isValidDate(startDate) && DateUtil.isValidDate(endDate)
+                    ? closedPeriod(new int[] {DateRangeIndex.toEpochDay(startDate), DateRangeIndex.toEpochDay(endDate)})
+                    : null;
+            return reportCache.get(ReportCache.key("custom", reportType, startDate, endDate), closedDays,
+                    () -> buildCustomReport(report, reportType, startDate, endDate),
+                    bookingManager, paymentManager, userManager, packageManager);
         } catch (Exception e) {
             Logger.error("Error generating custom report: " + e.getMessage());
             report.append("Error generating report: ").append(e.getMessage()).append("\n");
@@ -461,104 +446,147 @@ public class ReportGenerator {
         return report.toString();
     }
 
-    // Helper methods for data retrieval
-    private List<Booking> getDailyBookings(String date) {
-        List<Booking> result = new ArrayList<>();
-        List<Booking> allBookings = bookingManager.getAllBookings();
-        for (Booking booking : allBookings) {
-            if (booking.getBookingDate().equals(date)) {
-                result.add(booking);
-            }
+    private String buildCustomReport(StringBuilder report, String reportType, String startDate, String endDate) throws Exception {
+        report.append("================== CUSTOM REPORT =====================\n");
+        report.append("Report Type: ").append(reportType).append("\n");
+        report.append("Period: ").append(startDate).append(" to ").append(endDate).append("\n");
+        report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
+        report.append("=======================================================\n\n");
+
+        switch (reportType.toUpperCase()) {
+            case "REVENUE":
+                generateRevenueReport(report, startDate, endDate);
+                break;
+            case "BOOKINGS":
+                generateBookingsReport(report, startDate, endDate);
+                break;
+            case "CUSTOMERS":
+                generateCustomersReport(report, startDate, endDate);
+                break;
+            case "PACKAGES":
+                generatePackagesReport(report, startDate, endDate);
+                break;
+            default:
+                report.append("Unknown report type: ").append(reportType).append("\n");
         }
-        return result;
+
+        report.append("\n=======================================================\n");
+        
+        String filename = "custom_report_" + reportType.toLowerCase() + "_" + 
+                         startDate.replace("-", "_") + "_to_" + endDate.replace("-", "_") + ".txt";
+        FileHandler.writeToFile(filename, report.toString());
+        Logger.log("Custom report generated: " + reportType);
+        
+        return report.toString();
     }
 
-    private List<Payment> getDailyPayments(String date) {
-        List<Payment> result = new ArrayList<>();
-        List<Payment> allPayments = paymentManager.getAllPayments();
-        for (Payment payment : allPayments) {
-            if (payment.getPaymentDate().startsWith(date)) {
-                result.add(payment);
-            }
-        }
-        return result;
+    // Metrics shared by the monthly and annual reports; the period filter picks the records of the report period
+    private static Aggregation<Booking> bookingMetrics(Predicate<Booking> period) {
+        return new Aggregation<>(period)
+                .count("bookings")
+                .sum("value", Booking::getTotalAmount)
+                .countBy("status", Booking::getStatus)
+                .countBy("package", Booking::getPackageId)
+                .countBy("season", booking -> season(booking.getBookingDate()));
     }
 
-    private List<user> getDailyUsers(String date) {
-        List<user> result = new ArrayList<>();
-        List<user> allUsers = userManager.getAllUsers();
-        for (user u : allUsers) {
-            if (u.getCreatedDate() != null && u.getCreatedDate().equals(date)) {
-                result.add(u);
-            }
-        }
-        return result;
+    private static Aggregation<Payment> paymentMetrics(Predicate<Payment> period) {
+        return new Aggregation<>(period)
+                .count("payments")
+                .sum("revenue", Payment::getAmount, ReportGenerator::isCompleted)
+                .countBy("method", Payment::getPaymentMethod);
     }
 
-    private List<Booking> getMonthlyBookings(String month) {
-        List<Booking> result = new ArrayList<>();
-        List<Booking> allBookings = bookingManager.getAllBookings();
-        for (Booking booking : allBookings) {
-            if (booking.getBookingDate().startsWith(month)) {
-                result.add(booking);
-            }
-        }
-        return result;
+    private static Aggregation<user> userMetrics(Predicate<user> period) {
+        return new Aggregation<>(period)
+                .count("users")
+                .countBy("role", user::getRole);
     }
 
-    private List<Payment> getMonthlyPayments(String month) {
-        List<Payment> result = new ArrayList<>();
-        List<Payment> allPayments = paymentManager.getAllPayments();
-        for (Payment payment : allPayments) {
-            if (payment.getPaymentDate().startsWith(month)) {
-                result.add(payment);
-            }
+    // The period is a "yyyy" or "yyyy-MM" prefix. Shards come from the date index, so parallel mode is only used
+    // while that index holds every record; otherwise the records it cannot place would be missed
+    private Aggregation<Booking>.Result aggregateBookings(Aggregation<Booking> aggregation, String period) {
+        int[] days = DateRangeIndex.toDayRange(period);
+        if (pool == null || days == null || bookingManager.hasUndatedBookings()) {
+            return aggregation.run(bookingManager.getAllBookings());
         }
-        return result;
+        return aggregation.runSharded(shards(bookingManager::getBookingsInDateRange, days[0], days[1]), pool);
     }
 
-    private List<user> getMonthlyUsers(String month) {
-        List<user> result = new ArrayList<>();
-        List<user> allUsers = userManager.getAllUsers();
-        for (user u : allUsers) {
-            if (u.getCreatedDate() != null && u.getCreatedDate().startsWith(month)) {
-                result.add(u);
-            }
+    private Aggregation<Payment>.Result aggregatePayments(Aggregation<Payment> aggregation, String period) {
+        int[] days = DateRangeIndex.toDayRange(period);
+        if (pool == null || days == null || paymentManager.hasUndatedPayments()) {
+            return aggregation.run(paymentManager.getAllPayments());
         }
-        return result;
+        return aggregation.runSharded(shards(paymentManager::getPaymentsInDateRange, days[0], days[1]), pool);
     }
 
-    private List<Booking> getAnnualBookings(String year) {
-        List<Booking> result = new ArrayList<>();
-        List<Booking> allBookings = bookingManager.getAllBookings();
-        for (Booking booking : allBookings) {
-            if (booking.getBookingDate().startsWith(year)) {
-                result.add(booking);
-            }
+    // Custom reports aggregate a date-range lookup; in parallel mode the range is looked up shard by shard
+    private <T> Aggregation<T>.Result aggregateRange(Aggregation<T> aggregation,
+                                                     BiFunction<String, String, List<T>> dateRange,
+                                                     String startDate, String endDate) {
+        int fromDay = DateRangeIndex.toEpochDay(startDate);
+        int toDay = DateRangeIndex.toEpochDay(endDate);
+        if (pool == null || fromDay == DateRangeIndex.NULL_EPOCH_DAY || toDay == DateRangeIndex.NULL_EPOCH_DAY) {
+            return aggregation.run(dateRange.apply(startDate, endDate));
         }
-        return result;
+        return aggregation.runSharded(shards(dateRange, fromDay, toDay), pool);
     }
 
-    private List<Payment> getAnnualPayments(String year) {
-        List<Payment> result = new ArrayList<>();
-        List<Payment> allPayments = paymentManager.getAllPayments();
-        for (Payment payment : allPayments) {
-            if (payment.getPaymentDate().startsWith(year)) {
-                result.add(payment);
-            }
+    // One shard per calendar month of the range, or per day when the range spans at most two months
+    private static <T> List<Supplier<List<T>>> shards(BiFunction<String, String, List<T>> dateRange,
+                                                      int fromDay, int toDay) {
+        List<Supplier<List<T>>> shards = new ArrayList<>();
+        boolean daily = toDay - fromDay < MAX_DAILY_SHARD_SPAN;
+        LocalDate start = LocalDate.ofEpochDay(fromDay);
+        LocalDate last = LocalDate.ofEpochDay(toDay);
+        while (!start.isAfter(last)) {
+            LocalDate end = daily ? start : start.withDayOfMonth(start.lengthOfMonth());
+            if (end.isAfter(last)) {
+                end = last;
+            }
+            String from = start.toString();
+            String to = end.toString();
+            shards.add(() -> dateRange.apply(from, to));
+            start = end.plusDays(1);
         }
-        return result;
+        return shards;
     }
 
-    private List<user> getAnnualUsers(String year) {
-        List<user> result = new ArrayList<>();
-        List<user> allUsers = userManager.getAllUsers();
-        for (user u : allUsers) {
-            if (u.getCreatedDate() != null && u.getCreatedDate().startsWith(year)) {
-                result.add(u);
-            }
+    // The days of a "yyyy", "yyyy-MM" or "yyyy-MM-dd" period once it ends before the current month, null until then
+    private static int[] closedPeriod(String period) {
+        return closedPeriod(DateRangeIndex.toDayRange(period));
+    }
+
+    private static int[] closedPeriod(int[] days) {
+        int currentMonth = DateRangeIndex.toEpochDay(DateUtil.getCurrentDate().substring(0, 7) + "-01");
+        return days != null && days[0] <= days[1] && days[1] < currentMonth ? days : null;
+    }
+
+    private static boolean isCompleted(Payment payment) {
+        return "COMPLETED".equals(payment.getPaymentStatus());
+    }
+
+    private static boolean startsWith(String date, String prefix) {
+        return date != null && date.startsWith(prefix);
+    }
+
+    private static String season(String date) {
+        if (date == null || date.length() < 7) {
+            return null;
+        }
+        switch (date.substring(5, 7)) {
+            case "03": case "04": case "05":
+                return "Spring";
+            case "06": case "07": case "08":
+                return "Summer";
+            case "09": case "10": case "11":
+                return "Autumn";
+            case "12": case "01": case "02":
+                return "Winter";
+            default:
+                return null;
         }
-        return result;
     }
 
     private void generateGrowthAnalysis(StringBuilder report, String year) {
@@ -568,13 +596,7 @@ public class ReportGenerator {
         report.append("  Booking Growth: +28.7% (estimated)\n");
     }
 
-    private void generateTopPackagesReport(StringBuilder report, List<Booking> bookings) {
-        Map<String, Long> packageBookings = new HashMap<>();
-        for (Booking booking : bookings) {
-            String packageId = booking.getPackageId();
-            packageBookings.put(packageId, packageBookings.getOrDefault(packageId, 0L) + 1);
-        }
-        
+    private void generateTopPackagesReport(StringBuilder report, Map<String, Long> packageBookings) {
         List<Map.Entry<String, Long>> sortedEntries = new ArrayList<>(packageBookings.entrySet());
         sortedEntries.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
         
@@ -587,44 +609,24 @@ public class ReportGenerator {
         }
     }
 
-    private void generateCustomerInsights(StringBuilder report, List<Booking> bookings, List<user> users) {
-        int repeatCustomers = (int) (bookings.size() * 0.35); // Estimated
+    private void generateCustomerInsights(StringBuilder report, long bookingCount, long newUsers) {
+        int repeatCustomers = (int) (bookingCount * 0.35); // Estimated
         double customerRetentionRate = 67.5; // Estimated
         
-        report.append("New Customers: ").append(users.size()).append("\n");
+        report.append("New Customers: ").append(newUsers).append("\n");
         report.append("Repeat Customers: ").append(repeatCustomers).append("\n");
         report.append("Customer Retention Rate: ").append(customerRetentionRate).append("%\n");
         report.append("Average Customer Lifetime Value: $").append("1,250\n"); // Estimated
     }
 
-    private void generateSeasonalAnalysis(StringBuilder report, List<Booking> bookings) {
+    private void generateSeasonalAnalysis(StringBuilder report, Map<String, Long> bookingsBySeason, long bookingCount) {
         Map<String, Integer> seasonalBookings = new HashMap<>();
-        seasonalBookings.put("Spring", 0);
-        seasonalBookings.put("Summer", 0);
-        seasonalBookings.put("Autumn", 0);
-        seasonalBookings.put("Winter", 0);
-        
-        // Simplified seasonal analysis
-        for (Booking booking : bookings) {
-            String month = booking.getBookingDate().substring(5, 7);
-            switch (month) {
-                case "03": case "04": case "05":
-                    seasonalBookings.put("Spring", seasonalBookings.get("Spring") + 1);
-                    break;
-                case "06": case "07": case "08":
-                    seasonalBookings.put("Summer", seasonalBookings.get("Summer") + 1);
-                    break;
-                case "09": case "10": case "11":
-                    seasonalBookings.put("Autumn", seasonalBookings.get("Autumn") + 1);
-                    break;
-                case "12": case "01": case "02":
-                    seasonalBookings.put("Winter", seasonalBookings.get("Winter") + 1);
-                    break;
-            }
+        for (String season : new String[] {"Spring", "Summer", "Autumn", "Winter"}) {
+            seasonalBookings.put(season, bookingsBySeason.getOrDefault(season, 0L).intValue());
         }
         
         for (Map.Entry<String, Integer> entry : seasonalBookings.entrySet()) {
-            double percentage = bookings.isEmpty() ? 0 : (entry.getValue() * 100.0) / bookings.size();
+            double percentage = bookingCount == 0 ? 0 : (entry.getValue() * 100.0) / bookingCount;
             report.append(String.format("  %s: %d bookings (%.1f%%)\n", 
                 entry.getKey(), entry.getValue(), percentage));
         }
@@ -639,19 +641,18 @@ public class ReportGenerator {
 
     private void generateRevenueReport(StringBuilder report, String startDate, String endDate) {
         try {
-            List<Payment> payments = paymentManager.getPaymentsInDateRange(startDate, endDate);
-            double totalRevenue = 0.0;
-            for (Payment payment : payments) {
-                if ("COMPLETED".equals(payment.getPaymentStatus())) {
-                    totalRevenue += payment.getAmount();
-                }
-            }
+            Aggregation<Payment>.Result payments = aggregateRange(new Aggregation<Payment>(payment -> true)
+                    .count("payments")
+                    .sum("revenue", Payment::getAmount, ReportGenerator::isCompleted),
+                    paymentManager::getPaymentsInDateRange, startDate, endDate);
+            double totalRevenue = payments.sum("revenue");
+            long transactions = payments.count("payments");
             
             report.append("Revenue analysis for specified period:\n");
             report.append("Total Revenue: ").append(CurrencyFormatter.formatBDT(totalRevenue)).append("\n");
-            report.append("Total Transactions: ").append(payments.size()).append("\n");
-            if (!payments.isEmpty()) {
-                double avgTransaction = totalRevenue / payments.size();
+            report.append("Total Transactions: ").append(transactions).append("\n");
+            if (transactions > 0) {
+                double avgTransaction = totalRevenue / transactions;
                 report.append("Average Transaction: ").append(CurrencyFormatter.formatBDT(avgTransaction)).append("\n");
             }
         } catch (Exception e) {
@@ -661,26 +662,17 @@ public class ReportGenerator {
 
     private void generateBookingsReport(StringBuilder report, String startDate, String endDate) {
         try {
-            List<Booking> bookings = bookingManager.getBookingsInDateRange(startDate, endDate);
-            long confirmedBookings = 0;
-            long cancelledBookings = 0;
-            long pendingBookings = 0;
-            
-            for (Booking booking : bookings) {
-                if (booking.getStatus() == BookingStatus.CONFIRMED) {
-                    confirmedBookings++;
-                } else if (booking.getStatus() == BookingStatus.CANCELED) {
-                    cancelledBookings++;
-                } else if (booking.getStatus() == BookingStatus.PENDING) {
-                    pendingBookings++;
-                }
-            }
+            Aggregation<Booking>.Result bookings = aggregateRange(new Aggregation<Booking>(booking -> true)
+                    .count("bookings")
+                    .countBy("status", Booking::getStatus),
+                    bookingManager::getBookingsInDateRange, startDate, endDate);
+            Map<BookingStatus, Long> statusCount = bookings.counts("status");
             
             report.append("Booking analysis for specified period:\n");
-            report.append("Total Bookings: ").append(bookings.size()).append("\n");
-            report.append("Confirmed Bookings: ").append(confirmedBookings).append("\n");
-            report.append("Cancelled Bookings: ").append(cancelledBookings).append("\n");
-            report.append("Pending Bookings: ").append(pendingBookings).append("\n");
+            report.append("Total Bookings: ").append(bookings.count("bookings")).append("\n");
+            report.append("Confirmed Bookings: ").append(statusCount.getOrDefault(BookingStatus.CONFIRMED, 0L)).append("\n");
+            report.append("Cancelled Bookings: ").append(statusCount.getOrDefault(BookingStatus.CANCELED, 0L)).append("\n");
+            report.append("Pending Bookings: ").append(statusCount.getOrDefault(BookingStatus.PENDING, 0L)).append("\n");
         } catch (Exception e) {
             report.append("Error generating bookings report: ").append(e.getMessage()).append("\n");
         }
@@ -688,30 +680,16 @@ public class ReportGenerator {
 
     private void generateCustomersReport(StringBuilder report, String startDate, String endDate) {
         try {
-            List<user> users = new ArrayList<>();
-            List<user> allUsers = userManager.getAllUsers();
-            for (user u : allUsers) {
-                if (u.getCreatedDate() != null && 
-                    u.getCreatedDate().compareTo(startDate) >= 0 && 
-                    u.getCreatedDate().compareTo(endDate) <= 0) {
-                    users.add(u);
-                }
-            }
-            
-            long tourists = 0;
-            long agents = 0;
-            for (user u : users) {
-                if ("TOURIST".equals(u.getRole())) {
-                    tourists++;
-                } else if ("AGENT".equals(u.getRole())) {
-                    agents++;
-                }
-            }
+            Aggregation<user>.Result users = userMetrics(u -> u.getCreatedDate() != null
+                    && u.getCreatedDate().compareTo(startDate) >= 0
+                    && u.getCreatedDate().compareTo(endDate) <= 0)
+                    .run(userManager.getAllUsers());
+            Map<String, Long> roleCount = users.counts("role");
             
             report.append("Customer analysis for specified period:\n");
-            report.append("New Customers: ").append(users.size()).append("\n");
-            report.append("New Tourists: ").append(tourists).append("\n");
-            report.append("New Agents: ").append(agents).append("\n");
+            report.append("New Customers: ").append(users.count("users")).append("\n");
+            report.append("New Tourists: ").append(roleCount.getOrDefault("TOURIST", 0L)).append("\n");
+            report.append("New Agents: ").append(roleCount.getOrDefault("AGENT", 0L)).append("\n");
         } catch (Exception e) {
             report.append("Error generating customers report: ").append(e.getMessage()).append("\n");
         }
@@ -720,13 +698,10 @@ public class ReportGenerator {
     private void generatePackagesReport(StringBuilder report, String startDate, String endDate) {
         try {
             List<TourPackage> packages = packageManager.listPackages();
-            List<Booking> bookings = bookingManager.getBookingsInDateRange(startDate, endDate);
-            
-            Map<String, Long> packageBookings = new HashMap<>();
-            for (Booking booking : bookings) {
-                String packageId = booking.getPackageId();
-                packageBookings.put(packageId, packageBookings.getOrDefault(packageId, 0L) + 1);
-            }
+            Map<String, Long> packageBookings = aggregateRange(new Aggregation<Booking>(booking -> true)
+                    .countBy("package", Booking::getPackageId),
+                    bookingManager::getBookingsInDateRange, startDate, endDate)
+                    .counts("package");
             
             report.append("Package performance for specified period:\n");
             report.append("Total Active Packages: ").append(packages.size()).append("\n");
@@ -3,7 +3,9 @@ package report;
 import model.*;
 import manager.*;
 import enumtype.*;
+import util.ColumnarFile;
 import util.DateUtil;
+import util.FileHandler;
 import java.util.*;
 
 public class TourStats {
@@ -11,12 +13,14 @@ public class TourStats {
     private BookingManager bookingManager;
     private UserManager userManager;
     private PaymentManager paymentManager;
-
-    public TourStats() {
-        this.packageManager = new PackageManager();
-        this.bookingManager = new BookingManager();
-        this.userManager = new UserManager();
-        this.paymentManager = new PaymentManager();
+    private ReviewManager reviewManager;
+    // Memory only: the tour statistics cover all time, so they never belong to a closed period
+    private final ReportCache reportCache;
+
+    public TourStats(DataContext dataContext) {
+        this(dataContext.getPackageManager(), dataContext.getBookingManager(),
+                dataContext.getUserManager(), dataContext.getPaymentManager());
+        this.reviewManager = dataContext.getReviewManager();
     }
 
     public TourStats(PackageManager packageManager, BookingManager bookingManager, 
@@ -25,39 +29,21 @@ public class TourStats {
         this.bookingManager = bookingManager;
         this.userManager = userManager;
         this.paymentManager = paymentManager;
+        this.reportCache = new ReportCache(null);
+    }
+
+    public void clearReportCache() {
+        reportCache.clear();
     }
 
     public List<TourPackage> getPopularPackages() {
         return getPopularPackages(10);
     }
 
+    // Read from the booking manager's popularity leaderboard, which is kept current as bookings change
     public List<TourPackage> getPopularPackages(int limit) {
         try {
-            Map<String, Long> packageBookingCount = new HashMap<>();
-            List<Booking> allBookings = bookingManager.getAllBookings();
-            
-            for (Booking booking : allBookings) {
-                String packageId = booking.getPackageId();
-                packageBookingCount.put(packageId, packageBookingCount.getOrDefault(packageId, 0L) + 1);
-            }
-
-            List<Map.Entry<String, Long>> sortedEntries = new ArrayList<>(packageBookingCount.entrySet());
-            sortedEntries.sort(new Comparator<Map.Entry<String, Long>>() {
-                @Override
-                public int compare(Map.Entry<String, Long> e1, Map.Entry<String, Long> e2) {
-                    return e2.getValue().compareTo(e1.getValue());
-                }
-            });
-
-            List<TourPackage> result = new ArrayList<>();
-            int actualLimit = Math.min(limit, sortedEntries.size());
-            for (int i = 0; i < actualLimit; i++) {
-                TourPackage pkg = packageManager.getPackageById(sortedEntries.get(i).getKey());
-                if (pkg != null) {
-                    result.add(pkg);
-                }
-            }
-            return result;
+            return resolvePackages(bookingManager.getMostBookedPackageIds(limit));
         } catch (Exception e) {
             util.Logger.error("Error getting popular packages: " + e.getMessage());
             return new ArrayList<>();
@@ -80,6 +66,52 @@ public class TourStats {
         return bookingCounts;
     }
 
+    // Scans the status and totalAmount columns of the columnar snapshot without building Booking objects
+    public double getSnapshotBookingRevenue() {
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(
+                FileHandler.getDataPath(SnapshotConverter.BOOKINGS_COLUMNAR_FILE))) {
+            byte[] statuses = reader.readEnumColumn(SnapshotConverter.BOOKING_STATUS);
+            long[] amounts = reader.readMinorUnitsColumn(SnapshotConverter.BOOKING_TOTAL_AMOUNT);
+            int confirmed = BookingStatus.CONFIRMED.ordinal();
+            int completed = BookingStatus.COMPLETED.ordinal();
+
+            long revenue = 0;
+            for (int row = 0; row < amounts.length; row++) {
+                if (statuses[row] == confirmed || statuses[row] == completed) {
+                    revenue += amounts[row];
+                }
+            }
+            return ColumnarFile.fromMinorUnits(revenue);
+        } catch (Exception e) {
+            util.Logger.error("Error scanning booking revenue from snapshot: " + e.getMessage());
+            return 0.0;
+        }
+    }
+
+    // Counts by dictionary code and decodes each distinct package ID once
+    public Map<String, Integer> getSnapshotPackageBookingCounts() {
+        Map<String, Integer> bookingCounts = new HashMap<>();
+
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(
+                FileHandler.getDataPath(SnapshotConverter.BOOKINGS_COLUMNAR_FILE))) {
+            List<String> packageIds = new ArrayList<>();
+            int[] codes = reader.readDictionaryCodes(SnapshotConverter.BOOKING_PACKAGE_ID, packageIds);
+            int[] counts = new int[packageIds.size()];
+            for (int code : codes) {
+                if (code >= 0) {
+                    counts[code]++;
+                }
+            }
+            for (int code = 0; code < counts.length; code++) {
+                bookingCounts.put(packageIds.get(code), counts[code]);
+            }
+        } catch (Exception e) {
+            util.Logger.error("Error scanning package booking counts from snapshot: " + e.getMessage());
+        }
+
+        return bookingCounts;
+    }
+
     public double calculateAverageRating() {
         return calculateAverageRating(null);
     }
@@ -131,7 +163,7 @@ public class TourStats {
         try {
             List<TourPackage> allPackages = packageManager.listPackages();
             for (TourPackage pkg : allPackages) {
-                double rating = calculateAverageRating(pkg.getPackageId());
+                double rating = getPackageRating(pkg.getPackageId());
                 packageRatings.put(pkg.getPackageId(), rating);
             }
         } catch (Exception e) {
@@ -184,7 +216,7 @@ public class TourStats {
                 averageBookingValue = totalBookingValue / totalBookings;
             }
 
-            double rating = calculateAverageRating(packageId);
+            double rating = getPackageRating(packageId);
             
             int totalParticipants = 0;
             for (Booking booking : packageBookings) {
@@ -332,14 +364,9 @@ public class TourStats {
                 averageTransactionValue = totalRevenue / completedPayments.size();
             }
 
-            // Monthly revenue calculation (simplified)
+            // Current month's revenue, read from the payment manager's revenue buckets
             String currentMonth = DateUtil.getCurrentDate().substring(0, 7);
-            double monthlyRevenue = 0.0;
-            for (Payment payment : completedPayments) {
-                if (payment.getPaymentDate().startsWith(currentMonth)) {
-                    monthlyRevenue += payment.getAmount();
-                }
-            }
+            double monthlyRevenue = paymentManager.getRevenueByDate(currentMonth);
 
             // Payment method distribution
             Map<String, Double> paymentMethodRevenue = new HashMap<>();
@@ -355,48 +382,32 @@ public class TourStats {
         }
     }
 
+    // Both trend series are read from the managers' time buckets, in date order
     public Map<String, Integer> getMonthlyBookingTrends() {
-        Map<String, Integer> monthlyTrends = new HashMap<>();
-        
         try {
-            List<Booking> bookings = bookingManager.getAllBookings();
-            for (Booking booking : bookings) {
-                String month = booking.getBookingDate().substring(0, 7); // YYYY-MM
-                monthlyTrends.put(month, monthlyTrends.getOrDefault(month, 0) + 1);
-            }
+            return bookingManager.getBookingCountsByMonth();
         } catch (Exception e) {
             util.Logger.error("Error getting monthly booking trends: " + e.getMessage());
+            return new HashMap<>();
         }
-        
-        return monthlyTrends;
     }
 
     public Map<String, Double> getMonthlyRevenueTrends() {
-        Map<String, Double> monthlyRevenue = new HashMap<>();
-        
         try {
-            List<Payment> completedPayments = new ArrayList<>();
-            List<Payment> allPayments = paymentManager.getAllPayments();
-            
-            for (Payment payment : allPayments) {
-                if ("COMPLETED".equals(payment.getPaymentStatus())) {
-                    completedPayments.add(payment);
-                }
-            }
-            
-            for (Payment payment : completedPayments) {
-                String month = payment.getPaymentDate().substring(0, 7); // YYYY-MM
-                monthlyRevenue.put(month, monthlyRevenue.getOrDefault(month, 0.0) + payment.getAmount());
-            }
+            return paymentManager.getMonthlyRevenue();
         } catch (Exception e) {
             util.Logger.error("Error getting monthly revenue trends: " + e.getMessage());
+            return new HashMap<>();
         }
-        
-        return monthlyRevenue;
     }
 
+    // Ranked by average review rating when reviews are available; otherwise by the simulated ratings
     public List<TourPackage> getTopRatedPackages(int limit) {
         try {
+            if (reviewManager != null) {
+                return resolvePackages(reviewManager.getTopRatedPackageIds(limit));
+            }
+
             Map<String, Double> packageRatings = getAllPackageRatings();
             
             List<Map.Entry<String, Double>> sortedEntries = new ArrayList<>(packageRatings.entrySet());
@@ -422,70 +433,98 @@ public class TourStats {
         }
     }
 
+    private List<TourPackage> resolvePackages(List<String> packageIds) {
+        List<TourPackage> result = new ArrayList<>(packageIds.size());
+        for (String packageId : packageIds) {
+            TourPackage pkg = packageManager.getPackageById(packageId);
+            if (pkg != null) {
+                result.add(pkg);
+            }
+        }
+        return result;
+    }
+
+    // Every rating figure comes from the reviews when they are available, and from the simulated ratings otherwise
+    private double getPackageRating(String packageId) {
+        return reviewManager != null ? reviewManager.getAveragePackageRating(packageId) : calculateAverageRating(packageId);
+    }
+
+    private double getOverallRating() {
+        return reviewManager != null ? reviewManager.getOverallAveragePackageRating() : calculateAverageRating();
+    }
+
     public String generateTourStatsReport() {
         StringBuilder report = new StringBuilder();
         
         try {
-            report.append("=================== TOUR STATISTICS REPORT ===================\n");
-            report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
-            report.append("================================================================\n\n");
-
-            // Popular Packages
-            report.append("🏆 TOP 5 POPULAR PACKAGES\n");
-            List<TourPackage> popularPackages = getPopularPackages(5);
-            for (int i = 0; i < popularPackages.size(); i++) {
-                TourPackage pkg = popularPackages.get(i);
-                int bookings = getPackageBookingCounts().getOrDefault(pkg.getPackageId(), 0);
-                report.append(String.format("%d. %s (%d bookings)\n", 
-                    i + 1, pkg.getName(), bookings));
-            }
+            // Keyed by month as well, since the revenue statistics include the current month's revenue
+            String key = ReportCache.key("tour_stats", DateUtil.getCurrentDate().substring(0, 7));
+            return reportCache.get(key, null, () -> buildTourStatsReport(report),
+                    packageManager, bookingManager, userManager, paymentManager, reviewManager);
+        } catch (Exception e) {
+            util.Logger.error("Error generating tour stats report: " + e.getMessage());
+            report.append("Error generating report: ").append(e.getMessage()).append("\n");
+        }
+        
+        return report.toString();
+    }
 
-            // Rating Statistics
-            report.append("\n⭐ RATING STATISTICS\n");
-            double overallRating = calculateAverageRating();
-            report.append(String.format("Overall Average Rating: %.2f/5.0\n", overallRating));
-            
-            List<TourPackage> topRated = getTopRatedPackages(3);
-            report.append("Top Rated Packages:\n");
-            for (int i = 0; i < topRated.size(); i++) {
-                TourPackage pkg = topRated.get(i);
-                double rating = calculateAverageRating(pkg.getPackageId());
-                report.append(String.format("  %d. %s (%.2f/5.0)\n", 
-                    i + 1, pkg.getName(), rating));
-            }
+    private String buildTourStatsReport(StringBuilder report) throws Exception {
+        report.append("=================== TOUR STATISTICS REPORT ===================\n");
+        report.append("Generated: ").append(DateUtil.getCurrentDateTime()).append("\n");
+        report.append("================================================================\n\n");
+
+        // Popular Packages
+        report.append("🏆 TOP 5 POPULAR PACKAGES\n");
+        List<TourPackage> popularPackages = getPopularPackages(5);
+        for (int i = 0; i < popularPackages.size(); i++) {
+            TourPackage pkg = popularPackages.get(i);
+            int bookings = bookingManager.getBookingCountByPackage(pkg.getPackageId());
+            report.append(String.format("%d. %s (%d bookings)\n", 
+                i + 1, pkg.getName(), bookings));
+        }
 
-            // Category Distribution
-            report.append("\n📊 BOOKINGS BY CATEGORY\n");
-            Map<PackageCategory, Integer> categoryBookings = getBookingsByCategory();
-            for (Map.Entry<PackageCategory, Integer> entry : categoryBookings.entrySet()) {
-                report.append(String.format("  %s: %d bookings\n", 
-                    entry.getKey().getDisplayName(), entry.getValue()));
-            }
+        // Rating Statistics
+        report.append("\n⭐ RATING STATISTICS\n");
+        double overallRating = getOverallRating();
+        report.append(String.format("Overall Average Rating: %.2f/5.0\n", overallRating));
+        
+        List<TourPackage> topRated = getTopRatedPackages(3);
+        report.append("Top Rated Packages:\n");
+        for (int i = 0; i < topRated.size(); i++) {
+            TourPackage pkg = topRated.get(i);
+            double rating = getPackageRating(pkg.getPackageId());
+            report.append(String.format("  %d. %s (%.2f/5.0)\n", 
+                i + 1, pkg.getName(), rating));
+        }
 
-            // Tour Type Distribution
-            report.append("\n🎯 BOOKINGS BY TOUR TYPE\n");
-            Map<TourType, Integer> tourTypeBookings = getBookingsByTourType();
-            for (Map.Entry<TourType, Integer> entry : tourTypeBookings.entrySet()) {
-                report.append(String.format("  %s: %d bookings\n", 
-                    entry.getKey().getDisplayName(), entry.getValue()));
-            }
+        // Category Distribution
+        report.append("\n📊 BOOKINGS BY CATEGORY\n");
+        Map<PackageCategory, Integer> categoryBookings = getBookingsByCategory();
+        for (Map.Entry<PackageCategory, Integer> entry : categoryBookings.entrySet()) {
+            report.append(String.format("  %s: %d bookings\n", 
+                entry.getKey().getDisplayName(), entry.getValue()));
+        }
 
-            // Customer Statistics
-            report.append("\n👥 CUSTOMER STATISTICS\n");
-            CustomerStats customerStats = getCustomerStatistics();
-            report.append(customerStats.toString());
+        // Tour Type Distribution
+        report.append("\n🎯 BOOKINGS BY TOUR TYPE\n");
+        Map<TourType, Integer> tourTypeBookings = getBookingsByTourType();
+        for (Map.Entry<TourType, Integer> entry : tourTypeBookings.entrySet()) {
+            report.append(String.format("  %s: %d bookings\n", 
+                entry.getKey().getDisplayName(), entry.getValue()));
+        }
 
-            // Revenue Statistics
-            report.append("\n💰 REVENUE STATISTICS\n");
-            RevenueStats revenueStats = getRevenueStatistics();
-            report.append(revenueStats.toString());
+        // Customer Statistics
+        report.append("\n👥 CUSTOMER STATISTICS\n");
+        CustomerStats customerStats = getCustomerStatistics();
+        report.append(customerStats.toString());
 
-            report.append("\n================================================================\n");
-            
-        } catch (Exception e) {
-            util.Logger.error("Error generating tour stats report: " + e.getMessage());
-            report.append("Error generating report: ").append(e.getMessage()).append("\n");
-        }
+        // Revenue Statistics
+        report.append("\n💰 REVENUE STATISTICS\n");
+        RevenueStats revenueStats = getRevenueStatistics();
+        report.append(revenueStats.toString());
+
+        report.append("\n================================================================\n");
         
         return report.toString();
     }
@@ -6,6 +6,7 @@ import util.BackupManager;
 import manager.*;
 import model.user;
 import model.Admin;
+import enumtype.BookingStatus;
 import report.ReportGenerator;
 import java.util.List;
 
@@ -18,13 +19,13 @@ public class AdminMenu {
     private ReportGenerator reportGenerator;
     private boolean isRunning;
 
-    public AdminMenu(user user, UserManager userManager) {
+    public AdminMenu(user user, DataContext dataContext) {
         this.admin = (Admin) user;
-        this.userManager = userManager;
-        this.packageManager = new PackageManager();
-        this.bookingManager = new BookingManager();
-        this.paymentManager = new PaymentManager();
-        this.reportGenerator = new ReportGenerator(userManager, packageManager, bookingManager, paymentManager);
+        this.userManager = dataContext.getUserManager();
+        this.packageManager = dataContext.getPackageManager();
+        this.bookingManager = dataContext.getBookingManager();
+        this.paymentManager = dataContext.getPaymentManager();
+        this.reportGenerator = new ReportGenerator(dataContext);
         this.isRunning = true;
     }
 
@@ -284,9 +285,9 @@ public class AdminMenu {
         System.out.println("BOOKING MANAGEMENT");
         System.out.println("=======================================================");
         System.out.println("Total Bookings: " + bookingManager.getTotalBookings());
-        System.out.println("Pending Bookings: " + bookingManager.getPendingBookings().size());
-        System.out.println("Confirmed Bookings: " + bookingManager.getConfirmedBookings().size());
-        System.out.println("Cancelled Bookings: " + bookingManager.getCancelledBookings().size());
+        System.out.println("Pending Bookings: " + bookingManager.getBookingsCountByStatus(BookingStatus.PENDING));
+        System.out.println("Confirmed Bookings: " + bookingManager.getBookingsCountByStatus(BookingStatus.CONFIRMED));
+        System.out.println("Cancelled Bookings: " + bookingManager.getBookingsCountByStatus(BookingStatus.CANCELED));
         System.out.println("Total Revenue: $" + String.format("%.2f", bookingManager.getTotalRevenue()));
         System.out.println();
         System.out.println("Booking management features under development...");
@@ -420,6 +421,18 @@ public class AdminMenu {
         System.out.println("- Session timeout: 2 hours");
         System.out.println("- Max login attempts: 3");
         System.out.println();
+        if (InputHandler.getBoolean("Verify dashboard totals against a full scan?")) {
+            boolean bookingsOk = bookingManager.verifyAggregates();
+            boolean paymentsOk = paymentManager.verifyAggregates();
+            System.out.println("Booking totals: " + (bookingsOk ? "OK" : "MISMATCH (see log)"));
+            System.out.println("Payment totals: " + (paymentsOk ? "OK" : "MISMATCH (see log)"));
+            System.out.println();
+        }
+        if (InputHandler.getBoolean("Clear cached reports, including closed periods?")) {
+            reportGenerator.clearReportCache();
+            System.out.println("Report cache cleared.");
+            System.out.println();
+        }
         System.out.println("System settings management under development...");
         InputHandler.pressEnterToContinue();
     }
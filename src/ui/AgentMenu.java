@@ -14,11 +14,11 @@ public class AgentMenu {
     private BookingManager bookingManager;
     private boolean isRunning;
 
-    public AgentMenu(user user, UserManager userManager) {
+    public AgentMenu(user user, DataContext dataContext) {
         this.agent = (TravelAgent) user;
-        this.userManager = userManager;
-        this.packageManager = new PackageManager();
-        this.bookingManager = new BookingManager();
+        this.userManager = dataContext.getUserManager();
+        this.packageManager = dataContext.getPackageManager();
+        this.bookingManager = dataContext.getBookingManager();
         this.isRunning = true;
     }
 
@@ -16,13 +16,16 @@ public class BookingUI {
     private BookingManager bookingManager;
     private PackageManager packageManager;
     private PaymentManager paymentManager;
+    private DataContext dataContext;
+    private static final int COMPLETION_LIMIT = 5;
 
-    public BookingUI(user currentUser, UserManager userManager) {
+    public BookingUI(user currentUser, DataContext dataContext) {
         this.currentUser = currentUser;
-        this.userManager = userManager;
-        this.bookingManager = new BookingManager();
-        this.packageManager = new PackageManager();
-        this.paymentManager = new PaymentManager();
+        this.dataContext = dataContext;
+        this.userManager = dataContext.getUserManager();
+        this.bookingManager = dataContext.getBookingManager();
+        this.packageManager = dataContext.getPackageManager();
+        this.paymentManager = dataContext.getPaymentManager();
     }
 
     public void createNewBooking() {
@@ -42,18 +45,13 @@ public class BookingUI {
             displayPackageList(packages);
             
             // Get package selection
-            int packageChoice = InputHandler.getInt("\nEnter Package Number (1-" + packages.size() + "): ");
-            
-            // Validate package choice
-            if (packageChoice < 1 || packageChoice > packages.size()) {
-                System.out.println("Invalid package number!");
+            TourPackage selectedPackage = selectPackage(packages);
+            if (selectedPackage == null) {
+                System.out.println("Invalid package selection!");
                 InputHandler.pressEnterToContinue();
                 return;
             }
             
-            // Get selected package
-            TourPackage selectedPackage = packages.get(packageChoice - 1);
-            
             if (!selectedPackage.isActive() || !selectedPackage.isAvailable()) {
                 System.out.println("Package is not available for booking!");
                 InputHandler.pressEnterToContinue();
@@ -114,7 +112,7 @@ public class BookingUI {
                 Logger.log("New booking created: " + bookingId + " by " + currentUser.getEmail());
                 
                 // Proceed to payment
-                PaymentUI paymentUI = new PaymentUI(currentUser, userManager);
+                PaymentUI paymentUI = new PaymentUI(currentUser, dataContext);
                 paymentUI.processPayment(newBooking);
                 
             } else {
@@ -129,6 +127,22 @@ public class BookingUI {
         InputHandler.pressEnterToContinue();
     }
 
+    // Accepts the list number, a package ID, or the start of a package name or location
+    private TourPackage selectPackage(List<TourPackage> packages) {
+        return InputHandler.getWithCompletion(
+                "\nEnter Package Number (1-" + packages.size() + ") or start typing a package name: ",
+                input -> {
+                    try {
+                        int packageChoice = Integer.parseInt(input);
+                        return packageChoice >= 1 && packageChoice <= packages.size() ? packages.get(packageChoice - 1) : null;
+                    } catch (NumberFormatException e) {
+                        return packageManager.getPackageById(input);
+                    }
+                },
+                input -> packageManager.completePackages(input, COMPLETION_LIMIT),
+                pkg -> pkg.getName() + " (" + pkg.getLocation() + ", " + CurrencyFormatter.formatBDT(pkg.getBasePrice()) + ")");
+    }
+
     private void displayPackageList(List<TourPackage> packages) {
         System.out.println("AVAILABLE TOUR PACKAGES");
         System.out.println("=======================================================");
@@ -6,6 +6,13 @@ import model.*;
 import enumtype.*;
 import report.ReportGenerator;
 import java.io.File;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Main {
     private static UserManager userManager;
@@ -18,6 +25,8 @@ public class Main {
     private static ReviewManager reviewManager;
     private static RefundManager refundManager;
     private static RoomManager roomManager;
+    private static LocationManager locationManager;
+    private static DataContext dataContext;
     private static AuthService authService;
     private static ReportGenerator reportGenerator;
 
@@ -118,35 +127,97 @@ public class Main {
     private static void initializeManagers() {
         System.out.println("Initializing core managers...");
         
-        try {
-            // Core managers
-            userManager = new UserManager();
-            packageManager = new PackageManager();
-            bookingManager = new BookingManager();
-            paymentManager = new PaymentManager();
-            hotelManager = new HotelManager();
-            transportManager = new TransportManager();
-            guideManager = new GuideManager();
-            reviewManager = new ReviewManager();
-            roomManager = new RoomManager();
+        long startTime = System.nanoTime();
+        Map<String, Long> loadTimes = new ConcurrentHashMap<>();
+        
+        // Each core manager loads its own data files, so they are loaded concurrently
+        try (ExecutorService loader = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<UserManager> userFuture = loader.submit(() -> loadTimed("UserManager", UserManager::new, loadTimes));
+            Future<PackageManager> packageFuture = loader.submit(() -> loadTimed("PackageManager", PackageManager::new, loadTimes));
+            Future<BookingManager> bookingFuture = loader.submit(() -> loadTimed("BookingManager", BookingManager::new, loadTimes));
+            Future<PaymentManager> paymentFuture = loader.submit(() -> loadTimed("PaymentManager", PaymentManager::new, loadTimes));
+            Future<HotelManager> hotelFuture = loader.submit(() -> loadTimed("HotelManager", HotelManager::new, loadTimes));
+            Future<TransportManager> transportFuture = loader.submit(() -> loadTimed("TransportManager", TransportManager::new, loadTimes));
+            Future<GuideManager> guideFuture = loader.submit(() -> loadTimed("GuideManager", GuideManager::new, loadTimes));
+            Future<ReviewManager> reviewFuture = loader.submit(() -> loadTimed("ReviewManager", ReviewManager::new, loadTimes));
+            Future<RoomManager> roomFuture = loader.submit(() -> loadTimed("RoomManager", RoomManager::new, loadTimes));
+            Future<LocationManager> locationFuture = loader.submit(() -> loadTimed("LocationManager", LocationManager::new, loadTimes));
             
             // Initialize refund manager with payment manager dependency
-            refundManager = new RefundManager(paymentManager);
+            Future<RefundManager> refundFuture = loader.submit(() -> {
+                PaymentManager payments = paymentFuture.get();
+                return loadTimed("RefundManager", () -> new RefundManager(payments), loadTimes);
+            });
+            
+            userManager = userFuture.get();
+            packageManager = packageFuture.get();
+            bookingManager = bookingFuture.get();
+            paymentManager = paymentFuture.get();
+            hotelManager = hotelFuture.get();
+            transportManager = transportFuture.get();
+            guideManager = guideFuture.get();
+            reviewManager = reviewFuture.get();
+            roomManager = roomFuture.get();
+            refundManager = refundFuture.get();
+            locationManager = locationFuture.get();
+
+            // Hotels, packages and guides geocode their place names through the gazetteer for nearby searches
+            hotelManager.setLocationManager(locationManager);
+            packageManager.setLocationManager(locationManager);
+            guideManager.setLocationManager(locationManager);
+            // Package completions are ranked by how often each package is booked
+            packageManager.setBookingManager(bookingManager);
+
+            // Every screen and report works on these instances instead of reloading the data files
+            dataContext = new DataContext(userManager, packageManager, bookingManager, paymentManager,
+                    hotelManager, transportManager, guideManager, reviewManager, refundManager, roomManager,
+                    locationManager);
             
             // Initialize authentication service
             authService = new AuthService(userManager);
             
             // Initialize report generator
-            reportGenerator = new ReportGenerator(userManager, packageManager, bookingManager, paymentManager);
+            reportGenerator = new ReportGenerator(dataContext);
             
             System.out.println("All managers initialized successfully");
+            reportLoadTimes(loadTimes, (System.nanoTime() - startTime) / 1_000_000);
             Logger.log("Core managers initialized");
             
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to initialize managers", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while initializing managers", e);
         } catch (Exception e) {
             throw new RuntimeException("Failed to initialize managers", e);
         }
     }
     
+    private static <T> T loadTimed(String name, Callable<T> constructor, Map<String, Long> loadTimes) throws Exception {
+        long started = System.nanoTime();
+        T manager = constructor.call();
+        loadTimes.put(name, (System.nanoTime() - started) / 1_000_000);
+        return manager;
+    }
+    
+    // Slowest loader first: with parallel loading the slowest chain is the startup critical path
+    private static void reportLoadTimes(Map<String, Long> loadTimes, long totalMillis) {
+        long sequentialMillis = 0;
+        for (long millis : loadTimes.values()) {
+            sequentialMillis += millis;
+        }
+        
+        System.out.println("   Manager load times (parallel total: " + totalMillis + " ms, sum: " + sequentialMillis + " ms)");
+        loadTimes.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(entry -> {
+                    String dependency = entry.getKey().equals("RefundManager") ? " (after PaymentManager)" : "";
+                    System.out.println("     " + entry.getKey() + ": " + entry.getValue() + " ms" + dependency);
+                    Logger.log("Loaded " + entry.getKey() + " in " + entry.getValue() + " ms" + dependency);
+                });
+        Logger.log("Manager loading took " + totalMillis + " ms (sequential sum " + sequentialMillis + " ms)");
+    }
+    
     private static void configureSystemSettings() {
         System.out.println("Configuring system settings...");
         
@@ -190,6 +261,9 @@ public class Main {
     
     private static void seedAdditionalData() {
         try {
+            // Seed the gazetteer used for nearby searches
+            seedLocations();
+            
             // Seed additional guides
             seedGuides();
             
@@ -210,6 +284,7 @@ public class Main {
         guide1.addLanguage("English");
         guide1.setSpecialization("Historical Tours");
         guide1.setDailyRate(150.0);
+        guide1.setBaseLocation("Dhaka");
         guideManager.addGuide(guide1);
         
         TourGuide guide2 = new TourGuide("GID002", "Fatima Khan", "+8801712345682", "fatima@tourbd.com");
@@ -218,9 +293,38 @@ public class Main {
         guide2.addLanguage("Hindi");
         guide2.setSpecialization("Adventure Tours");
         guide2.setDailyRate(200.0);
+        guide2.setBaseLocation("Chittagong");
         guideManager.addGuide(guide2);
     }
     
+    private static void seedLocations() {
+        Object[][] places = {
+            {"LOC001", "Dhaka", "Bangladesh", 23.8103, 90.4125},
+            {"LOC002", "Cox's Bazar", "Bangladesh", 21.4272, 92.0058},
+            {"LOC003", "Chittagong", "Bangladesh", 22.3569, 91.7832},
+            {"LOC004", "Sylhet", "Bangladesh", 24.8949, 91.8687},
+            {"LOC005", "Srimangal", "Bangladesh", 24.3065, 91.7296},
+            {"LOC006", "Jaflong", "Bangladesh", 25.1636, 92.0176},
+            {"LOC007", "Bandarban", "Bangladesh", 22.1953, 92.2184},
+            {"LOC008", "Rangamati", "Bangladesh", 22.6533, 92.1750},
+            {"LOC009", "Saint Martin's Island", "Bangladesh", 20.6237, 92.3234},
+            {"LOC010", "Kuakata", "Bangladesh", 21.8167, 90.1194},
+            {"LOC011", "Sundarbans", "Bangladesh", 21.9497, 89.1833},
+            {"LOC012", "Bagerhat", "Bangladesh", 22.6516, 89.7859},
+            {"LOC013", "Paharpur", "Bangladesh", 25.0317, 88.9769},
+            {"LOC014", "Bogura", "Bangladesh", 24.8466, 89.3776},
+            {"LOC015", "Panchagarh", "Bangladesh", 26.3411, 88.5542},
+            {"LOC016", "Tangail", "Bangladesh", 24.2513, 89.9167},
+            {"LOC017", "Bangkok", "Thailand", 13.7563, 100.5018}
+        };
+        for (Object[] place : places) {
+            Location location = new Location((String) place[0], (String) place[1], (String) place[2]);
+            location.setLatitude((Double) place[3]);
+            location.setLongitude((Double) place[4]);
+            locationManager.addLocation(location);
+        }
+    }
+    
     private static void seedTransports() {
         Transport bus1 = new Transport("TRP001", TransportType.BUS, "Dhaka", "Cox's Bazar");
         bus1.setDepartureTime("08:00");
@@ -298,6 +402,9 @@ public class Main {
         System.out.println("Starting background tasks...");
         
         try {
+            // Start write-behind persistence thread
+            PersistenceService.start();
+            
             // Start session cleanup thread
             startSessionCleanupTask();
             
@@ -340,6 +447,7 @@ public class Main {
             while (true) {
                 try {
                     Thread.sleep(86400000); // 24 hours
+                    PersistenceService.flushAll(); // Back up what the user has already saved
                     BackupManager.createBackup();
                     Logger.log("Automated daily backup completed");
                 } catch (InterruptedException e) {
@@ -363,6 +471,7 @@ public class Main {
                     // Monitor system resources and log status
                     Logger.log("System monitoring: Active sessions: " + 
                               authService.getLoginManager().getActiveSessionCount());
+                    Logger.log("System monitoring: Persistence " + PersistenceService.getStatistics());
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     break;
@@ -384,7 +493,7 @@ public class Main {
             setupShutdownHook();
             
             // Create and start main menu
-            MainMenu mainMenu = new MainMenu(userManager);
+            MainMenu mainMenu = new MainMenu(dataContext, authService);
             
             // Display startup completion message
             displayStartupComplete();
@@ -424,6 +533,7 @@ public class Main {
             }
             
             // Save any pending data
+            PersistenceService.shutdown();
             Logger.log("Emergency data save completed");
             
             // Final log entry
@@ -473,6 +583,9 @@ public class Main {
             // Generate final system report
             generateShutdownReport();
             
+            // Write out everything still queued before the final backup copies the data directory
+            PersistenceService.shutdown();
+            
             // Create final backup
             try {
                 BackupManager.createBackup();
@@ -529,6 +642,8 @@ public class Main {
     public static ReviewManager getReviewManager() { return reviewManager; }
     public static RefundManager getRefundManager() { return refundManager; }
     public static RoomManager getRoomManager() { return roomManager; }
+    public static LocationManager getLocationManager() { return locationManager; }
+    public static DataContext getDataContext() { return dataContext; }
     public static AuthService getAuthService() { return authService; }
     public static ReportGenerator getReportGenerator() { return reportGenerator; }
 }
@@ -2,6 +2,7 @@ package ui;
 
 import util.InputHandler;
 import util.Logger;
+import manager.DataContext;
 import manager.UserManager;
 import auth.AuthService;
 import model.user;
@@ -9,11 +10,13 @@ import model.user;
 public class MainMenu {
     private UserManager userManager;
     private AuthService authService;
+    private DataContext dataContext;
     private boolean isRunning;
 
-    public MainMenu(UserManager userManager) {
-        this.userManager = userManager;
-        this.authService = new AuthService(userManager);
+    public MainMenu(DataContext dataContext, AuthService authService) {
+        this.dataContext = dataContext;
+        this.userManager = dataContext.getUserManager();
+        this.authService = authService;
         this.isRunning = true;
     }
 
@@ -94,13 +97,13 @@ public class MainMenu {
         try {
             String role = user.getRole();
             if ("ADMIN".equals(role)) {
-                AdminMenu adminMenu = new AdminMenu(user, userManager);
+                AdminMenu adminMenu = new AdminMenu(user, dataContext);
                 adminMenu.displayAdminMenu();
             } else if ("TOURIST".equals(role)) {
-                TouristMenu touristMenu = new TouristMenu(user, userManager);
+                TouristMenu touristMenu = new TouristMenu(user, dataContext);
                 touristMenu.displayTouristMenu();
             } else if ("AGENT".equals(role)) {
-                AgentMenu agentMenu = new AgentMenu(user, userManager);
+                AgentMenu agentMenu = new AgentMenu(user, dataContext);
                 agentMenu.displayAgentMenu();
             } else {
                 System.out.println("Unknown user role: " + role);
@@ -122,8 +125,7 @@ public class MainMenu {
             System.out.println("Register or login to book packages!");
             System.out.println();
             
-            manager.PackageManager packageManager = new manager.PackageManager();
-            java.util.List<model.TourPackage> packages = packageManager.listActivePackages();
+            java.util.List<model.TourPackage> packages = dataContext.getPackageManager().listActivePackages();
             
             if (packages.isEmpty()) {
                 System.out.println("No packages available at the moment.");
@@ -3,21 +3,36 @@ package ui;
 import util.InputHandler;
 import util.IDGenerator;
 import util.Logger;
+import util.QueryCondition;
+import util.SpatialIndex;
+import manager.DataContext;
+import manager.HotelManager;
+import manager.LocationManager;
 import manager.PackageManager;
 import manager.UserManager;
 import model.*;
 import enumtype.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class PackageUI {
     private user currentUser;
     private UserManager userManager;
     private PackageManager packageManager;
+    private HotelManager hotelManager;
+    private LocationManager locationManager;
+    private static final double NEARBY_HOTEL_RADIUS_KM = 50.0;
+    private static final int NEARBY_HOTEL_LIMIT = 5;
+    private static final int COMPLETION_LIMIT = 5;
 
-    public PackageUI(user currentUser, UserManager userManager) {
+    public PackageUI(user currentUser, DataContext dataContext) {
         this.currentUser = currentUser;
-        this.userManager = userManager;
-        this.packageManager = new PackageManager();
+        this.userManager = dataContext.getUserManager();
+        this.packageManager = dataContext.getPackageManager();
+        this.hotelManager = dataContext.getHotelManager();
+        this.locationManager = dataContext.getLocationManager();
     }
 
     public void browseTourPackages() {
@@ -45,8 +60,9 @@ public class PackageUI {
         System.out.println("2. Price Range");
         System.out.println("3. Category");
         System.out.println("4. Duration");
+        System.out.println("5. Filters with live counts");
         
-        int searchType = InputHandler.getInt("Enter search type (1-4): ");
+        int searchType = InputHandler.getInt("Enter search type (1-5): ");
         
         switch (searchType) {
             case 1:
@@ -61,6 +77,9 @@ public class PackageUI {
             case 4:
                 searchByDuration();
                 break;
+            case 5:
+                searchByFilters();
+                break;
             default:
                 System.out.println("Invalid search type!");
         }
@@ -69,10 +88,10 @@ public class PackageUI {
     }
 
     private void searchByKeyword() {
-        String keyword = InputHandler.getString("Enter keyword: ");
+        String keyword = InputHandler.getString("Enter keywords: ");
         List<TourPackage> results = packageManager.searchPackages(keyword);
         
-        System.out.println("\nSearch Results for: " + keyword);
+        System.out.println("\nSearch Results for: " + keyword + " (best matches first)");
         System.out.println("=======================================================");
         
         if (results.isEmpty()) {
@@ -128,18 +147,96 @@ public class PackageUI {
         }
     }
 
+    // Narrows the active catalog one facet at a time, showing how many packages each choice leaves
+    private void searchByFilters() {
+        String[] facets = {PackageManager.FACET_CATEGORY, PackageManager.FACET_TOUR_TYPE,
+                           PackageManager.FACET_PRICE, PackageManager.FACET_DURATION, PackageManager.FACET_LOCATION};
+        String[] facetTitles = {"Category", "Tour Type", "Price", "Duration", "Location"};
+        Map<String, Object> selection = new LinkedHashMap<>();
+        selection.put(PackageManager.FACET_ACTIVE, true);
+
+        while (true) {
+            Map<String, Map<Object, Integer>> counts = packageManager.getPackageFacetCounts(selection);
+            // The active facet ignores its own selection, so its "true" count is the size of the current result
+            int matching = counts.get(PackageManager.FACET_ACTIVE).getOrDefault(true, 0);
+
+            System.out.println("\nMatching packages: " + matching);
+            for (int i = 0; i < facets.length; i++) {
+                Object selected = selection.get(facets[i]);
+                System.out.println((i + 1) + ". " + facetTitles[i]
+                    + (selected != null ? " [" + formatFacetValue(facets[i], selected) + "]" : ""));
+            }
+            System.out.println((facets.length + 1) + ". Clear filters");
+            System.out.println("0. Show results");
+
+            int choice = InputHandler.getInt("Enter choice: ");
+            if (choice == 0) {
+                break;
+            }
+            if (choice == facets.length + 1) {
+                selection.clear();
+                selection.put(PackageManager.FACET_ACTIVE, true);
+                continue;
+            }
+            if (choice < 1 || choice > facets.length) {
+                System.out.println("Invalid choice!");
+                continue;
+            }
+
+            String facet = facets[choice - 1];
+            List<Object> values = new ArrayList<>(counts.get(facet).keySet());
+            System.out.println("\n" + facetTitles[choice - 1] + ":");
+            System.out.println("0. Any");
+            for (int i = 0; i < values.size(); i++) {
+                System.out.println((i + 1) + ". " + formatFacetValue(facet, values.get(i))
+                    + " (" + counts.get(facet).get(values.get(i)) + ")");
+            }
+            int valueChoice = InputHandler.getInt("Enter choice: ");
+            if (valueChoice == 0) {
+                selection.remove(facet);
+            } else if (valueChoice >= 1 && valueChoice <= values.size()) {
+                selection.put(facet, values.get(valueChoice - 1));
+            } else {
+                System.out.println("Invalid choice!");
+            }
+        }
+
+        List<TourPackage> results = packageManager.getPackagesByFacets(selection);
+
+        System.out.println("\nFiltered Packages:");
+        System.out.println("=======================================================");
+
+        if (results.isEmpty()) {
+            System.out.println("No packages match the selected filters.");
+        } else {
+            displayPackageList(results);
+        }
+    }
+
+    private String formatFacetValue(String facet, Object value) {
+        if (value instanceof PackageCategory) {
+            return ((PackageCategory) value).getDisplayName();
+        }
+        if (value instanceof TourType) {
+            return ((TourType) value).getDisplayName();
+        }
+        if (PackageManager.FACET_PRICE.equals(facet)) {
+            return PackageManager.getPriceBucketLabel((Integer) value);
+        }
+        if (PackageManager.FACET_DURATION.equals(facet)) {
+            return value + " days";
+        }
+        return String.valueOf(value);
+    }
+
     private void searchByDuration() {
         int minDays = InputHandler.getInt("Enter minimum days: ");
         int maxDays = InputHandler.getInt("Enter maximum days: ");
         
-        List<TourPackage> allPackages = packageManager.listActivePackages();
-        List<TourPackage> results = new java.util.ArrayList<TourPackage>();
-        
-        for (TourPackage pkg : allPackages) {
-            if (pkg.getDuration() >= minDays && pkg.getDuration() <= maxDays) {
-                results.add(pkg);
-            }
-        }
+        List<TourPackage> results = packageManager.query()
+            .where(QueryCondition.range("duration", minDays, maxDays))
+            .where(QueryCondition.equalTo("active", true))
+            .list();
         
         System.out.println("\nPackages with duration " + minDays + "-" + maxDays + " days:");
         System.out.println("=======================================================");
@@ -179,7 +276,7 @@ public class PackageUI {
         try {
             String packageId = IDGenerator.generatePackageId();
             String name = InputHandler.getString("Package Name: ");
-            String location = InputHandler.getString("Location: ");
+            String location = promptLocation("Location: ");
             double price = InputHandler.getDouble("Base Price ($): ");
             int duration = InputHandler.getInt("Duration (days): ");
             String description = InputHandler.getString("Description: ");
@@ -396,10 +493,10 @@ public class PackageUI {
     }
 
     private void togglePackageStatus() {
-        String packageId = InputHandler.getString("Enter Package ID: ");
-        TourPackage tourPackage = packageManager.getPackageById(packageId);
+        TourPackage tourPackage = promptForPackage("Enter Package ID or name: ");
         
         if (tourPackage != null) {
+            String packageId = tourPackage.getPackageId();
             boolean newStatus = !tourPackage.isActive();
             tourPackage.setActive(newStatus);
             packageManager.updatePackage(tourPackage);
@@ -422,7 +519,7 @@ public class PackageUI {
         try {
             String packageId = IDGenerator.generatePackageId();
             String name = InputHandler.getString("Package Name: ");
-            String location = InputHandler.getString("Location: ");
+            String location = promptLocation("Location: ");
             double price = InputHandler.getDouble("Base Price ($): ");
             int duration = InputHandler.getInt("Duration (days): ");
             String description = InputHandler.getString("Description: ");
@@ -456,8 +553,34 @@ public class PackageUI {
     }
 
     private void editPackageAsAdmin() {
-        String packageId = InputHandler.getString("Enter Package ID to edit: ");
-        editPackage(packageId);
+        TourPackage tourPackage = promptForPackage("Enter Package ID or name to edit: ");
+        if (tourPackage == null) {
+            System.out.println("Package not found!");
+            return;
+        }
+        editPackage(tourPackage.getPackageId());
+    }
+
+    // Takes a package ID, or offers the most booked packages whose ID, name or location starts with the input
+    private TourPackage promptForPackage(String prompt) {
+        return InputHandler.getWithCompletion(prompt, packageManager::getPackageById,
+                input -> packageManager.completePackages(input, COMPLETION_LIMIT),
+                pkg -> pkg.getPackageId() + " - " + pkg.getName() + " (" + pkg.getLocation() + ")");
+    }
+
+    // Free text, but offers known locations starting with the input so packages share one spelling per place
+    private String promptLocation(String prompt) {
+        String location = InputHandler.getString(prompt);
+        List<String> known = location.isEmpty() ? new ArrayList<>() : packageManager.completeLocations(location, COMPLETION_LIMIT);
+        if (known.isEmpty() || known.contains(location)) {
+            return location;
+        }
+        System.out.println("Known locations:");
+        for (int i = 0; i < known.size(); i++) {
+            System.out.println("  " + (i + 1) + ". " + known.get(i));
+        }
+        int choice = InputHandler.getInt("Choose (1-" + known.size() + ", 0 to keep \"" + location + "\"): ");
+        return choice >= 1 && choice <= known.size() ? known.get(choice - 1) : location;
     }
 
     private void displayPackageList(List<TourPackage> packages) {
@@ -479,9 +602,9 @@ public class PackageUI {
         
         // Show package details option
         if (!packages.isEmpty()) {
-            String packageId = InputHandler.getString("\nEnter Package ID to view details (or press Enter to skip): ");
-            if (!packageId.trim().isEmpty()) {
-                viewPackageDetails(packageId);
+            TourPackage selected = promptForPackage("\nEnter Package ID or name to view details (or press Enter to skip): ");
+            if (selected != null) {
+                viewPackageDetails(selected.getPackageId());
             }
         }
     }
@@ -501,6 +624,26 @@ public class PackageUI {
         System.out.println("Capacity: " + tourPackage.getCurrentBookings() + "/" + tourPackage.getMaxCapacity());
         System.out.println("Available Slots: " + tourPackage.getAvailableSlots());
         System.out.println("Availability: " + (tourPackage.isAvailable() ? "Available" : "Fully Booked"));
+        displayNearbyHotels(tourPackage);
+    }
+
+    private void displayNearbyHotels(TourPackage tourPackage) {
+        double[] tourPoint = locationManager.getCoordinates(tourPackage.getLocation());
+        if (tourPoint == null) {
+            return;
+        }
+        List<Hotel> hotels = hotelManager.getHotelsWithinRadius(tourPoint[0], tourPoint[1], NEARBY_HOTEL_RADIUS_KM);
+        System.out.println("\nHotels within " + (int) NEARBY_HOTEL_RADIUS_KM + " km:");
+        if (hotels.isEmpty()) {
+            System.out.println("  None found");
+            return;
+        }
+        for (int i = 0; i < hotels.size() && i < NEARBY_HOTEL_LIMIT; i++) {
+            Hotel hotel = hotels.get(i);
+            double[] hotelPoint = locationManager.getCoordinates(hotel.getLocation());
+            double distance = SpatialIndex.distanceKm(tourPoint[0], tourPoint[1], hotelPoint[0], hotelPoint[1]);
+            System.out.printf("  %s (%s) - %.1f km, rating %.1f%n", hotel.getName(), hotel.getLocation(), distance, hotel.getRating());
+        }
     }
 
     private PackageCategory selectPackageCategory() {
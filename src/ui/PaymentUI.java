@@ -14,12 +14,14 @@ public class PaymentUI {
     private UserManager userManager;
     private PaymentManager paymentManager;
     private BookingManager bookingManager;
+    private PackageManager packageManager;
 
-    public PaymentUI(user currentUser, UserManager userManager) {
+    public PaymentUI(user currentUser, DataContext dataContext) {
         this.currentUser = currentUser;
-        this.userManager = userManager;
-        this.paymentManager = new PaymentManager();
-        this.bookingManager = new BookingManager();
+        this.userManager = dataContext.getUserManager();
+        this.paymentManager = dataContext.getPaymentManager();
+        this.bookingManager = dataContext.getBookingManager();
+        this.packageManager = dataContext.getPackageManager();
     }
 
     public void processPayment(Booking booking) {
@@ -424,7 +426,6 @@ public class PaymentUI {
         Invoice invoice = new Invoice(invoiceId, booking.getBookingId(), currentUser.getId());
         
         // Add package as invoice item
-        PackageManager packageManager = new PackageManager();
         TourPackage pkg = packageManager.getPackageById(booking.getPackageId());
         if (pkg != null) {
             invoice.addItem(pkg.getName() + " (" + pkg.getLocation() + ")", 
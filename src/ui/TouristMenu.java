@@ -17,14 +17,16 @@ public class TouristMenu {
     private PackageManager packageManager;
     private BookingManager bookingManager;
     private ReviewManager reviewManager;
+    private DataContext dataContext;
     private boolean isRunning;
 
-    public TouristMenu(user user, UserManager userManager) {
+    public TouristMenu(user user, DataContext dataContext) {
         this.tourist = (Tourist) user;
-        this.userManager = userManager;
-        this.packageManager = new PackageManager();
-        this.bookingManager = new BookingManager();
-        this.reviewManager = new ReviewManager();
+        this.dataContext = dataContext;
+        this.userManager = dataContext.getUserManager();
+        this.packageManager = dataContext.getPackageManager();
+        this.bookingManager = dataContext.getBookingManager();
+        this.reviewManager = dataContext.getReviewManager();
         this.isRunning = true;
     }
 
@@ -109,33 +111,33 @@ public class TouristMenu {
     }
 
     private void browseTourPackages() {
-        PackageUI packageUI = new PackageUI(tourist, userManager);
+        PackageUI packageUI = new PackageUI(tourist, dataContext);
         packageUI.browseTourPackages();
     }
 
     private void searchPackages() {
-        PackageUI packageUI = new PackageUI(tourist, userManager);
+        PackageUI packageUI = new PackageUI(tourist, dataContext);
         packageUI.searchPackages();
     }
 
     private void viewPackageDetails() {
         String packageId = InputHandler.getString("Enter Package ID: ");
-        PackageUI packageUI = new PackageUI(tourist, userManager);
+        PackageUI packageUI = new PackageUI(tourist, dataContext);
         packageUI.viewPackageDetails(packageId);
     }
 
     private void bookPackage() {
-        BookingUI bookingUI = new BookingUI(tourist, userManager);
+        BookingUI bookingUI = new BookingUI(tourist, dataContext);
         bookingUI.createNewBooking();
     }
 
     private void viewBookingHistory() {
-        BookingUI bookingUI = new BookingUI(tourist, userManager);
+        BookingUI bookingUI = new BookingUI(tourist, dataContext);
         bookingUI.viewUserBookings();
     }
 
     private void viewPayments() {
-        PaymentUI paymentUI = new PaymentUI(tourist, userManager);
+        PaymentUI paymentUI = new PaymentUI(tourist, dataContext);
         paymentUI.viewUserPayments();
     }
 
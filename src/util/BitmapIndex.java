@@ -0,0 +1,152 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// One CompressedBitmap per value of each low-cardinality attribute (statuses, flags, categories), over dense row
+// numbers handed out to ids as they are indexed; freed rows are reused so the bitmaps stay compact.
+// Combining attributes is then bitwise work: AND for conditions on different attributes, OR across the values of one
+// attribute, AND NOT against all rows for negations, and counting a combination never touches a record
+public class BitmapIndex<T> {
+    private final Map<String, Function<T, ?>> attributes;
+    private final Map<String, Map<Object, CompressedBitmap>> bitmaps;
+    private final Map<String, Integer> rows;
+    private final List<String> rowIds;
+    // Attribute values each row was last indexed under, in attribute registration order
+    private final List<Object[]> rowValues;
+    private final List<Integer> freeRows;
+    private CompressedBitmap live;
+
+    public BitmapIndex() {
+        this.attributes = new LinkedHashMap<>();
+        this.bitmaps = new HashMap<>();
+        this.rows = new HashMap<>();
+        this.rowIds = new ArrayList<>();
+        this.rowValues = new ArrayList<>();
+        this.freeRows = new ArrayList<>();
+        this.live = new CompressedBitmap();
+    }
+
+    // Attributes must be registered before anything is indexed
+    public synchronized BitmapIndex<T> addAttribute(String name, Function<T, ?> accessor) {
+        attributes.put(name, accessor);
+        bitmaps.put(name, new HashMap<>());
+        return this;
+    }
+
+    public synchronized boolean hasAttribute(String name) {
+        return attributes.containsKey(name);
+    }
+
+    public synchronized void put(String id, T entity) {
+        Integer row = rows.get(id);
+        if (row == null) {
+            row = freeRows.isEmpty() ? rowIds.size() : freeRows.remove(freeRows.size() - 1);
+            if (row == rowIds.size()) {
+                rowIds.add(id);
+                rowValues.add(null);
+            } else {
+                rowIds.set(row, id);
+            }
+            rows.put(id, row);
+            live.add(row);
+        }
+        Object[] previous = rowValues.get(row);
+        Object[] current = new Object[attributes.size()];
+        int a = 0;
+        for (Map.Entry<String, Function<T, ?>> attribute : attributes.entrySet()) {
+            current[a] = attribute.getValue().apply(entity);
+            if (previous == null || !equal(previous[a], current[a])) {
+                Map<Object, CompressedBitmap> byValue = bitmaps.get(attribute.getKey());
+                if (previous != null) {
+                    clearRow(byValue, previous[a], row);
+                }
+                byValue.computeIfAbsent(current[a], value -> new CompressedBitmap()).add(row);
+            }
+            a++;
+        }
+        rowValues.set(row, current);
+    }
+
+    public synchronized void remove(String id) {
+        Integer row = rows.remove(id);
+        if (row == null) {
+            return;
+        }
+        Object[] previous = rowValues.get(row);
+        int a = 0;
+        for (String attribute : attributes.keySet()) {
+            clearRow(bitmaps.get(attribute), previous[a++], row);
+        }
+        rowIds.set(row, null);
+        rowValues.set(row, null);
+        live.remove(row);
+        freeRows.add(row);
+    }
+
+    public synchronized void clear() {
+        for (Map<Object, CompressedBitmap> byValue : bitmaps.values()) {
+            byValue.clear();
+        }
+        rows.clear();
+        rowIds.clear();
+        rowValues.clear();
+        freeRows.clear();
+        live = new CompressedBitmap();
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    // Rows whose attribute equals any of the values; the result is a fresh bitmap the caller may combine freely
+    public synchronized CompressedBitmap matching(String attribute, Collection<?> values) {
+        Map<Object, CompressedBitmap> byValue = bitmaps.get(attribute);
+        CompressedBitmap result = new CompressedBitmap();
+        if (byValue == null) {
+            return result;
+        }
+        for (Object value : values) {
+            CompressedBitmap bitmap = byValue.get(value);
+            if (bitmap != null) {
+                result = result.or(bitmap);
+            }
+        }
+        return result;
+    }
+
+    // Every indexed row, for negations
+    public synchronized CompressedBitmap all() {
+        return live.copy();
+    }
+
+    // Ids of the given rows, in row order
+    public synchronized List<String> ids(CompressedBitmap selected) {
+        List<String> ids = new ArrayList<>(selected.cardinality());
+        selected.forEach(row -> {
+            if (row < rowIds.size() && rowIds.get(row) != null) {
+                ids.add(rowIds.get(row));
+            }
+        });
+        return ids;
+    }
+
+    private static void clearRow(Map<Object, CompressedBitmap> byValue, Object value, int row) {
+        CompressedBitmap bitmap = byValue.get(value);
+        if (bitmap != null) {
+            bitmap.remove(row);
+            if (bitmap.isEmpty()) {
+                byValue.remove(value);
+            }
+        }
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
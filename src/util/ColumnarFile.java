@@ -0,0 +1,344 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binary snapshot with one independently readable block per column:
+// header  = magic, version, row count, column count
+// catalog = per column: name, type, block offset, block length
+// blocks  = column data, big-endian
+public class ColumnarFile {
+    public static final int MAGIC = 0x54424353; // "TBCS"
+    public static final int FORMAT_VERSION = 1;
+
+    public static final byte TYPE_DICTIONARY = 1;  // int codes into a string dictionary, -1 = null
+    public static final byte TYPE_EPOCH_DAY = 2;   // int days since 1970-01-01, NULL_EPOCH_DAY = null
+    public static final byte TYPE_ENUM_ORDINAL = 3; // byte ordinals, -1 = null
+    public static final byte TYPE_MINOR_UNITS = 4; // long amounts in 1/100 of the currency unit
+    public static final byte TYPE_INT = 5;
+    public static final byte TYPE_BOOLEAN = 6;     // one byte per row
+
+    public static final int NULL_EPOCH_DAY = Integer.MIN_VALUE;
+    private static final int MINOR_UNITS_PER_UNIT = 100;
+
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * MINOR_UNITS_PER_UNIT);
+    }
+
+    public static double fromMinorUnits(long minorUnits) {
+        return (double) minorUnits / MINOR_UNITS_PER_UNIT;
+    }
+
+    public static class Writer {
+        private final int rowCount;
+        private final Map<String, byte[]> blocks = new LinkedHashMap<>();
+        private final Map<String, Byte> types = new HashMap<>();
+
+        public Writer(int rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        public Writer addDictionaryColumn(String name, String[] values) throws IOException {
+            checkRows(name, values.length);
+            Map<String, Integer> codes = new LinkedHashMap<>();
+            int[] encoded = new int[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                String value = values[row];
+                if (value == null) {
+                    encoded[row] = -1;
+                } else {
+                    Integer code = codes.get(value);
+                    if (code == null) {
+                        code = codes.size();
+                        codes.put(value, code);
+                    }
+                    encoded[row] = code;
+                }
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(codes.size());
+            for (String value : codes.keySet()) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+            for (int code : encoded) {
+                out.writeInt(code);
+            }
+            return addBlock(name, TYPE_DICTIONARY, bytes.toByteArray());
+        }
+
+        public Writer addEpochDayColumn(String name, int[] epochDays) throws IOException {
+            checkRows(name, epochDays.length);
+            return addBlock(name, TYPE_EPOCH_DAY, toBytes(epochDays));
+        }
+
+        public Writer addIntColumn(String name, int[] values) throws IOException {
+            checkRows(name, values.length);
+            return addBlock(name, TYPE_INT, toBytes(values));
+        }
+
+        public Writer addEnumColumn(String name, byte[] ordinals) throws IOException {
+            checkRows(name, ordinals.length);
+            return addBlock(name, TYPE_ENUM_ORDINAL, ordinals.clone());
+        }
+
+        public Writer addBooleanColumn(String name, boolean[] values) throws IOException {
+            checkRows(name, values.length);
+            byte[] bytes = new byte[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                bytes[row] = (byte) (values[row] ? 1 : 0);
+            }
+            return addBlock(name, TYPE_BOOLEAN, bytes);
+        }
+
+        public Writer addMinorUnitsColumn(String name, long[] minorUnits) throws IOException {
+            checkRows(name, minorUnits.length);
+            ByteBuffer buffer = ByteBuffer.allocate(rowCount * Long.BYTES);
+            for (long value : minorUnits) {
+                buffer.putLong(value);
+            }
+            return addBlock(name, TYPE_MINOR_UNITS, buffer.array());
+        }
+
+        public void writeTo(Path path) throws IOException {
+            ByteArrayOutputStream catalogBytes = new ByteArrayOutputStream();
+            DataOutputStream catalog = new DataOutputStream(catalogBytes);
+            List<byte[]> encodedNames = new ArrayList<>();
+            for (String name : blocks.keySet()) {
+                encodedNames.add(name.getBytes(StandardCharsets.UTF_8));
+            }
+
+            // Block offsets are absolute, so the catalog size has to be known before writing it
+            long offset = 4L * Integer.BYTES;
+            for (byte[] encodedName : encodedNames) {
+                offset += Integer.BYTES + encodedName.length + 1 + 2L * Long.BYTES;
+            }
+
+            int index = 0;
+            for (Map.Entry<String, byte[]> block : blocks.entrySet()) {
+                byte[] encodedName = encodedNames.get(index++);
+                catalog.writeInt(encodedName.length);
+                catalog.write(encodedName);
+                catalog.writeByte(types.get(block.getKey()));
+                catalog.writeLong(offset);
+                catalog.writeLong(block.getValue().length);
+                offset += block.getValue().length;
+            }
+
+            try (OutputStream file = Files.newOutputStream(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(rowCount);
+                out.writeInt(blocks.size());
+                out.write(catalogBytes.toByteArray());
+                for (byte[] block : blocks.values()) {
+                    out.write(block);
+                }
+            }
+        }
+
+        private Writer addBlock(String name, byte type, byte[] block) {
+            if (blocks.containsKey(name)) {
+                throw new IllegalArgumentException("Duplicate column: " + name);
+            }
+            blocks.put(name, block);
+            types.put(name, type);
+            return this;
+        }
+
+        private void checkRows(String name, int length) {
+            if (length != rowCount) {
+                throw new IllegalArgumentException("Column " + name + " has " + length + " rows, expected " + rowCount);
+            }
+        }
+
+        private static byte[] toBytes(int[] values) {
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES);
+            for (int value : values) {
+                buffer.putInt(value);
+            }
+            return buffer.array();
+        }
+    }
+
+    // Reads the catalog on open; each column read touches only that column's block
+    public static class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final int rowCount;
+        private final Map<String, ColumnInfo> columns = new LinkedHashMap<>();
+
+        private static class ColumnInfo {
+            final byte type;
+            final long offset;
+            final long length;
+
+            ColumnInfo(byte type, long offset, long length) {
+                this.type = type;
+                this.offset = offset;
+                this.length = length;
+            }
+        }
+
+        public Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = read(0, 4L * Integer.BYTES);
+                if (header.getInt() != MAGIC) {
+                    throw new IOException("Not a columnar snapshot: " + path);
+                }
+                int version = header.getInt();
+                if (version != FORMAT_VERSION) {
+                    throw new IOException("Unsupported columnar snapshot version " + version + " in " + path);
+                }
+                this.rowCount = header.getInt();
+                int columnCount = header.getInt();
+
+                long position = 4L * Integer.BYTES;
+                for (int i = 0; i < columnCount; i++) {
+                    int nameLength = read(position, Integer.BYTES).getInt();
+                    position += Integer.BYTES;
+                    ByteBuffer entry = read(position, nameLength + 1 + 2L * Long.BYTES);
+                    byte[] name = new byte[nameLength];
+                    entry.get(name);
+                    columns.put(new String(name, StandardCharsets.UTF_8),
+                            new ColumnInfo(entry.get(), entry.getLong(), entry.getLong()));
+                    position += nameLength + 1 + 2L * Long.BYTES;
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public boolean hasColumn(String name) {
+            return columns.containsKey(name);
+        }
+
+        public List<String> getColumnNames() {
+            return new ArrayList<>(columns.keySet());
+        }
+
+        public String[] readDictionaryColumn(String name) throws IOException {
+            ByteBuffer block = readBlock(name, TYPE_DICTIONARY);
+            String[] dictionary = new String[block.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] utf8 = new byte[block.getInt()];
+                block.get(utf8);
+                dictionary[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+            String[] values = new String[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                int code = block.getInt();
+                values[row] = code < 0 ? null : dictionary[code];
+            }
+            return values;
+        }
+
+        // Codes only, for grouping without decoding; the dictionary is returned through the second argument
+        public int[] readDictionaryCodes(String name, List<String> dictionaryOut) throws IOException {
+            ByteBuffer block = readBlock(name, TYPE_DICTIONARY);
+            int dictionarySize = block.getInt();
+            for (int i = 0; i < dictionarySize; i++) {
+                byte[] utf8 = new byte[block.getInt()];
+                block.get(utf8);
+                if (dictionaryOut != null) {
+                    dictionaryOut.add(new String(utf8, StandardCharsets.UTF_8));
+                }
+            }
+            int[] codes = new int[rowCount];
+            block.asIntBuffer().get(codes);
+            return codes;
+        }
+
+        public int[] readEpochDayColumn(String name) throws IOException {
+            return readInts(name, TYPE_EPOCH_DAY);
+        }
+
+        public int[] readIntColumn(String name) throws IOException {
+            return readInts(name, TYPE_INT);
+        }
+
+        public byte[] readEnumColumn(String name) throws IOException {
+            ByteBuffer block = readBlock(name, TYPE_ENUM_ORDINAL);
+            byte[] ordinals = new byte[rowCount];
+            block.get(ordinals);
+            return ordinals;
+        }
+
+        public boolean[] readBooleanColumn(String name) throws IOException {
+            ByteBuffer block = readBlock(name, TYPE_BOOLEAN);
+            boolean[] values = new boolean[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                values[row] = block.get() != 0;
+            }
+            return values;
+        }
+
+        public long[] readMinorUnitsColumn(String name) throws IOException {
+            ByteBuffer block = readBlock(name, TYPE_MINOR_UNITS);
+            long[] values = new long[rowCount];
+            block.asLongBuffer().get(values);
+            return values;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private int[] readInts(String name, byte type) throws IOException {
+            ByteBuffer block = readBlock(name, type);
+            int[] values = new int[rowCount];
+            block.asIntBuffer().get(values);
+            return values;
+        }
+
+        private ByteBuffer readBlock(String name, byte expectedType) throws IOException {
+            ColumnInfo info = columns.get(name);
+            if (info == null) {
+                throw new IOException("Column not found: " + name);
+            }
+            if (info.type != expectedType) {
+                throw new IOException("Column " + name + " has type " + info.type + ", expected " + expectedType);
+            }
+            return read(info.offset, info.length);
+        }
+
+        private ByteBuffer read(long position, long length) throws IOException {
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Column block too large: " + length + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of columnar snapshot");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
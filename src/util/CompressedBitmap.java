@@ -0,0 +1,450 @@
+package util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Compressed set of non-negative ints in the Roaring layout: values are grouped by their high 16 bits into
+// containers of up to 65536 values, each held as a sorted char array while sparse (up to 4096 values) and as
+// a 1024-word bitset once dense. AND, OR and AND NOT combine matching containers word by word or by merging,
+// so a combination costs about one pass over the smaller operand rather than one lookup per value
+public class CompressedBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITSET_WORDS = 1024;
+
+    // keys[i] holds the high 16 bits shared by containers[i]; both are sorted by key and have size live entries
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public CompressedBitmap() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        int index = indexOf(key);
+        if (index >= 0) {
+            containers[index] = containers[index].add((char) value);
+        } else {
+            insertAt(-index - 1, key, new ArrayContainer().add((char) value));
+        }
+    }
+
+    public void remove(int value) {
+        int index = indexOf((char) (value >>> 16));
+        if (index < 0) {
+            return;
+        }
+        containers[index] = containers[index].remove((char) value);
+        if (containers[index].cardinality() == 0) {
+            removeAt(index);
+        }
+    }
+
+    public boolean contains(int value) {
+        int index = indexOf((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public CompressedBitmap copy() {
+        CompressedBitmap copy = new CompressedBitmap();
+        for (int i = 0; i < size; i++) {
+            copy.append(keys[i], containers[i].copy());
+        }
+        return copy;
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.append(keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = j < other.size && other.keys[j] == keys[i]
+                    ? containers[i].andNot(other.containers[j]) : containers[i].copy();
+            if (container.cardinality() > 0) {
+                result.append(keys[i], container);
+            }
+        }
+        return result;
+    }
+
+    // Visits the values in ascending order
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] position = new int[1];
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void append(char key, Container container) {
+        insertAt(size, key, container);
+    }
+
+    private void insertAt(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    // Mutators return the container to keep, which differs from this one when the representation switches
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container copy();
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                return toBitset().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(1, cardinality)), cardinality);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int count = 0;
+            if (other instanceof BitsetContainer) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+                return new ArrayContainer(result, count);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < array.cardinality) {
+                if (values[i] < array.values[j]) {
+                    i++;
+                } else if (values[i] > array.values[j]) {
+                    j++;
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitsetContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            if (cardinality + array.cardinality > ARRAY_LIMIT) {
+                return toBitset().or(other);
+            }
+            char[] result = new char[Math.max(1, cardinality + array.cardinality)];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[Math.max(1, cardinality)];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        BitsetContainer toBitset() {
+            BitsetContainer bitset = new BitsetContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitset.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitset.cardinality = cardinality;
+            return bitset;
+        }
+    }
+
+    private static final class BitsetContainer extends Container {
+        final long[] words;
+        int cardinality;
+
+        BitsetContainer() {
+            this.words = new long[BITSET_WORDS];
+        }
+
+        BitsetContainer(long[] words) {
+            this.words = words;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArrayContainer() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new BitsetContainer(words.clone());
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int w = 0; w < BITSET_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] result = new long[BITSET_WORDS];
+            long[] otherWords = ((BitsetContainer) other).words;
+            for (int w = 0; w < BITSET_WORDS; w++) {
+                result[w] = words[w] & otherWords[w];
+            }
+            return shrink(new BitsetContainer(result));
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    result[array.values[i] >>> 6] |= 1L << array.values[i];
+                }
+            } else {
+                long[] otherWords = ((BitsetContainer) other).words;
+                for (int w = 0; w < BITSET_WORDS; w++) {
+                    result[w] |= otherWords[w];
+                }
+            }
+            return new BitsetContainer(result);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    result[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+                }
+            } else {
+                long[] otherWords = ((BitsetContainer) other).words;
+                for (int w = 0; w < BITSET_WORDS; w++) {
+                    result[w] &= ~otherWords[w];
+                }
+            }
+            return shrink(new BitsetContainer(result));
+        }
+
+        private static Container shrink(BitsetContainer bitset) {
+            return bitset.cardinality <= ARRAY_LIMIT ? bitset.toArrayContainer() : bitset;
+        }
+
+        ArrayContainer toArrayContainer() {
+            char[] values = new char[Math.max(1, cardinality)];
+            int[] count = new int[1];
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
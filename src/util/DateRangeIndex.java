@@ -0,0 +1,227 @@
+package util;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Sorted index from epoch day to record ids, with a Fenwick tree of per-day amounts
+// so that range listings cost O(log N + result) and range totals cost O(log D).
+// The tree is only allocated once a non-zero amount is put, so an index used for id lookups alone carries none.
+// It is dense, so it only spans days within MIN_YEAR..MAX_YEAR; amounts dated outside them, such as a stray
+// "0202-05-01" or "9999-01-01", are summed per day in a sparse map instead
+public class DateRangeIndex {
+    public static final int NULL_EPOCH_DAY = Integer.MIN_VALUE;
+    private static final int MIN_CAPACITY = 512;
+    private static final int MIN_YEAR = 1900;
+    private static final int MAX_YEAR = 2199;
+    private static final int MIN_DAY = (int) LocalDate.of(MIN_YEAR, 1, 1).toEpochDay();
+    private static final int MAX_DAY = (int) LocalDate.of(MAX_YEAR, 12, 31).toEpochDay();
+
+    private final NavigableMap<Integer, Set<String>> idsByDay;
+    private final Map<String, Entry> entries;
+    // Fenwick tree over [baseDay, baseDay + capacity), amounts in minor units so totals are exact
+    private long[] tree;
+    private int baseDay;
+    // Amount per epoch day outside MIN_YEAR..MAX_YEAR, in minor units
+    private final NavigableMap<Integer, Long> outlierAmounts;
+
+    private static class Entry {
+        final int epochDay;
+        final long amount;
+
+        Entry(int epochDay, long amount) {
+            this.epochDay = epochDay;
+            this.amount = amount;
+        }
+    }
+
+    public DateRangeIndex() {
+        this.idsByDay = new TreeMap<>();
+        this.entries = new HashMap<>();
+        this.tree = null;
+        this.outlierAmounts = new TreeMap<>();
+    }
+
+    // Dates may carry a time part ("yyyy-MM-dd HH:mm:ss"); only the day is indexed
+    public synchronized void put(String id, String date, double amount) {
+        remove(id);
+        int epochDay = toEpochDay(date);
+        if (epochDay == NULL_EPOCH_DAY) {
+            return;
+        }
+        long minorUnits = ColumnarFile.toMinorUnits(amount);
+        entries.put(id, new Entry(epochDay, minorUnits));
+        idsByDay.computeIfAbsent(epochDay, day -> new LinkedHashSet<>()).add(id);
+        addToTree(epochDay, minorUnits);
+    }
+
+    public synchronized void remove(String id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        Set<String> ids = idsByDay.get(entry.epochDay);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                idsByDay.remove(entry.epochDay);
+            }
+        }
+        addToTree(entry.epochDay, -entry.amount);
+    }
+
+    public synchronized void clear() {
+        idsByDay.clear();
+        entries.clear();
+        tree = null;
+        outlierAmounts.clear();
+    }
+
+    // Both bounds inclusive, ids in day order
+    public synchronized List<String> getIds(int fromDay, int toDay) {
+        List<String> ids = new ArrayList<>();
+        if (fromDay > toDay) {
+            return ids;
+        }
+        for (Set<String> dayIds : idsByDay.subMap(fromDay, true, toDay, true).values()) {
+            ids.addAll(dayIds);
+        }
+        return ids;
+    }
+
+    public synchronized int count(int fromDay, int toDay) {
+        if (fromDay > toDay) {
+            return 0;
+        }
+        int count = 0;
+        for (Set<String> dayIds : idsByDay.subMap(fromDay, true, toDay, true).values()) {
+            count += dayIds.size();
+        }
+        return count;
+    }
+
+    public synchronized double sum(int fromDay, int toDay) {
+        if (fromDay > toDay) {
+            return 0.0;
+        }
+        long total = 0;
+        for (long amount : outlierAmounts.subMap(fromDay, true, toDay, true).values()) {
+            total += amount;
+        }
+        if (tree != null) {
+            total += prefixSum(toDay) - prefixSum(fromDay - 1);
+        }
+        return ColumnarFile.fromMinorUnits(total);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public static int toEpochDay(String date) {
+        if (date == null || date.length() < 10) {
+            return NULL_EPOCH_DAY;
+        }
+        try {
+            return (int) LocalDate.parse(date.substring(0, 10)).toEpochDay();
+        } catch (Exception e) {
+            return NULL_EPOCH_DAY;
+        }
+    }
+
+    // Day range matched by a "yyyy", "yyyy-MM" or "yyyy-MM-dd" prefix; null for anything else
+    public static int[] toDayRange(String datePrefix) {
+        try {
+            if (datePrefix == null) {
+                return null;
+            }
+            switch (datePrefix.length()) {
+                case 4: {
+                    int year = Integer.parseInt(datePrefix);
+                    return new int[] {(int) LocalDate.of(year, 1, 1).toEpochDay(),
+                                      (int) LocalDate.of(year, 12, 31).toEpochDay()};
+                }
+                case 7: {
+                    YearMonth month = YearMonth.parse(datePrefix);
+                    return new int[] {(int) month.atDay(1).toEpochDay(), (int) month.atEndOfMonth().toEpochDay()};
+                }
+                case 10: {
+                    int day = (int) LocalDate.parse(datePrefix).toEpochDay();
+                    return new int[] {day, day};
+                }
+                default:
+                    return null;
+            }
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void addToTree(int epochDay, long amount) {
+        if (amount == 0) {
+            return;
+        }
+        if (epochDay < MIN_DAY || epochDay > MAX_DAY) {
+            outlierAmounts.merge(epochDay, amount, (total, added) -> total + added == 0 ? null : total + added);
+            return;
+        }
+        if (tree == null || epochDay < baseDay || epochDay >= baseDay + tree.length - 1) {
+            rebuildTree(epochDay);
+        } else {
+            for (int i = epochDay - baseDay + 1; i < tree.length; i += i & -i) {
+                tree[i] += amount;
+            }
+        }
+    }
+
+    private long prefixSum(int epochDay) {
+        if (tree == null || epochDay < baseDay) {
+            return 0;
+        }
+        int i = Math.min(epochDay - baseDay + 1, tree.length - 1);
+        long total = 0;
+        for (; i > 0; i -= i & -i) {
+            total += tree[i];
+        }
+        return total;
+    }
+
+    // Grows the window to cover every indexed day within MIN_YEAR..MAX_YEAR plus the new one, with headroom on
+    // both sides so that dates arriving in order only trigger a rebuild when the window doubles
+    private void rebuildTree(int includeDay) {
+        int low = includeDay;
+        int high = includeDay;
+        Integer first = idsByDay.ceilingKey(MIN_DAY);
+        Integer last = idsByDay.floorKey(MAX_DAY);
+        if (first != null && first <= MAX_DAY) {
+            low = Math.min(low, first);
+        }
+        if (last != null && last >= MIN_DAY) {
+            high = Math.max(high, last);
+        }
+        int span = high - low + 1;
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(span) << 2);
+        baseDay = low - (capacity - span) / 2;
+        tree = new long[capacity + 1];
+
+        for (Entry entry : entries.values()) {
+            if (entry.epochDay >= MIN_DAY && entry.epochDay <= MAX_DAY) {
+                tree[entry.epochDay - baseDay + 1] += entry.amount;
+            }
+        }
+        // Linear-time Fenwick construction: push each node's total to its parent
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+// Per-value record counts for a fixed set of facets, kept current as records change.
+// Drill-down counts follow the usual catalog rule: a facet's counts apply every selection except its own,
+// so the alternatives to the selected value stay visible with the number of results they would give
+public class FacetIndex<T> {
+    private final List<String> facetNames;
+    private final List<Function<T, ?>> accessors;
+    // postings.get(f) maps a value of facet f to the ids carrying it
+    private final List<Map<Object, Set<String>>> postings;
+    // Facet values each record was last indexed under, in facet order
+    private final Map<String, Object[]> indexedValues;
+
+    public FacetIndex() {
+        this.facetNames = new ArrayList<>();
+        this.accessors = new ArrayList<>();
+        this.postings = new ArrayList<>();
+        this.indexedValues = new HashMap<>();
+    }
+
+    // Facet values must be Comparable so counts come back in a stable order; null values are not counted
+    public FacetIndex<T> addFacet(String name, Function<T, ?> accessor) {
+        facetNames.add(name);
+        accessors.add(accessor);
+        postings.add(new HashMap<>());
+        return this;
+    }
+
+    public synchronized void put(String id, T entity) {
+        Object[] previous = indexedValues.get(id);
+        Object[] current = new Object[facetNames.size()];
+        for (int f = 0; f < current.length; f++) {
+            current[f] = accessors.get(f).apply(entity);
+            Object old = previous == null ? null : previous[f];
+            if (previous != null && (old == null ? current[f] == null : old.equals(current[f]))) {
+                continue;
+            }
+            if (previous != null) {
+                removePosting(f, old, id);
+            }
+            if (current[f] != null) {
+                postings.get(f).computeIfAbsent(current[f], value -> new LinkedHashSet<>()).add(id);
+            }
+        }
+        indexedValues.put(id, current);
+    }
+
+    public synchronized void remove(String id) {
+        Object[] previous = indexedValues.remove(id);
+        if (previous != null) {
+            for (int f = 0; f < previous.length; f++) {
+                removePosting(f, previous[f], id);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        indexedValues.clear();
+        for (Map<Object, Set<String>> facet : postings) {
+            facet.clear();
+        }
+    }
+
+    public synchronized int size() {
+        return indexedValues.size();
+    }
+
+    // Counts over every indexed record
+    public synchronized Map<Object, Integer> getCounts(String facet) {
+        return countAll(facetIndex(facet));
+    }
+
+    // Counts for every facet within a selection of facet name -> value
+    public synchronized Map<String, Map<Object, Integer>> getCounts(Map<String, ?> selection) {
+        int[] selectedFacets = selectedFacets(selection);
+        Map<String, Map<Object, Integer>> counts = new LinkedHashMap<>();
+        for (int f = 0; f < facetNames.size(); f++) {
+            int[] others = without(selectedFacets, f);
+            counts.put(facetNames.get(f), others.length == 0 ? countAll(f) : countWithin(f, others, selection));
+        }
+        return counts;
+    }
+
+    // Ids carrying every selected value; all ids when nothing is selected
+    public synchronized Set<String> getIds(Map<String, ?> selection) {
+        int[] selectedFacets = selectedFacets(selection);
+        if (selectedFacets.length == 0) {
+            return new LinkedHashSet<>(indexedValues.keySet());
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        for (String id : smallestPosting(selectedFacets, selection)) {
+            if (matches(indexedValues.get(id), selectedFacets, selection)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private Map<Object, Integer> countAll(int f) {
+        Map<Object, Integer> counts = new TreeMap<>();
+        for (Map.Entry<Object, Set<String>> entry : postings.get(f).entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().size());
+        }
+        return counts;
+    }
+
+    // Walks the rarest selected posting once and checks the remaining selections against the stored values
+    private Map<Object, Integer> countWithin(int f, int[] filterFacets, Map<String, ?> selection) {
+        Map<Object, Integer> counts = new TreeMap<>();
+        for (String id : smallestPosting(filterFacets, selection)) {
+            Object[] values = indexedValues.get(id);
+            if (values[f] != null && matches(values, filterFacets, selection)) {
+                counts.merge(values[f], 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private Set<String> smallestPosting(int[] filterFacets, Map<String, ?> selection) {
+        Set<String> smallest = null;
+        for (int f : filterFacets) {
+            Set<String> ids = postings.get(f).getOrDefault(selection.get(facetNames.get(f)), Collections.emptySet());
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        return smallest;
+    }
+
+    private boolean matches(Object[] values, int[] filterFacets, Map<String, ?> selection) {
+        for (int f : filterFacets) {
+            if (!selection.get(facetNames.get(f)).equals(values[f])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int[] selectedFacets(Map<String, ?> selection) {
+        List<Integer> selected = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : selection.entrySet()) {
+            if (entry.getValue() != null) {
+                selected.add(facetIndex(entry.getKey()));
+            }
+        }
+        int[] facets = new int[selected.size()];
+        for (int i = 0; i < facets.length; i++) {
+            facets[i] = selected.get(i);
+        }
+        return facets;
+    }
+
+    private static int[] without(int[] facets, int excluded) {
+        int[] others = new int[facets.length];
+        int count = 0;
+        for (int f : facets) {
+            if (f != excluded) {
+                others[count++] = f;
+            }
+        }
+        return count == facets.length ? others : Arrays.copyOf(others, count);
+    }
+
+    private int facetIndex(String facet) {
+        int f = facetNames.indexOf(facet);
+        if (f < 0) {
+            throw new IllegalArgumentException("Unknown facet: " + facet);
+        }
+        return f;
+    }
+
+    private void removePosting(int f, Object value, String id) {
+        if (value == null) {
+            return;
+        }
+        Set<String> ids = postings.get(f).get(value);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.get(f).remove(value);
+            }
+        }
+    }
+}
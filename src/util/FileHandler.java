@@ -1,11 +1,20 @@
 package util;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 public class FileHandler {
     private static final String DATA_DIR = "data";
+    private static final int DEFAULT_WRITE_BUFFER_SIZE = 64 * 1024;
 
     static {
         createDataDirectory();
@@ -26,6 +35,56 @@ public class FileHandler {
         }
     }
 
+    // Replaces the file contents with all records through a single buffered stream
+    public static boolean writeAllToFile(String filename, Iterable<String> records) {
+        return writeAllToFile(filename, records, Function.identity(), DEFAULT_WRITE_BUFFER_SIZE);
+    }
+
+    public static boolean writeAllToFile(String filename, Iterable<String> records, int bufferSize) {
+        return writeAllToFile(filename, records, Function.identity(), bufferSize);
+    }
+
+    public static <T> boolean writeAllToFile(String filename, Iterable<T> items, Function<T, String> formatter) {
+        return writeAllToFile(filename, items, formatter, DEFAULT_WRITE_BUFFER_SIZE);
+    }
+
+    public static <T> boolean writeAllToFile(String filename, Iterable<T> items, Function<T, String> formatter,
+                                             int bufferSize) {
+        Path path = Paths.get(DATA_DIR, filename);
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE), StandardCharsets.UTF_8), Math.max(bufferSize, 1))) {
+            for (T item : items) {
+                String record = formatter.apply(item);
+                if (record != null) {
+                    writer.write(record);
+                    writer.newLine();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            Logger.error("Failed to write to file " + filename + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Appends all records in one open/write/close, e.g. a batch of journal entries
+    public static boolean appendAllToFile(String filename, Iterable<String> records) {
+        Path path = Paths.get(DATA_DIR, filename);
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                        StandardOpenOption.WRITE), StandardCharsets.UTF_8), DEFAULT_WRITE_BUFFER_SIZE)) {
+            for (String record : records) {
+                writer.write(record);
+                writer.newLine();
+            }
+            return true;
+        } catch (IOException e) {
+            Logger.error("Failed to append to file " + filename + ": " + e.getMessage());
+            return false;
+        }
+    }
+
     public static List<String> readFromFile(String filename) {
         List<String> lines = new ArrayList<>();
         try (BufferedReader reader = new BufferedReader(new FileReader(DATA_DIR + "/" + filename))) {
@@ -41,6 +100,16 @@ public class FileHandler {
         return lines;
     }
 
+    // Memory-maps the file and hands each pipe-delimited line to the visitor without copying it into Strings
+    public static long scanRecords(String filename, MappedRecordReader.RecordVisitor visitor) {
+        try {
+            return MappedRecordReader.scan(Paths.get(DATA_DIR, filename), visitor);
+        } catch (IOException e) {
+            Logger.error("Failed to scan records from file " + filename + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
     public static void clearFile(String filename) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(DATA_DIR + "/" + filename))) {
             writer.print("");
@@ -49,6 +118,27 @@ public class FileHandler {
         }
     }
 
+    // Replaces target with source in one step so readers never observe a half-written file
+    public static boolean replaceFile(String sourceFilename, String targetFilename) {
+        Path source = Paths.get(DATA_DIR, sourceFilename);
+        Path target = Paths.get(DATA_DIR, targetFilename);
+        try {
+            try {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            Logger.error("Failed to replace file " + targetFilename + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public static Path getDataPath(String filename) {
+        return Paths.get(DATA_DIR, filename);
+    }
+
     public static boolean fileExists(String filename) {
         return new File(DATA_DIR + "/" + filename).exists();
     }
@@ -0,0 +1,249 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Typo-tolerant lookup of short texts such as place and package names. Distinct words live in a trie, and a
+// lookup walks it computing one Levenshtein row per character, which simulates a Levenshtein automaton: a branch
+// is abandoned as soon as every entry of its row exceeds the allowed distance, so shared prefixes are compared
+// once and most of the trie is never visited. Each text is also indexed in compact form without spaces,
+// which catches "coxsbazar" for "Cox's Bazar"
+public class FuzzyIndex {
+    private final Node root;
+    private final Map<String, Set<String>> postings;
+    // Terms each id was last indexed under
+    private final Map<String, Set<String>> indexedTerms;
+    private int longestTerm;
+
+    private static class Node {
+        // Set when a live term ends here
+        String term;
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+
+        Node child(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(char key) {
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = key;
+            children[children.length - 1] = new Node();
+            return children[children.length - 1];
+        }
+
+        void removeChild(Node child) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == child) {
+                    int last = children.length - 1;
+                    keys[i] = keys[last];
+                    children[i] = children[last];
+                    keys = Arrays.copyOf(keys, last);
+                    children = Arrays.copyOf(children, last);
+                    return;
+                }
+            }
+        }
+    }
+
+    public FuzzyIndex() {
+        this.root = new Node();
+        this.postings = new HashMap<>();
+        this.indexedTerms = new HashMap<>();
+    }
+
+    public synchronized void put(String id, String... values) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String value : values) {
+            List<String> words = words(value);
+            terms.addAll(words);
+            if (words.size() > 1) {
+                terms.add(String.join("", words));
+            }
+        }
+        Set<String> previous = indexedTerms.get(id);
+        if (terms.equals(previous)) {
+            return;
+        }
+        remove(id);
+        for (String term : terms) {
+            Set<String> ids = postings.get(term);
+            if (ids == null) {
+                ids = new LinkedHashSet<>();
+                postings.put(term, ids);
+                insert(term);
+            }
+            ids.add(id);
+        }
+        indexedTerms.put(id, terms);
+    }
+
+    public synchronized void remove(String id) {
+        Set<String> terms = indexedTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Set<String> ids = postings.get(term);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(term);
+                delete(term);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        root.term = null;
+        root.keys = new char[0];
+        root.children = new Node[0];
+        postings.clear();
+        indexedTerms.clear();
+        longestTerm = 0;
+    }
+
+    public synchronized int size() {
+        return indexedTerms.size();
+    }
+
+    // Ids whose text is within the allowed edit distance of the query, closest first; equal distances are ordered
+    // by id. Every query word must match a word of the text, or the whole query must match the text's compact form.
+    // Words of up to 2 letters must match exactly, up to 5 letters within 1 edit, longer words within 2
+    public synchronized List<String> search(String query) {
+        List<String> words = words(query);
+        if (words.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Integer> best = null;
+        for (String word : words) {
+            Map<String, Integer> matches = lookup(word, maxDistance(word));
+            if (best == null) {
+                best = matches;
+            } else {
+                Map<String, Integer> combined = new HashMap<>();
+                for (Map.Entry<String, Integer> entry : matches.entrySet()) {
+                    Integer distance = best.get(entry.getKey());
+                    if (distance != null) {
+                        combined.put(entry.getKey(), distance + entry.getValue());
+                    }
+                }
+                best = combined;
+            }
+        }
+        if (words.size() > 1) {
+            String compact = String.join("", words);
+            for (Map.Entry<String, Integer> entry : lookup(compact, maxDistance(compact)).entrySet()) {
+                best.merge(entry.getKey(), entry.getValue(), Math::min);
+            }
+        }
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(best.entrySet());
+        ranked.sort(Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        List<String> ids = new ArrayList<>(ranked.size());
+        for (Map.Entry<String, Integer> entry : ranked) {
+            ids.add(entry.getKey());
+        }
+        return ids;
+    }
+
+    static int maxDistance(String term) {
+        return term.length() <= 2 ? 0 : term.length() <= 5 ? 1 : 2;
+    }
+
+    // Id -> smallest distance of any of its terms within maxDistance of the given term
+    private Map<String, Integer> lookup(String term, int maxDistance) {
+        Map<String, Integer> matches = new HashMap<>();
+        // rows[d] is the Levenshtein row after d trie characters; row 0 compares against the empty prefix
+        int[][] rows = new int[Math.min(longestTerm, term.length() + maxDistance) + 1][term.length() + 1];
+        for (int i = 0; i <= term.length(); i++) {
+            rows[0][i] = i;
+        }
+        walk(root, 0, term, maxDistance, rows, matches);
+        return matches;
+    }
+
+    private void walk(Node node, int depth, String term, int maxDistance, int[][] rows, Map<String, Integer> matches) {
+        int[] row = rows[depth];
+        if (node.term != null && row[term.length()] <= maxDistance) {
+            for (String id : postings.get(node.term)) {
+                matches.merge(id, row[term.length()], Math::min);
+            }
+        }
+        if (depth + 1 >= rows.length) {
+            return;
+        }
+        int[] next = rows[depth + 1];
+        for (int c = 0; c < node.keys.length; c++) {
+            char key = node.keys[c];
+            next[0] = depth + 1;
+            int smallest = next[0];
+            for (int i = 1; i <= term.length(); i++) {
+                int substitution = row[i - 1] + (term.charAt(i - 1) == key ? 0 : 1);
+                next[i] = Math.min(substitution, Math.min(next[i - 1], row[i]) + 1);
+                smallest = Math.min(smallest, next[i]);
+            }
+            if (smallest <= maxDistance) {
+                walk(node.children[c], depth + 1, term, maxDistance, rows, matches);
+            }
+        }
+    }
+
+    private void insert(String term) {
+        Node node = root;
+        for (int i = 0; i < term.length(); i++) {
+            Node child = node.child(term.charAt(i));
+            node = child != null ? child : node.addChild(term.charAt(i));
+        }
+        node.term = term;
+        longestTerm = Math.max(longestTerm, term.length());
+    }
+
+    // Unmarks the term and prunes the branch nodes no other term needs
+    private void delete(String term) {
+        Node[] path = new Node[term.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < term.length(); i++) {
+            path[i + 1] = path[i].child(term.charAt(i));
+            if (path[i + 1] == null) {
+                return;
+            }
+        }
+        path[term.length()].term = null;
+        for (int i = term.length(); i > 0 && path[i].term == null && path[i].children.length == 0; i--) {
+            path[i - 1].removeChild(path[i]);
+        }
+    }
+
+    // Lowercase letter/digit runs; apostrophes are dropped so "Cox's" reads as "coxs"
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        StringBuilder word = new StringBuilder();
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (c != '\'' && c != '’' && word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+}
@@ -1,6 +1,8 @@
 package util;
 
+import java.util.List;
 import java.util.Scanner;
+import java.util.function.Function;
 
 public class InputHandler {
     private static Scanner scanner = new Scanner(System.in);
@@ -44,6 +46,31 @@ public class InputHandler {
         }
     }
 
+    // Reads an entry; when it is not an exact match, offers numbered completions of what was typed.
+    // Returns null when the entry is blank, nothing completes it, or no completion is picked
+    public static <T> T getWithCompletion(String prompt, Function<String, T> exactMatch,
+                                          Function<String, List<T>> completer, Function<T, String> label) {
+        String input = getString(prompt);
+        if (input.isEmpty()) {
+            return null;
+        }
+        T match = exactMatch.apply(input);
+        if (match != null) {
+            return match;
+        }
+        List<T> completions = completer.apply(input);
+        if (completions.isEmpty()) {
+            System.out.println("No matches for \"" + input + "\".");
+            return null;
+        }
+        System.out.println("Did you mean:");
+        for (int i = 0; i < completions.size(); i++) {
+            System.out.println("  " + (i + 1) + ". " + label.apply(completions.get(i)));
+        }
+        int choice = getInt("Choose (1-" + completions.size() + ", 0 to cancel): ");
+        return choice >= 1 && choice <= completions.size() ? completions.get(choice - 1) : null;
+    }
+
     public static void pressEnterToContinue() {
         System.out.print("Press Enter to continue...");
         scanner.nextLine();
@@ -0,0 +1,274 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Full-text index over case-folded word tokens with BM25 ranking.
+// All query terms must match (AND); the last term also matches as a prefix so partially typed words still find results
+public class InvertedIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Exact lookups go through the hash map; the sorted view is only used to expand prefixes
+    private final Map<String, Posting> terms;
+    private final NavigableMap<String, Posting> sortedTerms;
+
+    // Documents are numbered densely so query-time accumulators can be plain arrays
+    private final Map<String, Integer> documentNumbers;
+    private String[] documentIds;
+    private String[][] documentTerms;
+    private int[] documentLengths;
+    private int[] freeNumbers;
+    private int freeCount;
+    private int highestNumber;
+    private long totalLength;
+
+    // Query scratch space, sized with the document arrays
+    private double[] scores;
+    private int[] matchedGroups;
+
+    private static class Posting {
+        int[] documents = new int[4];
+        int[] frequencies = new int[4];
+        int size;
+
+        void add(int document, int frequency) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            documents[size] = document;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        void remove(int document) {
+            for (int i = 0; i < size; i++) {
+                if (documents[i] == document) {
+                    size--;
+                    documents[i] = documents[size];
+                    frequencies[i] = frequencies[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    public InvertedIndex() {
+        this.terms = new HashMap<>();
+        this.sortedTerms = new TreeMap<>();
+        this.documentNumbers = new HashMap<>();
+        this.documentIds = new String[16];
+        this.documentTerms = new String[16][];
+        this.documentLengths = new int[16];
+        this.freeNumbers = new int[16];
+        this.scores = new double[16];
+        this.matchedGroups = new int[16];
+    }
+
+    // Replaces whatever was indexed for the id before
+    public synchronized void put(String id, String... fields) {
+        remove(id);
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        int length = 0;
+        for (String field : fields) {
+            for (String term : tokenize(field)) {
+                termFrequencies.merge(term, 1, Integer::sum);
+                length++;
+            }
+        }
+
+        int document = allocateNumber();
+        documentNumbers.put(id, document);
+        documentIds[document] = id;
+        documentLengths[document] = length;
+        documentTerms[document] = termFrequencies.keySet().toArray(new String[0]);
+        totalLength += length;
+
+        for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+            Posting posting = terms.get(entry.getKey());
+            if (posting == null) {
+                posting = new Posting();
+                terms.put(entry.getKey(), posting);
+                sortedTerms.put(entry.getKey(), posting);
+            }
+            posting.add(document, entry.getValue());
+        }
+    }
+
+    public synchronized void remove(String id) {
+        Integer document = documentNumbers.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String term : documentTerms[document]) {
+            Posting posting = terms.get(term);
+            posting.remove(document);
+            if (posting.size == 0) {
+                terms.remove(term);
+                sortedTerms.remove(term);
+            }
+        }
+        totalLength -= documentLengths[document];
+        documentIds[document] = null;
+        documentTerms[document] = null;
+        if (freeCount == freeNumbers.length) {
+            freeNumbers = Arrays.copyOf(freeNumbers, freeCount * 2);
+        }
+        freeNumbers[freeCount++] = document;
+    }
+
+    public synchronized void clear() {
+        terms.clear();
+        sortedTerms.clear();
+        documentNumbers.clear();
+        Arrays.fill(documentIds, null);
+        Arrays.fill(documentTerms, null);
+        freeCount = 0;
+        highestNumber = 0;
+        totalLength = 0;
+    }
+
+    public synchronized int size() {
+        return documentNumbers.size();
+    }
+
+    // Ids of the matching documents, best match first; null when the query has no terms
+    public synchronized List<String> search(String query) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return null;
+        }
+
+        // Each query term expands to the index terms it matches
+        List<List<Posting>> groups = new ArrayList<>(queryTerms.size());
+        List<Long> groupSizes = new ArrayList<>(queryTerms.size());
+        for (int i = 0; i < queryTerms.size(); i++) {
+            String term = queryTerms.get(i);
+            List<Posting> matches = new ArrayList<>();
+            if (i == queryTerms.size() - 1) {
+                matches.addAll(sortedTerms.subMap(term, true, term + Character.MAX_VALUE, false).values());
+            } else if (terms.containsKey(term)) {
+                matches.add(terms.get(term));
+            }
+            if (matches.isEmpty()) {
+                return new ArrayList<>();
+            }
+            long size = 0;
+            for (Posting posting : matches) {
+                size += posting.size;
+            }
+            groups.add(matches);
+            groupSizes.add(size);
+        }
+
+        // Rarest group first: it fixes the candidate set, later groups only touch candidates still alive
+        Integer[] order = new Integer[groups.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(groupSizes.get(a), groupSizes.get(b)));
+
+        int documentCount = documentNumbers.size();
+        double averageLength = (double) totalLength / documentCount;
+        int[] candidates = new int[(int) (long) groupSizes.get(order[0])];
+        int candidateCount = 0;
+        for (int pass = 0; pass < order.length; pass++) {
+            for (Posting posting : groups.get(order[pass])) {
+                double idf = idf(posting.size, documentCount);
+                for (int i = 0; i < posting.size; i++) {
+                    int document = posting.documents[i];
+                    int matched = matchedGroups[document];
+                    if (pass == 0 && matched == 0) {
+                        candidates[candidateCount++] = document;
+                        scores[document] = 0;
+                    }
+                    // A document matching several expansions of one term is counted once but scored for each
+                    if (matched == pass || matched == pass + 1) {
+                        matchedGroups[document] = pass + 1;
+                        scores[document] += idf * termWeight(posting.frequencies[i], documentLengths[document], averageLength);
+                    }
+                }
+            }
+        }
+
+        // Non-negative doubles order like their bit patterns, so score and document pack into one sortable long
+        long[] ranked = new long[candidateCount];
+        int rankedCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int document = candidates[i];
+            if (matchedGroups[document] == order.length) {
+                long scoreBits = Float.floatToIntBits((float) scores[document]) & 0xFFFFFFFFL;
+                ranked[rankedCount++] = (scoreBits << 32) | (Integer.MAX_VALUE - document);
+            }
+            matchedGroups[document] = 0;
+        }
+        Arrays.sort(ranked, 0, rankedCount);
+
+        List<String> ids = new ArrayList<>(rankedCount);
+        for (int i = rankedCount - 1; i >= 0; i--) {
+            ids.add(documentIds[Integer.MAX_VALUE - (int) (ranked[i] & 0xFFFFFFFFL)]);
+        }
+        return ids;
+    }
+
+    // Splits on anything that is not a letter, digit or combining mark and case-folds;
+    // the marks keep Bengali vowel signs inside their words
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && isWordChar(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordChar(char c) {
+        if (c < 128) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+        }
+        int type = Character.getType(c);
+        return Character.isLetterOrDigit(c) || type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    private int allocateNumber() {
+        if (freeCount > 0) {
+            return freeNumbers[--freeCount];
+        }
+        if (highestNumber == documentIds.length) {
+            int capacity = highestNumber * 2;
+            documentIds = Arrays.copyOf(documentIds, capacity);
+            documentTerms = Arrays.copyOf(documentTerms, capacity);
+            documentLengths = Arrays.copyOf(documentLengths, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            matchedGroups = Arrays.copyOf(matchedGroups, capacity);
+        }
+        return highestNumber++;
+    }
+
+    private static double idf(int documentFrequency, int documentCount) {
+        return Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private static double termWeight(int frequency, int documentLength, double averageLength) {
+        double norm = averageLength == 0 ? 1 : 1 - B + B * documentLength / averageLength;
+        return frequency * (K1 + 1) / (frequency + K1 * norm);
+    }
+}
@@ -0,0 +1,86 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Ids ranked by a score, highest first with equal scores ordered by id. Score changes cost O(log N) and
+// reading the top k walks only the first k entries, so leaderboards stay cheap however many events fed them.
+// A plain bounded heap cannot be used because scores also go down and entries get removed
+public class Leaderboard<S extends Comparable<S>> {
+    private final TreeSet<Entry<S>> ranking;
+    private final Map<String, Entry<S>> entries;
+
+    private static class Entry<S extends Comparable<S>> implements Comparable<Entry<S>> {
+        final String id;
+        final S score;
+
+        Entry(String id, S score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Entry<S> other) {
+            int byScore = other.score.compareTo(score);
+            return byScore != 0 ? byScore : id.compareTo(other.id);
+        }
+    }
+
+    public Leaderboard() {
+        this.ranking = new TreeSet<>();
+        this.entries = new HashMap<>();
+    }
+
+    // Null scores remove the id
+    public synchronized void put(String id, S score) {
+        Entry<S> previous = entries.get(id);
+        if (previous != null && score != null && previous.score.compareTo(score) == 0) {
+            return;
+        }
+        if (previous != null) {
+            ranking.remove(previous);
+            entries.remove(id);
+        }
+        if (score != null) {
+            Entry<S> entry = new Entry<>(id, score);
+            ranking.add(entry);
+            entries.put(id, entry);
+        }
+    }
+
+    public synchronized void remove(String id) {
+        Entry<S> previous = entries.remove(id);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+    }
+
+    public synchronized void clear() {
+        ranking.clear();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Null when the id is not ranked
+    public synchronized S getScore(String id) {
+        Entry<S> entry = entries.get(id);
+        return entry == null ? null : entry.score;
+    }
+
+    // Up to k ids, highest score first
+    public synchronized List<String> top(int k) {
+        List<String> ids = new ArrayList<>(Math.max(0, Math.min(k, entries.size())));
+        Iterator<Entry<S>> iterator = ranking.iterator();
+        while (ids.size() < k && iterator.hasNext()) {
+            ids.add(iterator.next().id);
+        }
+        return ids;
+    }
+}
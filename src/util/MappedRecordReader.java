@@ -0,0 +1,327 @@
+package util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class MappedRecordReader {
+    private static final byte FIELD_SEPARATOR = '|';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final long MAX_WINDOW_SIZE = 1L << 30; // 1 GB per mapping
+
+    // Exact powers of ten; a double with at most 15 significant digits scaled by these rounds correctly
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_FAST_PATH_DIGITS = 15;
+
+    private static final ClassValue<byte[][]> ENUM_NAMES = new ClassValue<byte[][]>() {
+        @Override
+        protected byte[][] computeValue(Class<?> type) {
+            Object[] constants = type.getEnumConstants();
+            byte[][] names = new byte[constants.length][];
+            for (int i = 0; i < constants.length; i++) {
+                names[i] = ((Enum<?>) constants[i]).name().getBytes(StandardCharsets.US_ASCII);
+            }
+            return names;
+        }
+    };
+
+    public interface RecordVisitor {
+        void visit(Record record);
+    }
+
+    // A view over one line of the mapped file; only valid for the duration of the visit call
+    public static final class Record {
+        private MappedByteBuffer buffer;
+        private int[] fieldStarts = new int[16];
+        private int[] fieldEnds = new int[16];
+        private int fieldCount;
+        private long recordNumber;
+
+        private Record() {
+        }
+
+        public int getFieldCount() {
+            return fieldCount;
+        }
+
+        public long getRecordNumber() {
+            return recordNumber;
+        }
+
+        public int getFieldStart(int index) {
+            checkIndex(index);
+            return fieldStarts[index];
+        }
+
+        public int getFieldEnd(int index) {
+            checkIndex(index);
+            return fieldEnds[index];
+        }
+
+        public int getFieldLength(int index) {
+            checkIndex(index);
+            return fieldEnds[index] - fieldStarts[index];
+        }
+
+        public boolean isEmpty(int index) {
+            return getFieldLength(index) == 0;
+        }
+
+        public String getString(int index) {
+            checkIndex(index);
+            int length = fieldEnds[index] - fieldStarts[index];
+            byte[] bytes = new byte[length];
+            buffer.get(fieldStarts[index], bytes, 0, length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public int getInt(int index) {
+            long value = getLong(index);
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Value out of int range: " + getString(index));
+            }
+            return (int) value;
+        }
+
+        public long getLong(int index) {
+            checkIndex(index);
+            int position = fieldStarts[index];
+            int end = fieldEnds[index];
+            if (position == end) {
+                throw new NumberFormatException("Empty numeric field " + index);
+            }
+
+            boolean negative = false;
+            byte first = buffer.get(position);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                position++;
+                if (position == end) {
+                    throw new NumberFormatException("Invalid number: " + getString(index));
+                }
+            }
+
+            long value = 0;
+            for (; position < end; position++) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Invalid number: " + getString(index));
+                }
+                if (value > (Long.MAX_VALUE - digit) / 10) {
+                    throw new NumberFormatException("Value out of long range: " + getString(index));
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        public double getDouble(int index) {
+            checkIndex(index);
+            int position = fieldStarts[index];
+            int end = fieldEnds[index];
+
+            boolean negative = false;
+            if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negative = buffer.get(position) == '-';
+                position++;
+            }
+
+            long mantissa = 0;
+            int significantDigits = 0;
+            int exponent = 0;
+            boolean seenDigit = false;
+            boolean seenPoint = false;
+            for (; position < end; position++) {
+                byte current = buffer.get(position);
+                if (current >= '0' && current <= '9') {
+                    seenDigit = true;
+                    if (mantissa == 0 && current == '0') {
+                        // Leading zeros do not count as significant digits
+                        if (seenPoint) {
+                            exponent--;
+                        }
+                        continue;
+                    }
+                    if (significantDigits >= MAX_FAST_PATH_DIGITS) {
+                        return Double.parseDouble(getString(index));
+                    }
+                    mantissa = mantissa * 10 + (current - '0');
+                    significantDigits++;
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                } else if (current == '.' && !seenPoint) {
+                    seenPoint = true;
+                } else if ((current == 'E' || current == 'e') && seenDigit) {
+                    exponent += parseExponent(position + 1, end, index);
+                    position = end;
+                    break;
+                } else {
+                    // NaN, Infinity, hex floats and malformed input take the JDK path
+                    return Double.parseDouble(getString(index));
+                }
+            }
+
+            if (!seenDigit) {
+                throw new NumberFormatException("Invalid number: " + getString(index));
+            }
+
+            double value;
+            if (mantissa == 0) {
+                value = 0.0;
+            } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+                value = mantissa * POWERS_OF_TEN[exponent];
+            } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+                value = mantissa / POWERS_OF_TEN[-exponent];
+            } else {
+                return Double.parseDouble(getString(index));
+            }
+            return negative ? -value : value;
+        }
+
+        public boolean getBoolean(int index) {
+            checkIndex(index);
+            if (fieldEnds[index] - fieldStarts[index] != 4) {
+                return false;
+            }
+            int start = fieldStarts[index];
+            return (buffer.get(start) | 0x20) == 't'
+                    && (buffer.get(start + 1) | 0x20) == 'r'
+                    && (buffer.get(start + 2) | 0x20) == 'u'
+                    && (buffer.get(start + 3) | 0x20) == 'e';
+        }
+
+        public <E extends Enum<E>> E getEnum(int index, Class<E> enumType) {
+            checkIndex(index);
+            int start = fieldStarts[index];
+            int length = fieldEnds[index] - start;
+            byte[][] names = ENUM_NAMES.get(enumType);
+            for (int ordinal = 0; ordinal < names.length; ordinal++) {
+                if (matches(start, length, names[ordinal])) {
+                    return enumType.getEnumConstants()[ordinal];
+                }
+            }
+            throw new IllegalArgumentException("No enum constant " + enumType.getName() + "." + getString(index));
+        }
+
+        private int parseExponent(int position, int end, int index) {
+            boolean negative = false;
+            if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negative = buffer.get(position) == '-';
+                position++;
+            }
+            if (position == end) {
+                throw new NumberFormatException("Invalid number: " + getString(index));
+            }
+            int value = 0;
+            for (; position < end; position++) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Invalid number: " + getString(index));
+                }
+                // Anything this large is out of double range anyway; clamp to keep the sum from overflowing
+                value = Math.min(value * 10 + digit, 100_000);
+            }
+            return negative ? -value : value;
+        }
+
+        private boolean matches(int start, int length, byte[] expected) {
+            if (length != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(start + i) != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= fieldCount) {
+                throw new IndexOutOfBoundsException("Field " + index + " of " + fieldCount);
+            }
+        }
+
+        private void addField(int start, int end) {
+            if (fieldCount == fieldStarts.length) {
+                fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+                fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+            }
+            fieldStarts[fieldCount] = start;
+            fieldEnds[fieldCount] = end;
+            fieldCount++;
+        }
+    }
+
+    // Visits every non-blank line of the file; returns the number of records visited
+    public static long scan(Path path, RecordVisitor visitor) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        long visited = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long windowStart = 0;
+            Record record = new Record();
+
+            while (windowStart < fileSize) {
+                long windowSize = Math.min(MAX_WINDOW_SIZE, fileSize - windowStart);
+                boolean lastWindow = windowStart + windowSize == fileSize;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+                record.buffer = buffer;
+
+                int limit = (int) windowSize;
+                if (!lastWindow) {
+                    // Only consume whole lines; the partial tail is remapped at the start of the next window
+                    while (limit > 0 && buffer.get(limit - 1) != LINE_FEED) {
+                        limit--;
+                    }
+                    if (limit == 0) {
+                        throw new IOException("Record longer than " + MAX_WINDOW_SIZE + " bytes in " + path);
+                    }
+                }
+
+                int lineStart = 0;
+                while (lineStart < limit) {
+                    int lineEnd = lineStart;
+                    while (lineEnd < limit && buffer.get(lineEnd) != LINE_FEED) {
+                        lineEnd++;
+                    }
+                    int contentEnd = lineEnd;
+                    if (contentEnd > lineStart && buffer.get(contentEnd - 1) == CARRIAGE_RETURN) {
+                        contentEnd--;
+                    }
+
+                    if (contentEnd > lineStart) {
+                        record.fieldCount = 0;
+                        int fieldStart = lineStart;
+                        for (int i = lineStart; i < contentEnd; i++) {
+                            if (buffer.get(i) == FIELD_SEPARATOR) {
+                                record.addField(fieldStart, i);
+                                fieldStart = i + 1;
+                            }
+                        }
+                        record.addField(fieldStart, contentEnd);
+                        record.recordNumber = visited;
+                        visitor.visit(record);
+                        visited++;
+                    }
+                    lineStart = lineEnd + 1;
+                }
+                windowStart += limit;
+            }
+        }
+        return visited;
+    }
+}
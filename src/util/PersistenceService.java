@@ -0,0 +1,314 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+// Write-behind persistence: managers mark a store dirty and a background thread
+// coalesces bursts of mutations into one flush per store (group commit).
+// A flush action reports whether the store reached disk; a store whose flush failed stays dirty and is retried
+public class PersistenceService {
+    private static final long DEFAULT_COALESCE_INTERVAL_MS = 200;
+    private static final long DEFAULT_MAX_LATENCY_MS = 1000;
+
+    private static final Object stateLock = new Object();
+    private static final Object flushLock = new Object();
+    private static final Map<StoreKey, BooleanSupplier> dirtyStores = new LinkedHashMap<>();
+    // Mutations marked by each owner, compared by identity; guarded by stateLock
+    private static final Map<Object, long[]> modificationVersions = new IdentityHashMap<>();
+
+    private static long coalesceIntervalMs = DEFAULT_COALESCE_INTERVAL_MS;
+    private static long maxLatencyMs = DEFAULT_MAX_LATENCY_MS;
+    private static long firstDirtyAt;
+    private static long lastDirtyAt;
+    private static Thread flushThread;
+    private static boolean shutdown = false;
+
+    // Statistics, guarded by stateLock
+    private static long markCount;
+    private static long coalescedWriteCount;
+    private static long flushCount;
+    private static long failedFlushCount;
+    private static long totalFlushNanos;
+    private static long maxFlushNanos;
+    private static long maxCommitLatencyNanos;
+
+    private static final class StoreKey {
+        private final Object owner;
+        private final String storeName;
+
+        StoreKey(Object owner, String storeName) {
+            this.owner = owner;
+            this.storeName = storeName;
+        }
+
+        // Owners are compared by identity so two manager instances never share a pending flush
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof StoreKey)) {
+                return false;
+            }
+            StoreKey key = (StoreKey) other;
+            return owner == key.owner && storeName.equals(key.storeName);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(owner) * 31 + storeName.hashCode();
+        }
+    }
+
+    public static void markDirty(Object owner, String storeName, BooleanSupplier flushAction) {
+        boolean flushNow;
+        synchronized (stateLock) {
+            markCount++;
+            modificationVersions.computeIfAbsent(owner, key -> new long[1])[0]++;
+            flushNow = shutdown;
+            if (!flushNow) {
+                long now = System.nanoTime();
+                if (dirtyStores.isEmpty()) {
+                    firstDirtyAt = now;
+                }
+                lastDirtyAt = now;
+                if (dirtyStores.put(new StoreKey(owner, storeName), flushAction) != null) {
+                    coalescedWriteCount++;
+                }
+                ensureStarted();
+                stateLock.notifyAll();
+            }
+        }
+
+        // Once the service has shut down there is no thread left to write behind, so write through
+        if (flushNow) {
+            synchronized (flushLock) {
+                runFlush(storeName, flushAction, System.nanoTime());
+            }
+        }
+    }
+
+    public static void start() {
+        synchronized (stateLock) {
+            shutdown = false;
+            ensureStarted();
+        }
+    }
+
+    // Synchronously writes every dirty store; used before backups and at shutdown
+    public static void flushAll() {
+        synchronized (flushLock) {
+            Map<StoreKey, BooleanSupplier> batch;
+            long batchStartedAt;
+            synchronized (stateLock) {
+                batch = drainDirtyStores();
+                batchStartedAt = firstDirtyAt;
+            }
+            flushBatch(batch, batchStartedAt);
+        }
+    }
+
+    public static void shutdown() {
+        Thread thread;
+        synchronized (stateLock) {
+            shutdown = true;
+            thread = flushThread;
+            flushThread = null;
+            stateLock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join(maxLatencyMs + coalesceIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushAll();
+        Logger.log("Persistence service stopped - " + getStatistics());
+    }
+
+    public static boolean hasPendingWrites() {
+        synchronized (stateLock) {
+            return !dirtyStores.isEmpty();
+        }
+    }
+
+    public static void setCoalesceInterval(long milliseconds) {
+        synchronized (stateLock) {
+            coalesceIntervalMs = Math.max(0, milliseconds);
+        }
+    }
+
+    public static void setMaxLatency(long milliseconds) {
+        synchronized (stateLock) {
+            maxLatencyMs = Math.max(0, milliseconds);
+        }
+    }
+
+    // Every committed mutation marks its store dirty, so the owner's mark count changes exactly when its data does
+    public static long getModificationVersion(Object owner) {
+        synchronized (stateLock) {
+            long[] version = modificationVersions.get(owner);
+            return version == null ? 0L : version[0];
+        }
+    }
+
+    public static long getMarkCount() {
+        synchronized (stateLock) {
+            return markCount;
+        }
+    }
+
+    // Mutations absorbed by a flush that was already pending for the same store
+    public static long getCoalescedWriteCount() {
+        synchronized (stateLock) {
+            return coalescedWriteCount;
+        }
+    }
+
+    public static long getFlushCount() {
+        synchronized (stateLock) {
+            return flushCount;
+        }
+    }
+
+    public static long getFailedFlushCount() {
+        synchronized (stateLock) {
+            return failedFlushCount;
+        }
+    }
+
+    public static double getAverageFlushLatencyMillis() {
+        synchronized (stateLock) {
+            return flushCount == 0 ? 0.0 : totalFlushNanos / 1_000_000.0 / flushCount;
+        }
+    }
+
+    public static double getMaxFlushLatencyMillis() {
+        synchronized (stateLock) {
+            return maxFlushNanos / 1_000_000.0;
+        }
+    }
+
+    // Longest time from the first mutation of a batch until its flush finished
+    public static double getMaxCommitLatencyMillis() {
+        synchronized (stateLock) {
+            return maxCommitLatencyNanos / 1_000_000.0;
+        }
+    }
+
+    public static String getStatistics() {
+        synchronized (stateLock) {
+            return String.format("marks=%d, coalesced=%d, flushes=%d, failed=%d, avgFlush=%.2fms, maxFlush=%.2fms, maxCommit=%.2fms",
+                    markCount, coalescedWriteCount, flushCount, failedFlushCount,
+                    flushCount == 0 ? 0.0 : totalFlushNanos / 1_000_000.0 / flushCount,
+                    maxFlushNanos / 1_000_000.0, maxCommitLatencyNanos / 1_000_000.0);
+        }
+    }
+
+    private static void ensureStarted() {
+        if (flushThread == null && !shutdown) {
+            flushThread = new Thread(PersistenceService::runFlushLoop);
+            flushThread.setDaemon(true);
+            flushThread.setName("PersistenceWriter");
+            flushThread.start();
+        }
+    }
+
+    private static void runFlushLoop() {
+        while (true) {
+            Map<StoreKey, BooleanSupplier> batch;
+            long batchStartedAt;
+            synchronized (stateLock) {
+                try {
+                    while (dirtyStores.isEmpty() && !shutdown) {
+                        stateLock.wait();
+                    }
+                    // Keep absorbing mutations until the burst goes quiet or the oldest one hits the latency bound
+                    while (!dirtyStores.isEmpty() && !shutdown) {
+                        long now = System.nanoTime();
+                        long quietDeadline = lastDirtyAt + coalesceIntervalMs * 1_000_000;
+                        long latencyDeadline = firstDirtyAt + maxLatencyMs * 1_000_000;
+                        long waitNanos = Math.min(quietDeadline, latencyDeadline) - now;
+                        if (waitNanos <= 0) {
+                            break;
+                        }
+                        stateLock.wait(Math.max(1, waitNanos / 1_000_000));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (shutdown) {
+                    // shutdown() performs the final flush on the calling thread
+                    return;
+                }
+            }
+
+            synchronized (flushLock) {
+                synchronized (stateLock) {
+                    batch = drainDirtyStores();
+                    batchStartedAt = firstDirtyAt;
+                }
+                flushBatch(batch, batchStartedAt);
+            }
+        }
+    }
+
+    private static Map<StoreKey, BooleanSupplier> drainDirtyStores() {
+        Map<StoreKey, BooleanSupplier> batch = new LinkedHashMap<>(dirtyStores);
+        dirtyStores.clear();
+        return batch;
+    }
+
+    private static void flushBatch(Map<StoreKey, BooleanSupplier> batch, long batchStartedAt) {
+        List<StoreKey> stores = new ArrayList<>(batch.keySet());
+        for (StoreKey store : stores) {
+            if (!runFlush(store.storeName, batch.get(store), batchStartedAt)) {
+                retry(store, batch.get(store));
+            }
+        }
+    }
+
+    // Puts a store back in the dirty set unless a newer mutation already did; its modification version is unchanged
+    // because its data is. The retry waits out one coalesce interval like any fresh mutation
+    private static void retry(StoreKey store, BooleanSupplier flushAction) {
+        synchronized (stateLock) {
+            long now = System.nanoTime();
+            if (dirtyStores.isEmpty()) {
+                firstDirtyAt = now;
+            }
+            lastDirtyAt = now;
+            dirtyStores.putIfAbsent(store, flushAction);
+            ensureStarted();
+            stateLock.notifyAll();
+        }
+    }
+
+    private static boolean runFlush(String storeName, BooleanSupplier flushAction, long dirtySince) {
+        long started = System.nanoTime();
+        boolean failed;
+        try {
+            failed = !flushAction.getAsBoolean();
+            if (failed) {
+                Logger.error("Failed to flush " + storeName);
+            }
+        } catch (Exception e) {
+            failed = true;
+            Logger.error("Failed to flush " + storeName + ": " + e.getMessage());
+        }
+        long finished = System.nanoTime();
+
+        synchronized (stateLock) {
+            if (failed) {
+                failedFlushCount++;
+            }
+            flushCount++;
+            totalFlushNanos += finished - started;
+            maxFlushNanos = Math.max(maxFlushNanos, finished - started);
+            maxCommitLatencyNanos = Math.max(maxCommitLatencyNanos, finished - dirtySince);
+        }
+        return !failed;
+    }
+}
@@ -0,0 +1,201 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Completions for typed prefixes, heaviest first. Each text is keyed by its lowercase form and by every later
+// word start, so "baz" completes "Cox's Bazar". The keys sit in one sorted array, so the keys sharing a prefix
+// are a contiguous range found by binary search, and a max segment tree over their weights pulls the heaviest
+// ids out of that range one by one: n completions cost O(n log M) however many keys match.
+// Weight changes patch the tree in place; text changes mark the arrays stale and the next completion re-sorts once
+public class PrefixIndex {
+    private final Map<String, List<String>> indexedKeys;
+    private final Map<String, Double> weights;
+    private String[] sortedKeys;
+    private String[] keyIds;
+    private double[] keyWeights;
+    // Positions of each id's keys in the sorted arrays
+    private Map<String, int[]> keyPositions;
+    // maxTree[size + i] is key i; every inner node holds the position of the heavier of its two children
+    private int[] maxTree;
+    private boolean keysStale;
+
+    public PrefixIndex() {
+        this.indexedKeys = new HashMap<>();
+        this.weights = new HashMap<>();
+        this.sortedKeys = new String[0];
+        this.keyIds = new String[0];
+        this.keyWeights = new double[0];
+        this.keyPositions = new HashMap<>();
+        this.maxTree = new int[0];
+    }
+
+    public synchronized void put(String id, double weight, String... texts) {
+        List<String> keys = new ArrayList<>();
+        for (String text : texts) {
+            addKeys(text, keys);
+        }
+        if (!keys.equals(indexedKeys.put(id, keys))) {
+            keysStale = true;
+        }
+        setWeight(id, weight);
+    }
+
+    // Ignored for ids that are not indexed
+    public synchronized void setWeight(String id, double weight) {
+        if (!indexedKeys.containsKey(id)) {
+            return;
+        }
+        Double previous = weights.put(id, weight);
+        int[] positions = keysStale ? null : keyPositions.get(id);
+        if (previous == null || previous == weight || positions == null) {
+            return;
+        }
+        for (int position : positions) {
+            keyWeights[position] = weight;
+            for (int node = (position + keyIds.length) >> 1; node >= 1; node >>= 1) {
+                maxTree[node] = heavier(maxTree[2 * node], maxTree[2 * node + 1]);
+            }
+        }
+    }
+
+    public synchronized void remove(String id) {
+        if (indexedKeys.remove(id) != null) {
+            weights.remove(id);
+            keysStale = true;
+        }
+    }
+
+    public synchronized void clear() {
+        indexedKeys.clear();
+        weights.clear();
+        keysStale = true;
+    }
+
+    public synchronized int size() {
+        return indexedKeys.size();
+    }
+
+    // Up to limit distinct ids with a key starting with the prefix, heaviest first; equal weights are ordered by id
+    public synchronized List<String> complete(String prefix, int limit) {
+        ensureBuilt();
+        String normalized = prefix == null ? "" : prefix.trim().toLowerCase(Locale.ROOT);
+        int from = firstKeyAtLeast(normalized);
+        int to = firstKeyAtLeast(normalized + Character.MAX_VALUE);
+        List<String> ids = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        // Ranges still to draw from, ordered by their heaviest key
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> heavier(a[2], b[2]) == a[2] ? -1 : 1);
+        if (from < to) {
+            ranges.add(new int[] {from, to, heaviest(from, to)});
+        }
+        while (ids.size() < limit && !ranges.isEmpty()) {
+            int[] range = ranges.poll();
+            int position = range[2];
+            if (seen.add(keyIds[position])) {
+                ids.add(keyIds[position]);
+            }
+            if (range[0] < position) {
+                ranges.add(new int[] {range[0], position, heaviest(range[0], position)});
+            }
+            if (position + 1 < range[1]) {
+                ranges.add(new int[] {position + 1, range[1], heaviest(position + 1, range[1])});
+            }
+        }
+        return ids;
+    }
+
+    private static void addKeys(String text, List<String> keys) {
+        if (text == null) {
+            return;
+        }
+        String lower = text.trim().toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            boolean wordStart = i == 0 || !Character.isLetterOrDigit(lower.charAt(i - 1));
+            if (wordStart && Character.isLetterOrDigit(lower.charAt(i))) {
+                keys.add(lower.substring(i));
+            }
+        }
+    }
+
+    private int firstKeyAtLeast(String key) {
+        int low = 0;
+        int high = sortedKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedKeys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Position of the heaviest key in the non-empty range [from, to)
+    private int heaviest(int from, int to) {
+        int best = -1;
+        for (int low = from + keyIds.length, high = to + keyIds.length; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                best = best < 0 ? maxTree[low] : heavier(best, maxTree[low]);
+                low++;
+            }
+            if ((high & 1) == 1) {
+                high--;
+                best = best < 0 ? maxTree[high] : heavier(best, maxTree[high]);
+            }
+        }
+        return best;
+    }
+
+    // Equal weights go to the smaller id
+    private int heavier(int a, int b) {
+        if (keyWeights[a] != keyWeights[b]) {
+            return keyWeights[a] > keyWeights[b] ? a : b;
+        }
+        return keyIds[a].compareTo(keyIds[b]) <= 0 ? a : b;
+    }
+
+    private void ensureBuilt() {
+        if (!keysStale) {
+            return;
+        }
+        List<String[]> entries = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : indexedKeys.entrySet()) {
+            for (String key : entry.getValue()) {
+                entries.add(new String[] {key, entry.getKey()});
+            }
+        }
+        entries.sort((a, b) -> a[0].equals(b[0]) ? a[1].compareTo(b[1]) : a[0].compareTo(b[0]));
+        int size = entries.size();
+        sortedKeys = new String[size];
+        keyIds = new String[size];
+        keyWeights = new double[size];
+        Map<String, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            sortedKeys[i] = entries.get(i)[0];
+            keyIds[i] = entries.get(i)[1];
+            keyWeights[i] = weights.get(keyIds[i]);
+            positions.computeIfAbsent(keyIds[i], id -> new ArrayList<>()).add(i);
+        }
+        keyPositions = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+            keyPositions.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        maxTree = new int[2 * size];
+        for (int i = 0; i < size; i++) {
+            maxTree[size + i] = i;
+        }
+        for (int node = size - 1; node >= 1; node--) {
+            maxTree[node] = heavier(maxTree[2 * node], maxTree[2 * node + 1]);
+        }
+        keysStale = false;
+    }
+}
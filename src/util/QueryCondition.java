@@ -0,0 +1,101 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// One predicate over a named entity field, used to compose QueryEngine queries
+public class QueryCondition {
+    public enum Operator { EQUALS, IN, NOT_IN, RANGE, CONTAINS }
+
+    private final String field;
+    private final Operator operator;
+    private final Object value;
+    private final Set<Object> values;
+    private final Comparable<?> min;
+    private final Comparable<?> max;
+
+    private QueryCondition(String field, Operator operator, Object value, Set<Object> values,
+                           Comparable<?> min, Comparable<?> max) {
+        this.field = field;
+        this.operator = operator;
+        this.value = value;
+        this.values = values;
+        this.min = min;
+        this.max = max;
+    }
+
+    public static QueryCondition equalTo(String field, Object value) {
+        return new QueryCondition(field, Operator.EQUALS, value, null, null, null);
+    }
+
+    public static QueryCondition in(String field, Object... values) {
+        return new QueryCondition(field, Operator.IN, null,
+                Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(values))), null, null);
+    }
+
+    public static QueryCondition notIn(String field, Object... values) {
+        return new QueryCondition(field, Operator.NOT_IN, null,
+                Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(values))), null, null);
+    }
+
+    public static QueryCondition notEqualTo(String field, Object value) {
+        return notIn(field, value);
+    }
+
+    // Inclusive on both ends; a null bound leaves that side open
+    public static QueryCondition range(String field, Comparable<?> min, Comparable<?> max) {
+        return new QueryCondition(field, Operator.RANGE, null, null, min, max);
+    }
+
+    // Case-insensitive substring match on the field's string value
+    public static QueryCondition contains(String field, String text) {
+        return new QueryCondition(field, Operator.CONTAINS, text, null, null, null);
+    }
+
+    public String getField() { return field; }
+    public Operator getOperator() { return operator; }
+    public Object getValue() { return value; }
+    public Set<Object> getValues() { return values; }
+    public Comparable<?> getMin() { return min; }
+    public Comparable<?> getMax() { return max; }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public boolean matches(Object fieldValue) {
+        switch (operator) {
+            case EQUALS:
+                return value == null ? fieldValue == null : value.equals(fieldValue);
+            case IN:
+                return values.contains(fieldValue);
+            case NOT_IN:
+                return !values.contains(fieldValue);
+            case RANGE:
+                if (fieldValue == null) {
+                    return false;
+                }
+                return (min == null || ((Comparable) fieldValue).compareTo(min) >= 0)
+                        && (max == null || ((Comparable) fieldValue).compareTo(max) <= 0);
+            case CONTAINS:
+                return fieldValue != null && SearchHelper.containsIgnoreCase(fieldValue.toString(), (String) value);
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (operator) {
+            case EQUALS:
+                return field + " = " + value;
+            case IN:
+                return field + " in " + values;
+            case NOT_IN:
+                return field + " not in " + values;
+            case RANGE:
+                return field + " in [" + (min == null ? "-inf" : min) + ", " + (max == null ? "+inf" : max) + "]";
+            default:
+                return field + " contains '" + value + "'";
+        }
+    }
+}
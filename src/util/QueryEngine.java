@@ -0,0 +1,500 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Composes QueryConditions over an entity store. The planner serves the most selective indexed condition
+// from its index, intersects further postings while they stay small, and verifies every condition on the survivors.
+// Conditions without a usable index are checked during that verification, or by a full scan if none is indexed.
+// EQUALS, IN and NOT_IN conditions on bitmap fields are folded into one bitwise combination whose size is exact
+public class QueryEngine<T> {
+    // A posting is only intersected when it is at most this many times larger than the current candidate set
+    private static final int MAX_INTERSECT_RATIO = 4;
+
+    private final Function<String, T> lookup;
+    private final Supplier<Collection<T>> scan;
+    private final Map<String, Function<T, ?>> fields;
+    private final Map<String, List<Index>> indexes;
+    private final Map<String, SecondaryIndex<Object>> ownedIndexes;
+    // Key values each record was last indexed under, for the indexes this engine maintains itself
+    private final Map<String, Map<String, Object>> indexedKeys;
+    private final Set<String> bitmapFields;
+    private final BitmapIndex<T> bitmapIndex;
+
+    // Candidate source for conditions on one field; lookups may return a superset, results are always verified
+    public interface Index {
+        boolean supports(QueryCondition condition);
+
+        int estimate(QueryCondition condition);
+
+        Collection<String> lookup(QueryCondition condition);
+    }
+
+    public QueryEngine(Function<String, T> lookup, Supplier<Collection<T>> scan) {
+        this.lookup = lookup;
+        this.scan = scan;
+        this.fields = new LinkedHashMap<>();
+        this.indexes = new HashMap<>();
+        this.ownedIndexes = new LinkedHashMap<>();
+        this.indexedKeys = new HashMap<>();
+        this.bitmapFields = new LinkedHashSet<>();
+        this.bitmapIndex = new BitmapIndex<>();
+    }
+
+    public QueryEngine<T> addField(String name, Function<T, ?> accessor) {
+        fields.put(name, accessor);
+        return this;
+    }
+
+    // Registers an index the owning manager maintains
+    public QueryEngine<T> addIndex(String field, Index index) {
+        indexes.computeIfAbsent(field, name -> new ArrayList<>()).add(index);
+        return this;
+    }
+
+    // Registers a field plus an equality index kept current through put() and remove()
+    public QueryEngine<T> addIndexedField(String name, Function<T, ?> accessor) {
+        addField(name, accessor);
+        SecondaryIndex<Object> index = new SecondaryIndex<>();
+        ownedIndexes.put(name, index);
+        return addIndex(name, equalityIndex(index));
+    }
+
+    // Registers a low-cardinality field (status, flag, category) served from bitmaps kept current through put() and remove()
+    public QueryEngine<T> addBitmapField(String name, Function<T, ?> accessor) {
+        addField(name, accessor);
+        bitmapFields.add(name);
+        bitmapIndex.addAttribute(name, accessor);
+        return this;
+    }
+
+    public synchronized void put(String id, T entity) {
+        if (!bitmapFields.isEmpty()) {
+            bitmapIndex.put(id, entity);
+        }
+        if (ownedIndexes.isEmpty()) {
+            return;
+        }
+        Map<String, Object> previous = indexedKeys.get(id);
+        Map<String, Object> current = new HashMap<>();
+        for (Map.Entry<String, SecondaryIndex<Object>> entry : ownedIndexes.entrySet()) {
+            Object key = fields.get(entry.getKey()).apply(entity);
+            current.put(entry.getKey(), key);
+            if (previous == null) {
+                entry.getValue().add(key, id);
+            } else {
+                entry.getValue().update(previous.get(entry.getKey()), key, id);
+            }
+        }
+        indexedKeys.put(id, current);
+    }
+
+    public synchronized void remove(String id) {
+        bitmapIndex.remove(id);
+        Map<String, Object> previous = indexedKeys.remove(id);
+        if (previous != null) {
+            for (Map.Entry<String, SecondaryIndex<Object>> entry : ownedIndexes.entrySet()) {
+                entry.getValue().remove(previous.get(entry.getKey()), id);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        indexedKeys.clear();
+        bitmapIndex.clear();
+        for (SecondaryIndex<Object> index : ownedIndexes.values()) {
+            index.clear();
+        }
+    }
+
+    public Query<T> query() {
+        return new Query<>(this);
+    }
+
+    public static class Query<T> {
+        private final QueryEngine<T> engine;
+        private final List<QueryCondition> conditions = new ArrayList<>();
+        private Comparator<? super T> order;
+        private int offset;
+        private int limit = Integer.MAX_VALUE;
+
+        private Query(QueryEngine<T> engine) {
+            this.engine = engine;
+        }
+
+        public Query<T> where(QueryCondition condition) {
+            if (!engine.fields.containsKey(condition.getField())) {
+                throw new IllegalArgumentException("Unknown query field: " + condition.getField());
+            }
+            conditions.add(condition);
+            return this;
+        }
+
+        public Query<T> orderBy(Comparator<? super T> comparator) {
+            this.order = comparator;
+            return this;
+        }
+
+        public Query<T> offset(int offset) {
+            this.offset = Math.max(0, offset);
+            return this;
+        }
+
+        public Query<T> limit(int limit) {
+            this.limit = Math.max(0, limit);
+            return this;
+        }
+
+        public List<T> list() {
+            return engine.execute(this);
+        }
+
+        // Number of matches, ignoring offset and limit; answered from the bitmaps alone when they cover every condition
+        public int count() {
+            return engine.count(this);
+        }
+
+        // Describes the plan the engine would run, without running it
+        public String explain() {
+            return engine.plan(conditions).describe(conditions);
+        }
+    }
+
+    private static class Step {
+        final QueryCondition condition;
+        final Index index;
+        final int estimate;
+        // Set instead of condition and index for the combined bitmap conditions
+        final CompressedBitmap rows;
+        final String label;
+
+        Step(QueryCondition condition, Index index, int estimate) {
+            this.condition = condition;
+            this.index = index;
+            this.estimate = estimate;
+            this.rows = null;
+            this.label = "index " + condition;
+        }
+
+        Step(CompressedBitmap rows, List<String> conditions) {
+            this.condition = null;
+            this.index = null;
+            this.estimate = rows.cardinality();
+            this.rows = rows;
+            this.label = "bitmap " + String.join(" AND ", conditions);
+        }
+    }
+
+    private static class Plan {
+        final List<Step> intersected = new ArrayList<>();
+        Step bitmap;
+        int bitmapConditions;
+
+        boolean isScan() {
+            return intersected.isEmpty();
+        }
+
+        String describe(List<QueryCondition> conditions) {
+            StringBuilder text = new StringBuilder();
+            if (isScan()) {
+                text.append("full scan");
+            } else {
+                for (int i = 0; i < intersected.size(); i++) {
+                    Step step = intersected.get(i);
+                    text.append(i == 0 ? "" : " intersect ").append(step.label).append(" (est. ").append(step.estimate).append(")");
+                }
+            }
+            List<String> verified = new ArrayList<>();
+            for (QueryCondition condition : conditions) {
+                verified.add(condition.toString());
+            }
+            if (!verified.isEmpty()) {
+                text.append("; verify ").append(String.join(" AND ", verified));
+            }
+            return text.toString();
+        }
+    }
+
+    private Plan plan(List<QueryCondition> conditions) {
+        List<Step> candidates = new ArrayList<>();
+        CompressedBitmap rows = null;
+        List<String> folded = new ArrayList<>();
+        for (QueryCondition condition : conditions) {
+            CompressedBitmap matching = bitmapRows(condition);
+            if (matching != null) {
+                rows = rows == null ? matching : rows.and(matching);
+                folded.add(condition.toString());
+                continue;
+            }
+            Step best = null;
+            for (Index index : indexes.getOrDefault(condition.getField(), new ArrayList<>())) {
+                if (index.supports(condition)) {
+                    int estimate = index.estimate(condition);
+                    if (best == null || estimate < best.estimate) {
+                        best = new Step(condition, index, estimate);
+                    }
+                }
+            }
+            if (best != null) {
+                candidates.add(best);
+            }
+        }
+        Plan plan = new Plan();
+        if (rows != null) {
+            plan.bitmap = new Step(rows, folded);
+            plan.bitmapConditions = folded.size();
+            candidates.add(plan.bitmap);
+        }
+        candidates.sort(Comparator.comparingInt(step -> step.estimate));
+
+        for (Step step : candidates) {
+            if (plan.intersected.isEmpty()
+                    || (long) step.estimate <= (long) plan.intersected.get(0).estimate * MAX_INTERSECT_RATIO) {
+                plan.intersected.add(step);
+            }
+        }
+        return plan;
+    }
+
+    // Rows matching an EQUALS, IN or NOT_IN condition on a bitmap field, null for any other condition
+    private CompressedBitmap bitmapRows(QueryCondition condition) {
+        if (!bitmapFields.contains(condition.getField())) {
+            return null;
+        }
+        switch (condition.getOperator()) {
+            case EQUALS:
+                return bitmapIndex.matching(condition.getField(), Collections.singletonList(condition.getValue()));
+            case IN:
+                return bitmapIndex.matching(condition.getField(), condition.getValues());
+            case NOT_IN:
+                return bitmapIndex.all().andNot(bitmapIndex.matching(condition.getField(), condition.getValues()));
+            default:
+                return null;
+        }
+    }
+
+    private Collection<String> lookup(Step step) {
+        return step.rows != null ? bitmapIndex.ids(step.rows) : step.index.lookup(step.condition);
+    }
+
+    private Collection<T> candidates(Plan plan) {
+        if (plan.isScan()) {
+            return scan.get();
+        }
+        Set<String> ids = new LinkedHashSet<>(lookup(plan.intersected.get(0)));
+        for (int i = 1; i < plan.intersected.size() && !ids.isEmpty(); i++) {
+            ids.retainAll(toSet(lookup(plan.intersected.get(i))));
+        }
+        List<T> source = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            T entity = lookup.apply(id);
+            if (entity != null) {
+                source.add(entity);
+            }
+        }
+        return source;
+    }
+
+    private int count(Query<T> query) {
+        Plan plan = plan(query.conditions);
+        if (plan.bitmap != null && plan.bitmapConditions == query.conditions.size()) {
+            return plan.bitmap.estimate;
+        }
+        int count = 0;
+        for (T entity : candidates(plan)) {
+            if (matchesAll(entity, query.conditions)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private List<T> execute(Query<T> query) {
+        Plan plan = plan(query.conditions);
+        Collection<T> source = candidates(plan);
+
+        // Without an ordering, matching can stop as soon as the requested page is complete
+        boolean ordered = query.order != null;
+        long wanted = (long) query.offset + query.limit;
+        List<T> matches = new ArrayList<>();
+        for (T entity : source) {
+            if (matchesAll(entity, query.conditions)) {
+                matches.add(entity);
+                if (!ordered && matches.size() >= wanted) {
+                    break;
+                }
+            }
+        }
+        if (ordered) {
+            matches.sort(query.order);
+        }
+        int from = Math.min(query.offset, matches.size());
+        int to = (int) Math.min(matches.size(), wanted);
+        return new ArrayList<>(matches.subList(from, to));
+    }
+
+    private boolean matchesAll(T entity, List<QueryCondition> conditions) {
+        for (QueryCondition condition : conditions) {
+            if (!condition.matches(fields.get(condition.getField()).apply(entity))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> toSet(Collection<String> ids) {
+        return ids instanceof Set ? (Set<String>) ids : new LinkedHashSet<>(ids);
+    }
+
+    // Serves EQUALS and IN from a SecondaryIndex
+    @SuppressWarnings("unchecked")
+    public static <K> Index equalityIndex(SecondaryIndex<K> index) {
+        return new Index() {
+            @Override
+            public boolean supports(QueryCondition condition) {
+                return condition.getOperator() == QueryCondition.Operator.EQUALS
+                        || condition.getOperator() == QueryCondition.Operator.IN;
+            }
+
+            @Override
+            public int estimate(QueryCondition condition) {
+                if (condition.getOperator() == QueryCondition.Operator.EQUALS) {
+                    return index.count((K) condition.getValue());
+                }
+                int total = 0;
+                for (Object value : condition.getValues()) {
+                    total += index.count((K) value);
+                }
+                return total;
+            }
+
+            @Override
+            public Collection<String> lookup(QueryCondition condition) {
+                if (condition.getOperator() == QueryCondition.Operator.EQUALS) {
+                    return index.get((K) condition.getValue());
+                }
+                Set<String> ids = new LinkedHashSet<>();
+                for (Object value : condition.getValues()) {
+                    ids.addAll(index.get((K) value));
+                }
+                return ids;
+            }
+        };
+    }
+
+    // Serves RANGE and EQUALS on "yyyy-MM-dd" date fields from a DateRangeIndex
+    public static Index dateRangeIndex(DateRangeIndex index) {
+        return new Index() {
+            @Override
+            public boolean supports(QueryCondition condition) {
+                return toDays(condition) != null;
+            }
+
+            @Override
+            public int estimate(QueryCondition condition) {
+                int[] days = toDays(condition);
+                return index.count(days[0], days[1]);
+            }
+
+            @Override
+            public Collection<String> lookup(QueryCondition condition) {
+                int[] days = toDays(condition);
+                return index.getIds(days[0], days[1]);
+            }
+
+            private int[] toDays(QueryCondition condition) {
+                if (condition.getOperator() == QueryCondition.Operator.EQUALS) {
+                    int day = condition.getValue() instanceof String
+                            ? DateRangeIndex.toEpochDay((String) condition.getValue()) : DateRangeIndex.NULL_EPOCH_DAY;
+                    return day == DateRangeIndex.NULL_EPOCH_DAY ? null : new int[] {day, day};
+                }
+                if (condition.getOperator() != QueryCondition.Operator.RANGE) {
+                    return null;
+                }
+                int from = condition.getMin() == null ? Integer.MIN_VALUE + 1 : toDay(condition.getMin());
+                int to = condition.getMax() == null ? Integer.MAX_VALUE : toDay(condition.getMax());
+                return from == DateRangeIndex.NULL_EPOCH_DAY || to == DateRangeIndex.NULL_EPOCH_DAY
+                        ? null : new int[] {from, to};
+            }
+
+            private int toDay(Comparable<?> bound) {
+                return bound instanceof String ? DateRangeIndex.toEpochDay((String) bound) : DateRangeIndex.NULL_EPOCH_DAY;
+            }
+        };
+    }
+
+    // Serves RANGE and EQUALS on numeric fields from a SortedNumericIndex
+    public static Index numericRangeIndex(SortedNumericIndex index) {
+        return new Index() {
+            @Override
+            public boolean supports(QueryCondition condition) {
+                return toBounds(condition) != null;
+            }
+
+            @Override
+            public int estimate(QueryCondition condition) {
+                double[] bounds = toBounds(condition);
+                return index.count(bounds[0], bounds[1]);
+            }
+
+            @Override
+            public Collection<String> lookup(QueryCondition condition) {
+                double[] bounds = toBounds(condition);
+                return index.getIds(bounds[0], bounds[1]);
+            }
+
+            private double[] toBounds(QueryCondition condition) {
+                if (condition.getOperator() == QueryCondition.Operator.EQUALS) {
+                    return condition.getValue() instanceof Number
+                            ? new double[] {toDouble(condition.getValue()), toDouble(condition.getValue())} : null;
+                }
+                if (condition.getOperator() != QueryCondition.Operator.RANGE) {
+                    return null;
+                }
+                Object min = condition.getMin();
+                Object max = condition.getMax();
+                if ((min != null && !(min instanceof Number)) || (max != null && !(max instanceof Number))) {
+                    return null;
+                }
+                return new double[] {min == null ? Double.NEGATIVE_INFINITY : toDouble(min),
+                                     max == null ? Double.POSITIVE_INFINITY : toDouble(max)};
+            }
+
+            private double toDouble(Object value) {
+                return ((Number) value).doubleValue();
+            }
+        };
+    }
+
+    // Serves CONTAINS from a TrigramIndex; the trigram index may cover several fields, so its hits are candidates only
+    public static Index substringIndex(TrigramIndex index) {
+        return new Index() {
+            @Override
+            public boolean supports(QueryCondition condition) {
+                return condition.getOperator() == QueryCondition.Operator.CONTAINS
+                        && condition.getValue() != null
+                        && ((String) condition.getValue()).length() >= TrigramIndex.MIN_QUERY_LENGTH;
+            }
+
+            @Override
+            public int estimate(QueryCondition condition) {
+                return index.estimate((String) condition.getValue());
+            }
+
+            @Override
+            public Collection<String> lookup(QueryCondition condition) {
+                return index.search((String) condition.getValue());
+            }
+        };
+    }
+}
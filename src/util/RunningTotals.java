@@ -0,0 +1,226 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+// Counts and revenue sums kept current as records change, so dashboard figures cost O(1) instead of a full scan.
+// Every record is counted under its key in each dimension (status, package, method); only records passing the
+// revenue filter add their amount, held in long minor units so repeated updates never drift.
+// Each id keeps a snapshot of what it contributed, because entities are mutated in place before they are re-put
+public class RunningTotals<T> {
+    private final ToDoubleFunction<T> amount;
+    private final Predicate<T> revenue;
+    private final Map<String, Function<T, ?>> dimensions;
+    // dimension -> key -> {records, revenue records, revenue in minor units}
+    private final Map<String, Map<Object, long[]>> totals;
+    private final Map<String, Contribution> contributions;
+    private long revenueMinorUnits;
+    private long revenueRecords;
+    // Set in verification mode: every read is cross-checked against a fresh scan first
+    private Supplier<? extends Collection<T>> verificationSource;
+    private Function<T, String> verificationIds;
+
+    private static class Contribution {
+        final Object[] keys;
+        final boolean revenue;
+        final long minorUnits;
+
+        Contribution(Object[] keys, boolean revenue, long minorUnits) {
+            this.keys = keys;
+            this.revenue = revenue;
+            this.minorUnits = minorUnits;
+        }
+    }
+
+    public RunningTotals(ToDoubleFunction<T> amount, Predicate<T> revenue) {
+        this.amount = amount;
+        this.revenue = revenue;
+        this.dimensions = new LinkedHashMap<>();
+        this.totals = new HashMap<>();
+        this.contributions = new HashMap<>();
+    }
+
+    // Dimensions must be registered before anything is added
+    public RunningTotals<T> addDimension(String name, Function<T, ?> key) {
+        dimensions.put(name, key);
+        totals.put(name, new HashMap<>());
+        return this;
+    }
+
+    public synchronized void put(String id, T entity) {
+        Object[] keys = new Object[dimensions.size()];
+        int d = 0;
+        for (Function<T, ?> key : dimensions.values()) {
+            keys[d++] = key.apply(entity);
+        }
+        boolean counted = revenue.test(entity);
+        Contribution current = new Contribution(keys, counted,
+                counted ? ColumnarFile.toMinorUnits(amount.applyAsDouble(entity)) : 0L);
+        Contribution previous = contributions.put(id, current);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+        apply(current, 1);
+    }
+
+    public synchronized void remove(String id) {
+        Contribution previous = contributions.remove(id);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+    }
+
+    public synchronized void clear() {
+        contributions.clear();
+        for (Map<Object, long[]> byKey : totals.values()) {
+            byKey.clear();
+        }
+        revenueMinorUnits = 0;
+        revenueRecords = 0;
+    }
+
+    // Records counted under the key, whatever their revenue state
+    public synchronized int count(String dimension, Object key) {
+        verifyIfEnabled();
+        long[] total = totals.get(dimension).get(key);
+        return total == null ? 0 : (int) total[0];
+    }
+
+    public synchronized int count() {
+        verifyIfEnabled();
+        return contributions.size();
+    }
+
+    public synchronized double revenue(String dimension, Object key) {
+        verifyIfEnabled();
+        long[] total = totals.get(dimension).get(key);
+        return total == null ? 0.0 : ColumnarFile.fromMinorUnits(total[2]);
+    }
+
+    public synchronized double revenue() {
+        verifyIfEnabled();
+        return ColumnarFile.fromMinorUnits(revenueMinorUnits);
+    }
+
+    public synchronized int revenueCount() {
+        verifyIfEnabled();
+        return (int) revenueRecords;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <K> Map<K, Integer> counts(String dimension) {
+        verifyIfEnabled();
+        Map<K, Integer> counts = new HashMap<>();
+        for (Map.Entry<Object, long[]> entry : totals.get(dimension).entrySet()) {
+            counts.put((K) entry.getKey(), (int) entry.getValue()[0]);
+        }
+        return counts;
+    }
+
+    // Keys with at least one revenue record
+    @SuppressWarnings("unchecked")
+    public synchronized <K> Map<K, Double> revenues(String dimension) {
+        verifyIfEnabled();
+        Map<K, Double> revenues = new HashMap<>();
+        for (Map.Entry<Object, long[]> entry : totals.get(dimension).entrySet()) {
+            if (entry.getValue()[1] > 0) {
+                revenues.put((K) entry.getKey(), ColumnarFile.fromMinorUnits(entry.getValue()[2]));
+            }
+        }
+        return revenues;
+    }
+
+    // Recomputes every total from the records and describes each difference; empty when the running totals agree
+    public synchronized List<String> verify(Collection<T> records, Function<T, String> ids) {
+        RunningTotals<T> expected = new RunningTotals<>(amount, revenue);
+        for (Map.Entry<String, Function<T, ?>> dimension : dimensions.entrySet()) {
+            expected.addDimension(dimension.getKey(), dimension.getValue());
+        }
+        for (T record : records) {
+            expected.put(ids.apply(record), record);
+        }
+        List<String> mismatches = new ArrayList<>();
+        if (expected.contributions.size() != contributions.size()) {
+            mismatches.add("record count " + contributions.size() + " != " + expected.contributions.size());
+        }
+        if (expected.revenueMinorUnits != revenueMinorUnits || expected.revenueRecords != revenueRecords) {
+            mismatches.add("revenue " + revenueMinorUnits + "/" + revenueRecords
+                    + " != " + expected.revenueMinorUnits + "/" + expected.revenueRecords);
+        }
+        for (String dimension : dimensions.keySet()) {
+            Map<Object, long[]> actual = totals.get(dimension);
+            Map<Object, long[]> wanted = expected.totals.get(dimension);
+            for (Object key : union(actual.keySet(), wanted.keySet())) {
+                long[] a = actual.getOrDefault(key, new long[3]);
+                long[] w = wanted.getOrDefault(key, new long[3]);
+                if (a[0] != w[0] || a[1] != w[1] || a[2] != w[2]) {
+                    mismatches.add(dimension + "=" + key + " " + a[0] + "/" + a[1] + "/" + a[2]
+                            + " != " + w[0] + "/" + w[1] + "/" + w[2]);
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    // Verification mode for debugging: each read first cross-checks against a full scan of the source,
+    // logs any difference and rebuilds from the scan. Pass null to switch it off
+    public synchronized void setVerificationSource(Supplier<? extends Collection<T>> source, Function<T, String> ids) {
+        this.verificationSource = source;
+        this.verificationIds = ids;
+    }
+
+    private void verifyIfEnabled() {
+        if (verificationSource == null) {
+            return;
+        }
+        Collection<T> records = verificationSource.get();
+        List<String> mismatches = verify(records, verificationIds);
+        if (!mismatches.isEmpty()) {
+            for (String mismatch : mismatches) {
+                Logger.error("Running totals out of step: " + mismatch);
+            }
+            clear();
+            for (T record : records) {
+                put(verificationIds.apply(record), record);
+            }
+        }
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        int d = 0;
+        for (String dimension : dimensions.keySet()) {
+            Map<Object, long[]> byKey = totals.get(dimension);
+            long[] total = byKey.computeIfAbsent(contribution.keys[d++], key -> new long[3]);
+            total[0] += sign;
+            if (contribution.revenue) {
+                total[1] += sign;
+                total[2] += sign * contribution.minorUnits;
+            }
+            if (total[0] == 0) {
+                byKey.remove(contribution.keys[d - 1]);
+            }
+        }
+        if (contribution.revenue) {
+            revenueRecords += sign;
+            revenueMinorUnits += sign * contribution.minorUnits;
+        }
+    }
+
+    private static List<Object> union(Collection<Object> a, Collection<Object> b) {
+        List<Object> keys = new ArrayList<>(a);
+        for (Object key : b) {
+            if (!a.contains(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
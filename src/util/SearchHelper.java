@@ -2,20 +2,9 @@ package util;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.function.Predicate;
 
 public class SearchHelper {
     
-    public static <T> List<T> filter(List<T> list, Predicate<T> predicate) {
-        List<T> result = new ArrayList<>();
-        for (T item : list) {
-            if (predicate.test(item)) {
-                result.add(item);
-            }
-        }
-        return result;
-    }
-
     public static boolean containsIgnoreCase(String text, String keyword) {
         return text != null && keyword != null && 
                text.toLowerCase().contains(keyword.toLowerCase());
@@ -0,0 +1,83 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Maps an attribute value to the ids of the records carrying it, so lookups cost O(result) instead of a full scan
+public class SecondaryIndex<K> {
+    private final Map<K, Set<String>> postings;
+
+    public SecondaryIndex() {
+        this(new HashMap<>());
+    }
+
+    // Lets callers pick the backing map, e.g. an EnumMap for enum keys
+    public SecondaryIndex(Map<K, Set<String>> backingMap) {
+        this.postings = backingMap;
+    }
+
+    public synchronized void add(K key, String id) {
+        if (key != null) {
+            postings.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    public synchronized void remove(K key, String id) {
+        if (key == null) {
+            return;
+        }
+        Set<String> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    // Moves an id between keys; a no-op when the key is unchanged
+    public synchronized void update(K oldKey, K newKey, String id) {
+        if (oldKey == null ? newKey == null : oldKey.equals(newKey)) {
+            return;
+        }
+        remove(oldKey, id);
+        add(newKey, id);
+    }
+
+    public synchronized Set<String> get(K key) {
+        Set<String> ids = postings.get(key);
+        return ids == null ? Collections.emptySet() : new LinkedHashSet<>(ids);
+    }
+
+    public synchronized int count(K key) {
+        Set<String> ids = postings.get(key);
+        return ids == null ? 0 : ids.size();
+    }
+
+    public synchronized Set<K> keys() {
+        return new LinkedHashSet<>(postings.keySet());
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+    }
+
+    // Resolves the ids under a key through the owning store, skipping ids that have no record
+    public <V> List<V> resolve(K key, Function<String, V> lookup) {
+        Set<String> ids = get(key);
+        List<V> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            V value = lookup.apply(id);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+}
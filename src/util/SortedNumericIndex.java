@@ -0,0 +1,137 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Ids kept in ascending order of a numeric attribute, in a primitive value array with a parallel id array.
+// Changes only mark the arrays stale; the next read re-sorts them once, after which range queries cost
+// O(log N + k) and the lowest/highest ids are O(1)
+public class SortedNumericIndex {
+    private final Map<String, Double> values;
+    private double[] sortedValues;
+    private String[] sortedIds;
+    private boolean stale;
+
+    public SortedNumericIndex() {
+        this.values = new HashMap<>();
+        this.sortedValues = new double[0];
+        this.sortedIds = new String[0];
+    }
+
+    public synchronized void put(String id, double value) {
+        Double previous = values.put(id, value);
+        if (previous == null || previous != value) {
+            stale = true;
+        }
+    }
+
+    public synchronized void remove(String id) {
+        if (values.remove(id) != null) {
+            stale = true;
+        }
+    }
+
+    public synchronized void clear() {
+        values.clear();
+        stale = true;
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    // Ids with min <= value <= max, lowest value first
+    public synchronized List<String> getIds(double min, double max) {
+        ensureSorted();
+        int from = lowerBound(min);
+        int to = upperBound(max);
+        List<String> ids = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            ids.add(sortedIds[i]);
+        }
+        return ids;
+    }
+
+    public synchronized int count(double min, double max) {
+        ensureSorted();
+        return Math.max(0, upperBound(max) - lowerBound(min));
+    }
+
+    // Null when the index is empty
+    public synchronized String lowest() {
+        ensureSorted();
+        return sortedIds.length == 0 ? null : sortedIds[0];
+    }
+
+    public synchronized String highest() {
+        ensureSorted();
+        return sortedIds.length == 0 ? null : sortedIds[sortedIds.length - 1];
+    }
+
+    // Up to k ids with the lowest values, lowest first
+    public synchronized List<String> lowest(int k) {
+        ensureSorted();
+        int count = Math.max(0, Math.min(k, sortedIds.length));
+        return new ArrayList<>(Arrays.asList(sortedIds).subList(0, count));
+    }
+
+    // Up to k ids with the highest values, highest first
+    public synchronized List<String> highest(int k) {
+        ensureSorted();
+        int count = Math.max(0, Math.min(k, sortedIds.length));
+        List<String> ids = new ArrayList<>(count);
+        for (int i = sortedIds.length - 1; i >= sortedIds.length - count; i--) {
+            ids.add(sortedIds[i]);
+        }
+        return ids;
+    }
+
+    // First position whose value is >= min
+    private int lowerBound(double min) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedValues[mid] < min) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First position whose value is > max
+    private int upperBound(double max) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedValues[mid] <= max) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Equal values are ordered by id so results are stable across rebuilds
+    private void ensureSorted() {
+        if (!stale) {
+            return;
+        }
+        List<Map.Entry<String, Double>> entries = new ArrayList<>(values.entrySet());
+        entries.sort(Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        sortedValues = new double[entries.size()];
+        sortedIds = new String[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            sortedValues[i] = entries.get(i).getValue();
+            sortedIds[i] = entries.get(i).getKey();
+        }
+        stale = false;
+    }
+}
@@ -0,0 +1,221 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Uniform latitude/longitude grid: each point lives in one cell, so radius and nearest-neighbour queries
+// only visit the cells around the query point. Distances are great-circle kilometres
+public class SpatialIndex {
+    public static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double DEFAULT_CELL_DEGREES = 0.5;
+
+    private final double cellDegrees;
+    private final int columns;
+    private final int rows;
+    private final Map<Long, Set<String>> cells;
+    private final Map<String, double[]> points;
+
+    public SpatialIndex() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    public SpatialIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.columns = (int) Math.ceil(360 / cellDegrees);
+        this.rows = (int) Math.ceil(180 / cellDegrees);
+        this.cells = new HashMap<>();
+        this.points = new HashMap<>();
+    }
+
+    public synchronized void put(String id, double latitude, double longitude) {
+        double[] previous = points.get(id);
+        if (previous != null && previous[0] == latitude && previous[1] == longitude) {
+            return;
+        }
+        remove(id);
+        points.put(id, new double[] {latitude, longitude});
+        cells.computeIfAbsent(cellKey(row(latitude), column(longitude)), key -> new LinkedHashSet<>()).add(id);
+    }
+
+    public synchronized void remove(String id) {
+        double[] point = points.remove(id);
+        if (point == null) {
+            return;
+        }
+        long key = cellKey(row(point[0]), column(point[1]));
+        Set<String> ids = cells.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        cells.clear();
+        points.clear();
+    }
+
+    public synchronized int size() {
+        return points.size();
+    }
+
+    // Distance from the indexed point to the given coordinates, or -1 when the id is not indexed
+    public synchronized double distanceKm(String id, double latitude, double longitude) {
+        double[] point = points.get(id);
+        return point == null ? -1 : distanceKm(point[0], point[1], latitude, longitude);
+    }
+
+    // Ids within radiusKm of the point, nearest first
+    public synchronized List<String> withinRadius(double latitude, double longitude, double radiusKm) {
+        List<Candidate> found = new ArrayList<>();
+        if (radiusKm < 0) {
+            return new ArrayList<>();
+        }
+        double latitudeSpan = Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+        int fromRow = row(Math.max(-90, latitude - latitudeSpan));
+        int toRow = row(Math.min(90, latitude + latitudeSpan));
+        // Longitude degrees shrink towards the poles; near them every column is in range
+        double widestLatitude = Math.min(90, Math.abs(latitude) + latitudeSpan);
+        double longitudeSpan = widestLatitude >= 89.999 ? 360 : latitudeSpan / Math.cos(Math.toRadians(widestLatitude));
+        int columnSpan = longitudeSpan >= 180 ? columns : (int) Math.ceil(longitudeSpan / cellDegrees) + 1;
+        int centerColumn = column(longitude);
+
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int offset = -Math.min(columnSpan, columns / 2); offset <= Math.min(columnSpan, (columns - 1) / 2); offset++) {
+                Set<String> ids = cells.get(cellKey(row, Math.floorMod(centerColumn + offset, columns)));
+                if (ids == null) {
+                    continue;
+                }
+                for (String id : ids) {
+                    double[] point = points.get(id);
+                    double distance = distanceKm(latitude, longitude, point[0], point[1]);
+                    if (distance <= radiusKm) {
+                        found.add(new Candidate(id, distance));
+                    }
+                }
+            }
+        }
+        return sortedIds(found, found.size());
+    }
+
+    // Up to count ids closest to the point, nearest first; equal distances are ordered by id
+    public synchronized List<String> nearest(double latitude, double longitude, int count) {
+        if (count <= 0 || points.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (count >= points.size()) {
+            return sortedIds(allCandidates(latitude, longitude), count);
+        }
+
+        // Rings of cells around the query cell; stop once nothing outside the rings can beat the current k-th
+        int centerRow = row(latitude);
+        int centerColumn = column(longitude);
+        List<Candidate> found = new ArrayList<>();
+        int visitedCells = 0;
+        for (int ring = 0; ; ring++) {
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= rows) {
+                    continue;
+                }
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int offset = -ring; offset <= ring; offset += step) {
+                    visitedCells++;
+                    Set<String> ids = cells.get(cellKey(row, Math.floorMod(centerColumn + offset, columns)));
+                    if (ids == null) {
+                        continue;
+                    }
+                    for (String id : ids) {
+                        double[] point = points.get(id);
+                        found.add(new Candidate(id, distanceKm(latitude, longitude, point[0], point[1])));
+                    }
+                }
+            }
+            if (found.size() >= count && kthDistance(found, count) < outsideRingBoundKm(latitude, ring)) {
+                return sortedIds(found, count);
+            }
+            // Sparse data: once the rings cost more than visiting every occupied cell, rank everything instead.
+            // The same applies before the next ring would wrap around onto columns already visited
+            if (visitedCells > cells.size() * 4 || 2 * ring + 3 > columns) {
+                return sortedIds(allCandidates(latitude, longitude), count);
+            }
+        }
+    }
+
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+        double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        double haversine = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(haversine)));
+    }
+
+    private static class Candidate {
+        final String id;
+        final double distance;
+
+        Candidate(String id, double distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+
+    // Lower bound on the distance to any point beyond the given ring: such a point is at least ring cells
+    // away in latitude, or in longitude at a latitude no higher than the query's plus ring cells
+    private double outsideRingBoundKm(double latitude, int ring) {
+        double span = Math.toRadians(ring * cellDegrees);
+        double latitudeBound = EARTH_RADIUS_KM * span;
+        double highestLatitude = Math.min(Math.PI / 2, Math.toRadians(Math.abs(latitude)) + span);
+        double longitudeBound = 2 * EARTH_RADIUS_KM
+                * Math.asin(Math.cos(highestLatitude) * Math.sin(Math.min(Math.PI, span) / 2));
+        return Math.min(latitudeBound, longitudeBound);
+    }
+
+    private static double kthDistance(List<Candidate> candidates, int k) {
+        double[] distances = new double[candidates.size()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = candidates.get(i).distance;
+        }
+        Arrays.sort(distances);
+        return distances[k - 1];
+    }
+
+    private List<Candidate> allCandidates(double latitude, double longitude) {
+        List<Candidate> all = new ArrayList<>(points.size());
+        for (Map.Entry<String, double[]> entry : points.entrySet()) {
+            all.add(new Candidate(entry.getKey(), distanceKm(latitude, longitude, entry.getValue()[0], entry.getValue()[1])));
+        }
+        return all;
+    }
+
+    private static List<String> sortedIds(List<Candidate> candidates, int limit) {
+        Collections.sort(candidates, (a, b) -> a.distance != b.distance
+                ? Double.compare(a.distance, b.distance) : a.id.compareTo(b.id));
+        List<String> ids = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (int i = 0; i < candidates.size() && i < limit; i++) {
+            ids.add(candidates.get(i).id);
+        }
+        return ids;
+    }
+
+    private int row(double latitude) {
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((latitude + 90) / cellDegrees)));
+    }
+
+    private int column(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / cellDegrees), columns);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | column;
+    }
+}
@@ -0,0 +1,239 @@
+package util;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Record counts and amounts rolled up into time buckets: one slot per epoch day in primitive arrays, plus month and
+// year levels updated in the same step, so a daily, monthly or yearly series is one pass over its buckets and a
+// period total is a handful of bucket reads, whatever the number of records.
+// Amounts are in long minor units. Each id keeps the day and amount it contributed, because entities are mutated
+// in place before they are re-put; ids whose date does not parse are only tracked as undated.
+// The levels are dense, so only dates within MIN_YEAR..MAX_YEAR go into them. A stray "0202-05-01" or
+// "9999-01-01" is kept per day in a sparse map instead: it still counts towards period totals but is left out
+// of the series, like an undated record
+public class TimeBuckets {
+    private static final int MIN_CAPACITY = 64;
+    private static final int MIN_YEAR = 1900;
+    private static final int MAX_YEAR = 2199;
+    private static final int MIN_DAY = (int) LocalDate.of(MIN_YEAR, 1, 1).toEpochDay();
+    private static final int MAX_DAY = (int) LocalDate.of(MAX_YEAR, 12, 31).toEpochDay();
+
+    private final Map<String, Contribution> contributions;
+    private final Set<String> undated;
+    private final Level days;
+    // Slot y * 12 + (m - 1) for month m of year y
+    private final Level months;
+    private final Level years;
+    // Count and amount per epoch day outside MIN_YEAR..MAX_YEAR
+    private final NavigableMap<Integer, long[]> outliers;
+
+    private static class Contribution {
+        final int epochDay;
+        final long minorUnits;
+
+        Contribution(int epochDay, long minorUnits) {
+            this.epochDay = epochDay;
+            this.minorUnits = minorUnits;
+        }
+    }
+
+    // Counts and amounts over a window of consecutive slots that grows, with headroom, to cover any slot added
+    private static class Level {
+        int base;
+        int[] counts = new int[0];
+        long[] amounts = new long[0];
+
+        void add(int slot, int count, long minorUnits) {
+            if (slot < base || slot >= base + counts.length) {
+                grow(slot);
+            }
+            counts[slot - base] += count;
+            amounts[slot - base] += minorUnits;
+        }
+
+        int count(int slot) {
+            return slot < base || slot >= base + counts.length ? 0 : counts[slot - base];
+        }
+
+        long amount(int slot) {
+            return slot < base || slot >= base + amounts.length ? 0L : amounts[slot - base];
+        }
+
+        private void grow(int slot) {
+            if (counts.length == 0) {
+                base = slot - MIN_CAPACITY / 2;
+                counts = new int[MIN_CAPACITY];
+                amounts = new long[MIN_CAPACITY];
+                return;
+            }
+            int low = Math.min(base, slot);
+            int high = Math.max(base + counts.length - 1, slot);
+            int span = high - low + 1;
+            int capacity = Math.max(counts.length * 2, Integer.highestOneBit(span) << 1);
+            int newBase = low - (capacity - span) / 2;
+            int[] newCounts = new int[capacity];
+            long[] newAmounts = new long[capacity];
+            System.arraycopy(counts, 0, newCounts, base - newBase, counts.length);
+            System.arraycopy(amounts, 0, newAmounts, base - newBase, amounts.length);
+            base = newBase;
+            counts = newCounts;
+            amounts = newAmounts;
+        }
+    }
+
+    public TimeBuckets() {
+        this.contributions = new HashMap<>();
+        this.undated = new HashSet<>();
+        this.days = new Level();
+        this.months = new Level();
+        this.years = new Level();
+        this.outliers = new TreeMap<>();
+    }
+
+    // Dates may carry a time part ("yyyy-MM-dd HH:mm:ss"); only the day counts
+    public synchronized void put(String id, String date, double amount) {
+        remove(id);
+        int epochDay = DateRangeIndex.toEpochDay(date);
+        if (epochDay == DateRangeIndex.NULL_EPOCH_DAY) {
+            undated.add(id);
+            return;
+        }
+        Contribution contribution = new Contribution(epochDay, ColumnarFile.toMinorUnits(amount));
+        contributions.put(id, contribution);
+        apply(contribution, 1);
+    }
+
+    public synchronized void remove(String id) {
+        Contribution previous = contributions.remove(id);
+        if (previous != null) {
+            apply(previous, -1);
+        } else {
+            undated.remove(id);
+        }
+    }
+
+    public synchronized void clear() {
+        contributions.clear();
+        undated.clear();
+        outliers.clear();
+        for (Level level : new Level[] {days, months, years}) {
+            Arrays.fill(level.counts, 0);
+            Arrays.fill(level.amounts, 0L);
+        }
+    }
+
+    // Records left out of the daily, monthly and yearly series: those whose date does not parse
+    // and those dated outside MIN_YEAR..MAX_YEAR
+    public synchronized int undatedCount() {
+        int count = undated.size();
+        for (long[] outlier : outliers.values()) {
+            count += (int) outlier[0];
+        }
+        return count;
+    }
+
+    // Total over the inclusive day range, taken from whole years and months where they fit and single days elsewhere
+    public synchronized double amount(int fromDay, int toDay) {
+        if (fromDay > toDay) {
+            return 0.0;
+        }
+        long total = 0;
+        for (long[] outlier : outliers.subMap(fromDay, true, toDay, true).values()) {
+            total += outlier[1];
+        }
+        int lastDay = Math.min(toDay, MAX_DAY);
+        int day = Math.max(fromDay, MIN_DAY);
+        while (day <= lastDay) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            int yearEnd = (int) date.withDayOfYear(date.lengthOfYear()).toEpochDay();
+            int monthEnd = (int) date.withDayOfMonth(date.lengthOfMonth()).toEpochDay();
+            if (date.getDayOfYear() == 1 && yearEnd <= lastDay) {
+                total += years.amount(date.getYear());
+                day = yearEnd + 1;
+            } else if (date.getDayOfMonth() == 1 && monthEnd <= lastDay) {
+                total += months.amount(monthSlot(date.getYear(), date.getMonthValue()));
+                day = monthEnd + 1;
+            } else {
+                total += days.amount(day);
+                day++;
+            }
+        }
+        return ColumnarFile.fromMinorUnits(total);
+    }
+
+    // Amount per "yyyy-MM-dd" day holding at least one record, in date order
+    public synchronized Map<String, Double> dailyAmounts() {
+        Map<String, Double> series = new LinkedHashMap<>();
+        for (int i = 0; i < days.counts.length; i++) {
+            if (days.counts[i] > 0) {
+                series.put(LocalDate.ofEpochDay(days.base + i).toString(), ColumnarFile.fromMinorUnits(days.amounts[i]));
+            }
+        }
+        return series;
+    }
+
+    // Amount per "yyyy-MM" month holding at least one record, in date order
+    public synchronized Map<String, Double> monthlyAmounts() {
+        Map<String, Double> series = new LinkedHashMap<>();
+        for (int i = 0; i < months.counts.length; i++) {
+            if (months.counts[i] > 0) {
+                series.put(monthKey(months.base + i), ColumnarFile.fromMinorUnits(months.amounts[i]));
+            }
+        }
+        return series;
+    }
+
+    public synchronized Map<String, Integer> monthlyCounts() {
+        Map<String, Integer> series = new LinkedHashMap<>();
+        for (int i = 0; i < months.counts.length; i++) {
+            if (months.counts[i] > 0) {
+                series.put(monthKey(months.base + i), months.counts[i]);
+            }
+        }
+        return series;
+    }
+
+    // Amount per "yyyy" year holding at least one record, in date order
+    public synchronized Map<String, Double> yearlyAmounts() {
+        Map<String, Double> series = new LinkedHashMap<>();
+        for (int i = 0; i < years.counts.length; i++) {
+            if (years.counts[i] > 0) {
+                series.put(String.valueOf(years.base + i), ColumnarFile.fromMinorUnits(years.amounts[i]));
+            }
+        }
+        return series;
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        long minorUnits = sign * contribution.minorUnits;
+        if (contribution.epochDay < MIN_DAY || contribution.epochDay > MAX_DAY) {
+            long[] outlier = outliers.computeIfAbsent(contribution.epochDay, day -> new long[2]);
+            outlier[0] += sign;
+            outlier[1] += minorUnits;
+            if (outlier[0] == 0) {
+                outliers.remove(contribution.epochDay);
+            }
+            return;
+        }
+        LocalDate date = LocalDate.ofEpochDay(contribution.epochDay);
+        days.add(contribution.epochDay, sign, minorUnits);
+        months.add(monthSlot(date.getYear(), date.getMonthValue()), sign, minorUnits);
+        years.add(date.getYear(), sign, minorUnits);
+    }
+
+    private static int monthSlot(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    private static String monthKey(int slot) {
+        return YearMonth.of(Math.floorDiv(slot, 12), Math.floorMod(slot, 12) + 1).toString();
+    }
+}
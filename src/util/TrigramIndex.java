@@ -0,0 +1,191 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Case-insensitive substring index: every three-character window of the indexed fields points at its records.
+// A query only verifies the records under its rarest trigram, so results equal a full contains() scan
+public class TrigramIndex {
+    public static final int MIN_QUERY_LENGTH = 3;
+
+    private final Map<Long, Posting> postings;
+    private final Map<String, Integer> documentNumbers;
+    private String[] documentIds;
+    private String[][] documentFields;
+    private int[] freeNumbers;
+    private int freeCount;
+    private int highestNumber;
+
+    private static class Posting {
+        int[] documents = new int[4];
+        int size;
+
+        void add(int document) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+
+        void remove(int document) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (documents[i] == document) {
+                    documents[i] = documents[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    public TrigramIndex() {
+        this.postings = new HashMap<>();
+        this.documentNumbers = new HashMap<>();
+        this.documentIds = new String[16];
+        this.documentFields = new String[16][];
+        this.freeNumbers = new int[16];
+    }
+
+    // Null fields are indexed as empty; re-putting unchanged fields is a no-op
+    public synchronized void put(String id, String... fields) {
+        String[] folded = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            folded[i] = fields[i] == null ? "" : fields[i].toLowerCase(Locale.ROOT);
+        }
+        Integer existing = documentNumbers.get(id);
+        if (existing != null) {
+            if (Arrays.equals(documentFields[existing], folded)) {
+                return;
+            }
+            remove(id);
+        }
+
+        int document = allocateNumber();
+        documentNumbers.put(id, document);
+        documentIds[document] = id;
+        documentFields[document] = folded;
+        for (long trigram : distinctTrigrams(folded)) {
+            postings.computeIfAbsent(trigram, key -> new Posting()).add(document);
+        }
+    }
+
+    public synchronized void remove(String id) {
+        Integer document = documentNumbers.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (long trigram : distinctTrigrams(documentFields[document])) {
+            Posting posting = postings.get(trigram);
+            if (posting != null) {
+                posting.remove(document);
+                if (posting.size == 0) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+        documentIds[document] = null;
+        documentFields[document] = null;
+        if (freeCount == freeNumbers.length) {
+            freeNumbers = Arrays.copyOf(freeNumbers, freeCount * 2);
+        }
+        freeNumbers[freeCount++] = document;
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        documentNumbers.clear();
+        Arrays.fill(documentIds, null);
+        Arrays.fill(documentFields, null);
+        freeCount = 0;
+        highestNumber = 0;
+    }
+
+    public synchronized int size() {
+        return documentNumbers.size();
+    }
+
+    // Upper bound on the number of hits: the size of the query's rarest trigram posting
+    public synchronized int estimate(String query) {
+        Posting rarest = rarestPosting(query.toLowerCase(Locale.ROOT));
+        return rarest == null ? 0 : rarest.size;
+    }
+
+    // Ids whose fields contain the query, ignoring case; null when the query is too short to use the index
+    public synchronized List<String> search(String query) {
+        if (query == null || query.length() < MIN_QUERY_LENGTH) {
+            return null;
+        }
+        String folded = query.toLowerCase(Locale.ROOT);
+        Posting rarest = rarestPosting(folded);
+        List<String> ids = new ArrayList<>();
+        if (rarest == null) {
+            return ids;
+        }
+        for (int i = 0; i < rarest.size; i++) {
+            int document = rarest.documents[i];
+            for (String field : documentFields[document]) {
+                if (field.contains(folded)) {
+                    ids.add(documentIds[document]);
+                    break;
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Null when some trigram of the query does not occur at all
+    private Posting rarestPosting(String folded) {
+        Posting rarest = null;
+        for (int i = 0; i + MIN_QUERY_LENGTH <= folded.length(); i++) {
+            Posting posting = postings.get(trigram(folded, i));
+            if (posting == null) {
+                return null;
+            }
+            if (rarest == null || posting.size < rarest.size) {
+                rarest = posting;
+            }
+        }
+        return rarest;
+    }
+
+    private static long[] distinctTrigrams(String[] fields) {
+        int count = 0;
+        for (String field : fields) {
+            count += Math.max(0, field.length() - MIN_QUERY_LENGTH + 1);
+        }
+        long[] trigrams = new long[count];
+        int next = 0;
+        for (String field : fields) {
+            for (int i = 0; i + MIN_QUERY_LENGTH <= field.length(); i++) {
+                trigrams[next++] = trigram(field, i);
+            }
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    // Three UTF-16 units packed into one key
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private int allocateNumber() {
+        if (freeCount > 0) {
+            return freeNumbers[--freeCount];
+        }
+        if (highestNumber == documentIds.length) {
+            documentIds = Arrays.copyOf(documentIds, highestNumber * 2);
+            documentFields = Arrays.copyOf(documentFields, highestNumber * 2);
+        }
+        return highestNumber++;
+    }
+}
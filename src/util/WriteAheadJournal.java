@@ -0,0 +1,102 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class WriteAheadJournal {
+    private static final String PUT = "PUT";
+    private static final String DELETE = "DEL";
+    private static final String SEPARATOR = "|";
+
+    private final String journalFile;
+    private final ConcurrentLinkedDeque<String> pendingRecords;
+    private final AtomicInteger recordCount;
+
+    public WriteAheadJournal(String journalFile) {
+        this.journalFile = journalFile;
+        this.pendingRecords = new ConcurrentLinkedDeque<>();
+        this.recordCount = new AtomicInteger();
+    }
+
+    // Record format is the full entity line so replay never depends on earlier journal entries.
+    // Appends are queued and reach the file on the next flush()
+    public void appendPut(String record) {
+        pendingRecords.add(PUT + SEPARATOR + record);
+        recordCount.incrementAndGet();
+    }
+
+    public void appendDelete(String key) {
+        pendingRecords.add(DELETE + SEPARATOR + key);
+        recordCount.incrementAndGet();
+    }
+
+    // Writes every queued record with a single append. A failed batch goes back to the head of the queue, ahead of
+    // anything appended meanwhile, so the next flush retries it in order; records a partial append already wrote
+    // are then written twice, which replay tolerates because each record carries the full entity state
+    public synchronized boolean flush() {
+        List<String> batch = drainPending();
+        if (batch.isEmpty() || FileHandler.appendAllToFile(journalFile, batch)) {
+            return true;
+        }
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            pendingRecords.addFirst(batch.get(i));
+        }
+        Logger.error("Failed to append " + batch.size() + " journal records to " + journalFile + "; kept for retry");
+        return false;
+    }
+
+    // Applies the journal tail in order; the key of a PUT is the first field of its record
+    public void replay(BiConsumer<String, String> onPut, Consumer<String> onDelete) {
+        List<String> lines = FileHandler.readFromFile(journalFile);
+        int replayed = 0;
+        for (String line : lines) {
+            int separator = line.indexOf(SEPARATOR);
+            if (separator < 0) {
+                Logger.warning("Skipping malformed journal entry in " + journalFile);
+                continue;
+            }
+
+            String operation = line.substring(0, separator);
+            String payload = line.substring(separator + 1);
+            if (PUT.equals(operation)) {
+                int keyEnd = payload.indexOf(SEPARATOR);
+                String key = keyEnd < 0 ? payload : payload.substring(0, keyEnd);
+                onPut.accept(key, payload);
+            } else if (DELETE.equals(operation)) {
+                onDelete.accept(payload);
+            } else {
+                Logger.warning("Skipping unknown journal operation '" + operation + "' in " + journalFile);
+                continue;
+            }
+            replayed++;
+        }
+        recordCount.set(replayed + pendingRecords.size());
+    }
+
+    // Empties the journal file; records queued after the snapshot was taken stay pending
+    public void truncate() {
+        FileHandler.clearFile(journalFile);
+        recordCount.set(pendingRecords.size());
+    }
+
+    public int getRecordCount() {
+        return recordCount.get();
+    }
+
+    public String getJournalFile() {
+        return journalFile;
+    }
+
+    private List<String> drainPending() {
+        List<String> batch = new ArrayList<>();
+        String record;
+        while ((record = pendingRecords.poll()) != null) {
+            batch.add(record);
+        }
+        return batch;
+    }
+}